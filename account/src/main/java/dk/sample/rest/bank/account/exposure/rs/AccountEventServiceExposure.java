@@ -1,14 +1,29 @@
 package dk.sample.rest.bank.account.exposure.rs;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
+import javax.annotation.Resource;
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.PermitAll;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.validation.constraints.Pattern;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
@@ -16,18 +31,37 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import dk.nykredit.api.capabilities.Interval;
+import dk.nykredit.time.CurrentTime;
+import dk.sample.rest.bank.account.exposure.rs.model.EventPageRepresentation;
 import dk.sample.rest.bank.account.exposure.rs.model.EventRepresentation;
 import dk.sample.rest.bank.account.exposure.rs.model.EventsRepresentation;
 import dk.sample.rest.bank.account.model.Event;
 import dk.sample.rest.bank.account.persistence.AccountArchivist;
+import dk.sample.rest.common.core.concurrent.SingleFlight;
+import dk.sample.rest.common.core.events.EventBroadcaster;
 import dk.sample.rest.common.core.logging.LogDuration;
+import dk.sample.rest.common.core.metrics.CacheMetrics;
+import dk.sample.rest.common.persistence.jpa.EntityVersion;
+import dk.sample.rest.common.rs.AsyncResponses;
 import dk.sample.rest.common.rs.EntityResponseBuilder;
+import dk.sample.rest.common.rs.RequestSnapshot;
+import dk.sample.rest.common.rs.SerializedEntity;
+import dk.sample.rest.common.rs.UriInfoSnapshot;
+import dk.sample.rest.common.rs.sse.ServerSentEventWriter;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.Authorization;
@@ -42,17 +76,53 @@ import io.swagger.annotations.Authorization;
 @Api(value = "/account-events",
     tags = {"events"})
 public class AccountEventServiceExposure {
+    private static final int DEFAULT_FEED_LIMIT = 100;
+    private static final int FEED_TAIL_MAXAGE = 5;
+    private static final long FEED_WAIT_MAX_SECONDS = 60;
+    private static final long STREAM_RETRY_MILLIS = 3000;
+    private static final long STREAM_HEARTBEAT_SECONDS = 15;
+    private static final long STREAM_MAXDURATION = TimeUnit.MINUTES.toNanos(5);
+    private static final long EVENT_RESPONSES_MAXSIZE = 8L * 1024 * 1024;
+    private static final Cache<List<Object>, SerializedEntity> EVENT_RESPONSES = CacheMetrics.register("account-event-responses",
+        Caffeine.newBuilder()
+            .maximumWeight(EVENT_RESPONSES_MAXSIZE)
+            .weigher((List<Object> key, SerializedEntity event) -> event.size())
+            .recordStats()
+            .build());
+    private static final int FEED_PAGE_SIZE = 500;
+    private static final Duration FEED_PAGE_SETTLE = Duration.ofMinutes(10);
+    private static final long FEED_PAGES_MAXSIZE = 16L * 1024 * 1024;
+    private static final Cache<List<Object>, SerializedEntity> FEED_PAGES = CacheMetrics.register("account-event-pages",
+        Caffeine.newBuilder()
+            .maximumWeight(FEED_PAGES_MAXSIZE)
+            .weigher((List<Object> key, SerializedEntity page) -> page.size())
+            .recordStats()
+            .build());
+
+    // concurrent requests for the same list of events share one read and serialization of the events
+    private static final SingleFlight<List<Object>, EventList> EVENT_LIST_LOADS = new SingleFlight<>();
+
     private final Map<String, EventsProducerMethod> eventsProducers = new HashMap<>();
+    private final Map<String, EventPageProducerMethod> eventPageProducers = new HashMap<>();
     private final Map<String, EventProducerMethod> eventProducers = new HashMap<>();
     private final Map<String, EventsCategoryProducerMethod> eventCategoryProducers = new HashMap<>();
 
     @EJB
     private AccountArchivist archivist;
 
+    @EJB
+    private AccountListExecutor lists;
+
+    @Resource
+    private ManagedExecutorService executor;
+
     public AccountEventServiceExposure() {
         eventsProducers.put("application/hal+json", this::listAllSG1V1);
         eventsProducers.put("application/hal+json;concept=events;v=1", this::listAllSG1V1);
 
+        eventPageProducers.put("application/hal+json", this::getPageSG1V1);
+        eventPageProducers.put("application/hal+json;concept=eventpage;v=1", this::getPageSG1V1);
+
         eventProducers.put("application/hal+json", this::getSG1V1);
         eventProducers.put("application/hal+json;concept=event;v=1", this::getSG1V1);
 
@@ -67,7 +137,10 @@ public class AccountEventServiceExposure {
         value = "obtain all events emitted by the account-event service", response = EventsRepresentation.class,
         notes = " the events are signalled by this resource as this this is the authoritative resource for all events that " +
             "subscribers to the account service should be able to listen for and react to. In other words this is the authoritative " +
-            "feed for the account service",
+            "feed for the account service. Given since, the sequence number of the latest event seen, only the events following it " +
+            "are returned in sequence order, at most limit of them, along with a next link to poll for the events following these. " +
+            "Given wait as well, e.g. 30s, the request waits for an event to be committed if none follows since yet, and an empty " +
+            "page is returned if none is committed within the wait",
         authorizations = {
             @Authorization(value = "oauth2", scopes = {}),
             @Authorization(value = "oauth2-cc", scopes = {}),
@@ -79,15 +152,113 @@ public class AccountEventServiceExposure {
         produces = "application/hal+json,  application/hal+json;concept=events;v=1",
         nickname = "listAllAccountEvents"
     )
-    public Response listAll(@Context UriInfo uriInfo, @Context Request request,
+    public void listAll(@Context UriInfo uriInfo, @Context Request request, @Context HttpHeaders headers,
+                        @HeaderParam("Accept") String accept,
+                        @HeaderParam("X-Log-Token") String xLogToken,
+                        @QueryParam("interval") String interval,
+                        @QueryParam("since") String since,
+                        @QueryParam("limit") String limit,
+                        @QueryParam("wait") String wait,
+                        @Suspended AsyncResponse response) {
+        eventsProducers.getOrDefault(accept, this::resumeUnsupportedContentType)
+            .respond(uriInfo, RequestSnapshot.of(request, headers), xLogToken, interval, since, limit, wait, response);
+    }
+
+    @GET
+    @Produces(ServerSentEventWriter.MEDIA_TYPE)
+    @ApiOperation(
+        value = "stream the events emitted by the account-event service as they happen", response = EventRepresentation.class,
+        notes = " every event is pushed to the subscribers as soon as it is committed, the id of an event is its sequence number " +
+            "and a subscriber reconnecting with Last-Event-ID is sent the events it missed before the new ones. The stream is closed " +
+            "after a few minutes or if the subscriber does not keep up, in which case the subscriber is expected to reconnect",
+        authorizations = {
+            @Authorization(value = "oauth2", scopes = {}),
+            @Authorization(value = "oauth2-cc", scopes = {}),
+            @Authorization(value = "oauth2-ac", scopes = {}),
+            @Authorization(value = "oauth2-rop", scopes = {}),
+            @Authorization(value = "Bearer")
+        },
+        tags = {"stream", "events"},
+        produces = ServerSentEventWriter.MEDIA_TYPE,
+        nickname = "streamAccountEvents"
+    )
+    public Response stream(@Context UriInfo uriInfo,
+                           @HeaderParam("X-Log-Token") String xLogToken,
+                           @HeaderParam("Last-Event-ID") String lastEventId) {
+        Optional<Long> since = lastEventId == null || "".equals(lastEventId.trim())
+            ? Optional.empty() : Optional.of(feedSince(lastEventId));
+        Optional<EventBroadcaster.Subscription<Event>> subscription = archivist.subscribeEvents();
+        if (!subscription.isPresent()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", TimeUnit.MILLISECONDS.toSeconds(STREAM_RETRY_MILLIS))
+                .build();
+        }
+        CacheControl cc = new CacheControl();
+        cc.setNoStore(true);
+        String logToken = (xLogToken != null && !"".equals(xLogToken.trim())) ? xLogToken : UUID.randomUUID().toString();
+        return Response.ok()
+            .entity((StreamingOutput) out -> stream(out, uriInfo, since, subscription.get()))
+            .cacheControl(cc)
+            .type(ServerSentEventWriter.MEDIA_TYPE)
+            .header("X-Log-Token", logToken)
+            .header("X-RateLimit-Limit", "-1")
+            .header("X-RateLimit-Limit-24h", "-1")
+            .header("X-RateLimit-Remaining", "-1")
+            .header("X-RateLimit-Reset", "-1")
+            .build();
+    }
+
+    @GET
+    @Path("pages")
+    @Produces({"application/hal+json", "application/hal+json;concept=eventpage;v=1"})
+    @ApiOperation(
+        value = "obtain the page of the event feed holding the latest events", response = EventPageRepresentation.class,
+        notes = " the feed is split into pages of a fixed range of sequence numbers, this is the latest page which is still growing. " +
+            "The prev-archive link leads to the pages before it",
+        authorizations = {
+            @Authorization(value = "oauth2", scopes = {}),
+            @Authorization(value = "oauth2-cc", scopes = {}),
+            @Authorization(value = "oauth2-ac", scopes = {}),
+            @Authorization(value = "oauth2-rop", scopes = {}),
+            @Authorization(value = "Bearer")
+        },
+        tags = {"events"},
+        produces = "application/hal+json,  application/hal+json;concept=eventpage;v=1",
+        nickname = "getCurrentAccountEventPage"
+    )
+    public Response getCurrentPage(@Context UriInfo uriInfo, @Context Request request,
+                                   @HeaderParam("Accept") String accept,
+                                   @HeaderParam("X-Log-Token") String xLogToken) {
+        return eventPageProducers.getOrDefault(accept, this::handleUnsupportedContentType)
+            .getResponse(uriInfo, request, xLogToken, null);
+    }
+
+    @GET
+    @Path("pages/{page}")
+    @Produces({"application/hal+json", "application/hal+json;concept=eventpage;v=1"})
+    @ApiOperation(
+        value = "obtain a page of the event feed", response = EventPageRepresentation.class,
+        notes = " the feed is split into pages of a fixed range of sequence numbers, once the events following a page are settled " +
+            "the page is archived, it never changes and can be cached forever",
+        authorizations = {
+            @Authorization(value = "oauth2", scopes = {}),
+            @Authorization(value = "oauth2-cc", scopes = {}),
+            @Authorization(value = "oauth2-ac", scopes = {}),
+            @Authorization(value = "oauth2-rop", scopes = {}),
+            @Authorization(value = "Bearer")
+        },
+        tags = {"immutable", "events"},
+        produces = "application/hal+json,  application/hal+json;concept=eventpage;v=1",
+        nickname = "getAccountEventPage"
+    )
+    public Response getPage(@Context UriInfo uriInfo, @Context Request request,
                             @HeaderParam("Accept") String accept,
                             @HeaderParam("X-Log-Token") String xLogToken,
-                            @QueryParam("interval") String interval) {
-        return eventsProducers.getOrDefault(accept, this::handleUnsupportedContentType)
-            .getResponse(uriInfo, request, xLogToken, interval);
+                            @PathParam("page") String page) {
+        return eventPageProducers.getOrDefault(accept, this::handleUnsupportedContentType)
+            .getResponse(uriInfo, request, xLogToken, page);
     }
 
-
     @GET
     @Path("{category}")
     @Produces({"application/hal+json", "application/hal+json;concept=eventcategory;v=1"})
@@ -142,14 +313,32 @@ public class AccountEventServiceExposure {
     }
 
     @LogDuration(limit = 50)
-    public Response listAllSG1V1(UriInfo uriInfo, Request request, String xLogToken, String interval) {
+    public void listAllSG1V1(UriInfo uriInfo, Request request, String xLogToken, String interval, String since, String limit,
+                             String wait, AsyncResponse response) {
+        if (wait != null) {
+            awaitSinceSG1V1(uriInfo, xLogToken, feedSince(since), feedLimit(limit), feedWait(wait), response);
+            return;
+        }
+        UriInfo snapshot = UriInfoSnapshot.of(uriInfo);
+        List<Object> key = Arrays.asList(uriInfo.getRequestUri(), "events", "1");
+        if (since != null || limit != null) {
+            long after = feedSince(since);
+            int size = feedLimit(limit);
+            AsyncResponses.dispatch(lists.executor(), response, AccountListExecutor.TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                () -> listSinceSG1V1(snapshot, request, xLogToken, key, after, size));
+            return;
+        }
         Optional<Interval> withIn = Interval.getInterval(interval);
-        List<Event> events = archivist.findEvents(withIn);
-        return new EntityResponseBuilder<>(events, txs -> new EventsRepresentation(events, uriInfo), xLogToken)
-            .name("events")
-            .version("1")
-            .maxAge(60)
-            .build(request);
+        AsyncResponses.dispatch(lists.executor(), response, AccountListExecutor.TIMEOUT_SECONDS, TimeUnit.SECONDS, () -> {
+            EventList events = EVENT_LIST_LOADS.load(key, () -> EventList.of(archivist.findEvents(withIn),
+                evs -> new EventsRepresentation(evs, snapshot)));
+            return new EntityResponseBuilder<>(events.entity, e -> e, xLogToken)
+                .name("events")
+                .version("1")
+                .versioned(events.entity)
+                .maxAge(60)
+                .build(request);
+        });
     }
 
     @LogDuration(limit = 50)
@@ -163,22 +352,265 @@ public class AccountEventServiceExposure {
             .build(request);
     }
 
+    /**
+     * Events are immutable thus the representation of an event is serialized the first time it is asked for and the bytes
+     * are written as they are from then on, the links of the representation depend on the base URI of the request.
+     */
     @LogDuration(limit = 50)
     public Response getSG1V1(UriInfo uriInfo, Request request, String xLogToken, String category, String id) {
-        Event event = archivist.getEvent(category, id);
-        return new EntityResponseBuilder<>(event, e -> new EventRepresentation(e, uriInfo), xLogToken)
+        SerializedEntity event = EVENT_RESPONSES.get(Arrays.asList(uriInfo.getBaseUri(), category, id),
+            key -> serialize(uriInfo, category, id));
+        return new EntityResponseBuilder<>(event, e -> e, xLogToken)
             .maxAge(7 * 24 * 60 * 60)
             .name("event")
             .version("1")
+            .versioned(event)
+            .build(request);
+    }
+
+    /**
+     * A page of the event feed, the latest page if none is given. The page is archived once the first event following it
+     * is older than the time it takes for the transactions saving events to complete, from then on no event is expected
+     * to be added to the page, which is thus serialized once and returned as immutable with a hash of its content as
+     * entity tag. This presumes that sequence numbers are assigned in roughly the order the events are committed.
+     */
+    @LogDuration(limit = 50)
+    public Response getPageSG1V1(UriInfo uriInfo, Request request, String xLogToken, String page) {
+        long index = page == null ? Math.max(0, archivist.getLatestEventSequence() - 1) / FEED_PAGE_SIZE : feedPage(page);
+        List<Object> key = Arrays.asList(uriInfo.getBaseUri(), index);
+        SerializedEntity archived = FEED_PAGES.getIfPresent(key);
+        if (archived == null) {
+            long after = index * FEED_PAGE_SIZE;
+            List<Event> following = archivist.findEventsSince(after + FEED_PAGE_SIZE, 1);
+            List<Event> events = archivist.findEventsBetween(after, after + FEED_PAGE_SIZE);
+            if (!isSettled(following)) {
+                if (index > 0 && events.isEmpty() && following.isEmpty()) {
+                    throw new WebApplicationException(Response.Status.NOT_FOUND);
+                }
+                return new EntityResponseBuilder<>(events, evs -> new EventPageRepresentation(evs, index, !following.isEmpty(), uriInfo),
+                    xLogToken)
+                    .name("eventpage")
+                    .version("1")
+                    .maxAge(FEED_TAIL_MAXAGE)
+                    .build(request);
+            }
+            Event latest = events.isEmpty() ? following.get(0) : events.get(events.size() - 1);
+            archived = SerializedEntity.of(new EventPageRepresentation(events, index, true, uriInfo), latest.getLastModifiedTime());
+            FEED_PAGES.put(key, archived);
+        }
+        return new EntityResponseBuilder<>(archived, p -> p, xLogToken)
+            .name("eventpage")
+            .version("1")
+            .versioned(archived)
+            .immutable()
+            .build(request);
+    }
+
+    private static boolean isSettled(List<Event> following) {
+        return !following.isEmpty() && following.get(0).getTime().isBefore(CurrentTime.now().minus(FEED_PAGE_SETTLE));
+    }
+
+    private SerializedEntity serialize(UriInfo uriInfo, String category, String id) {
+        Event event = archivist.getEvent(category, id);
+        return SerializedEntity.of(new EventRepresentation(event, uriInfo), EntityVersion.of(event));
+    }
+
+    /**
+     * Writes the events missed since the given sequence number followed by the events published while the stream is open.
+     * The subscription is taken before the missed events are read thus events committed in between may be both read and
+     * published, they are only written once. The representation of an event is serialized once for all subscribers.
+     */
+    private void stream(OutputStream out, UriInfo uriInfo, Optional<Long> since,
+                        EventBroadcaster.Subscription<Event> subscription) {
+        try (EventBroadcaster.Subscription<Event> events = subscription) {
+            ServerSentEventWriter sse = new ServerSentEventWriter(out);
+            sse.retry(STREAM_RETRY_MILLIS);
+            Set<Long> written = new HashSet<>();
+            if (since.isPresent()) {
+                long latest = since.get();
+                List<Event> missed;
+                do {
+                    missed = archivist.findEventsSince(latest, DEFAULT_FEED_LIMIT);
+                    for (Event event : missed) {
+                        write(sse, uriInfo, event);
+                        written.add(event.getSequence());
+                        latest = event.getSequence();
+                    }
+                } while (missed.size() == DEFAULT_FEED_LIMIT);
+            }
+            long closesAt = System.nanoTime() + STREAM_MAXDURATION;
+            while (!events.isOverflowed() && System.nanoTime() - closesAt < 0) {
+                Event event = events.next(STREAM_HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                if (event == null) {
+                    sse.comment("keep-alive");
+                } else if (!written.remove(event.getSequence())) {
+                    write(sse, uriInfo, event);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the subscriber disconnected, which is the normal way for a stream to end
+        }
+    }
+
+    private static void write(ServerSentEventWriter sse, UriInfo uriInfo, Event event) throws IOException {
+        SerializedEntity data = EVENT_RESPONSES.get(Arrays.asList(uriInfo.getBaseUri(), event.getCategory(), event.getId()),
+            key -> SerializedEntity.of(new EventRepresentation(event, uriInfo), EntityVersion.of(event)));
+        sse.event(Long.toString(event.getSequence()), null, data);
+    }
+
+    /**
+     * The events following the given sequence number, the events of a full page never change while the last page is
+     * expected to grow and is thus only cached for a few seconds.
+     */
+    private Response listSinceSG1V1(UriInfo uriInfo, Request request, String xLogToken, List<Object> key, long since, int limit) {
+        EventList events = EVENT_LIST_LOADS.load(key, () -> EventList.of(archivist.findEventsSince(since, limit),
+            evs -> new EventsRepresentation(evs, since, limit, uriInfo)));
+        return new EntityResponseBuilder<>(events.entity, e -> e, xLogToken)
+            .name("events")
+            .version("1")
+            .versioned(events.entity)
+            .maxAge(events.size < limit ? FEED_TAIL_MAXAGE : 60)
             .build(request);
     }
 
+    /**
+     * Long polling for the events following the given sequence number. If there are none yet the response is suspended,
+     * holding no thread, until an event is committed by this service instance or the wait is over, in which case the
+     * page is empty. The waiter is registered before the events are read thus an event committed in between is not missed.
+     */
+    private void awaitSinceSG1V1(UriInfo uriInfo, String xLogToken, long since, int limit, long wait, AsyncResponse response) {
+        UriInfo snapshot = UriInfoSnapshot.of(uriInfo);
+        AtomicReference<EventBroadcaster.Waiter<Event>> waiting = new AtomicReference<>();
+        response.setTimeoutHandler(timedOut -> {
+            Optional.ofNullable(waiting.get()).ifPresent(EventBroadcaster.Waiter::cancel);
+            timedOut.resume(feedResponse(snapshot, xLogToken, Collections.emptyList(), since, limit));
+        });
+        response.setTimeout(wait, TimeUnit.SECONDS);
+
+        AccountArchivist feed = archivist;
+        Optional<EventBroadcaster.Waiter<Event>> waiter = archivist.awaitEvent(event -> executor.execute(() -> {
+            if (!response.isDone()) {
+                response.resume(feedResponse(snapshot, xLogToken, feed.findEventsSince(since, limit), since, limit));
+            }
+        }));
+        waiter.ifPresent(waiting::set);
+        List<Event> found = archivist.findEventsSince(since, limit);
+        if (!found.isEmpty() || !waiter.isPresent()) {
+            waiter.ifPresent(EventBroadcaster.Waiter::cancel);
+            response.resume(feedResponse(snapshot, xLogToken, found, since, limit));
+        }
+    }
+
+    /**
+     * The response for a page of events found after waiting, the page is new to the client thus the preconditions of the
+     * request are not evaluated.
+     */
+    private static Response feedResponse(UriInfo uriInfo, String xLogToken, List<Event> events, long since, int limit) {
+        return new EntityResponseBuilder<>(events, evs -> new EventsRepresentation(evs, since, limit, uriInfo), xLogToken)
+            .name("events")
+            .version("1")
+            .maxAge(events.size() < limit ? FEED_TAIL_MAXAGE : 60)
+            .build();
+    }
+
+    private static long feedSince(String since) {
+        if (since == null || "".equals(since.trim())) {
+            return 0;
+        }
+        try {
+            long sequence = Long.parseLong(since.trim());
+            if (sequence >= 0) {
+                return sequence;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+
+    private static long feedPage(String page) {
+        try {
+            long index = Long.parseLong(page.trim());
+            if (index >= 0) {
+                return index;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+
+    private static int feedLimit(String limit) {
+        if (limit == null || "".equals(limit.trim())) {
+            return DEFAULT_FEED_LIMIT;
+        }
+        try {
+            int size = Integer.parseInt(limit.trim());
+            if (size > 0) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+
+    /**
+     * The seconds to wait given as e.g. 30s or 30, waits longer than the maximum are shortened to the maximum.
+     */
+    private static long feedWait(String wait) {
+        String seconds = wait.trim().endsWith("s") ? wait.trim().substring(0, wait.trim().length() - 1) : wait.trim();
+        try {
+            long duration = Long.parseLong(seconds);
+            if (duration > 0) {
+                return Math.min(duration, FEED_WAIT_MAX_SECONDS);
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+
     Response handleUnsupportedContentType(UriInfo uriInfo, Request request, String... params) {
         return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build();
     }
 
+    void resumeUnsupportedContentType(UriInfo uriInfo, Request request, String xLogToken, String interval, String since, String limit,
+                                      String wait, AsyncResponse response) {
+        response.resume(handleUnsupportedContentType(uriInfo, request));
+    }
+
+    /**
+     * A list of events serialized once for the concurrent requests sharing it, along with the number of events in it.
+     */
+    private static final class EventList {
+        private final SerializedEntity entity;
+        private final int size;
+
+        private EventList(SerializedEntity entity, int size) {
+            this.entity = entity;
+            this.size = size;
+        }
+
+        private static EventList of(List<Event> events, Function<List<Event>, EventsRepresentation> mapper) {
+            Timestamp lastModified = events.stream()
+                .map(Event::getLastModifiedTime)
+                .filter(Objects::nonNull)
+                .max(Timestamp::compareTo)
+                .orElse(null);
+            return new EventList(SerializedEntity.of(mapper.apply(events), lastModified), events.size());
+        }
+    }
+
     interface EventsProducerMethod {
-        Response getResponse(UriInfo uriInfo, Request request, String xLogToken, String interval);
+        void respond(UriInfo uriInfo, Request request, String xLogToken, String interval, String since, String limit, String wait,
+                     AsyncResponse response);
+    }
+
+    interface EventPageProducerMethod {
+        Response getResponse(UriInfo uriInfo, Request request, String xLogToken, String page);
     }
 
     interface EventProducerMethod {
@@ -2,6 +2,7 @@ package dk.sample.rest.bank.account.exposure.rs;
 
 
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -23,6 +24,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
@@ -37,9 +39,15 @@ import dk.sample.rest.bank.account.exposure.rs.model.AccountUpdateRepresentation
 import dk.sample.rest.bank.account.exposure.rs.model.AccountsRepresentation;
 import dk.sample.rest.bank.account.model.Account;
 import dk.sample.rest.bank.account.persistence.AccountArchivist;
+import dk.sample.rest.common.core.concurrent.SingleFlight;
 import dk.sample.rest.common.core.logging.LogDuration;
+import dk.sample.rest.common.persistence.jpa.AggregateVersion;
+import dk.sample.rest.common.persistence.jpa.EntityVersion;
 import dk.sample.rest.common.rs.EntityResponseBuilder;
+import dk.sample.rest.common.rs.SerializedEntity;
 import dk.sample.rest.common.rs.error.ErrorRepresentation;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -61,6 +69,9 @@ import org.slf4j.LoggerFactory;
 @Api(value = "/accounts", tags = {"accounts"})
 public class AccountServiceExposure {
     private static final Logger LOGGER = LoggerFactory.getLogger(AccountServiceExposure.class);
+    private static final int DEFAULT_PAGESIZE = 50;
+    // concurrent requests for the same representation of an account share one read and serialization of the account
+    private static final SingleFlight<List<Object>, SerializedEntity> ACCOUNT_LOADS = new SingleFlight<>();
 
     private final Map<String, AccountsProducerMethod> accountsProducers = new HashMap<>();
     private final Map<String, AccountProducerMethod> accountProducers = new HashMap<>();
@@ -97,11 +108,16 @@ public class AccountServiceExposure {
             "Supported projections and versions are: " +
             "AccountOverview in version 1 " +
             "The Accept header for the default version is application/hal+json;concept=AccountOverview;v=1.0.0.... " +
-            "The format for the default version is {....}", nickname = "listAccounts")
+            "The format for the default version is {....} " +
+            "The accounts are listed page by page ordered by registration and account number, the size of a page is given by size " +
+            "(default 50, at most 500) and the following pages are found through the next and prev links", nickname = "listAccounts")
     public Response list(@Context UriInfo uriInfo, @Context Request request,
                          @HeaderParam("Accept") String accept,
-                         @HeaderParam("X-Log-Token") String xLogToken) {
-        return accountsProducers.getOrDefault(accept, this::handleUnsupportedContentType).getResponse(uriInfo, request, xLogToken);
+                         @HeaderParam("X-Log-Token") String xLogToken,
+                         @QueryParam("cursor") String cursor,
+                         @QueryParam("size") String size) {
+        return accountsProducers.getOrDefault(accept, this::handleUnsupportedContentType)
+            .getResponse(uriInfo, request, xLogToken, cursor, size);
     }
 
     @GET
@@ -197,9 +213,18 @@ public class AccountServiceExposure {
             .build();
     }
 
-    Response listServiceGeneration1Version1(UriInfo uriInfo, Request request, String xLogToken) {
-        List<Account> accounts = archivist.listAccounts();
-        return new EntityResponseBuilder<>(accounts, list -> new AccountsRepresentation(list, uriInfo), xLogToken)
+    @LogDuration(limit = 50)
+    Response listServiceGeneration1Version1(UriInfo uriInfo, Request request, String xLogToken, String cursor, String size) {
+        int pageSize = pageSize(size);
+        Optional<Cursor> pageCursor = pageCursor(cursor);
+        AggregateVersion version = archivist.getAccountsVersion();
+        Optional<Response> notModified = EntityResponseBuilder.evaluatePreconditions(request, "accountoverview", "1", version);
+        if (notModified.isPresent()) {
+            return notModified.get();
+        }
+        Page<Account> accounts = archivist.listAccounts(pageCursor, pageSize);
+        return new EntityResponseBuilder<>(accounts, page -> new AccountsRepresentation(page, pageSize, uriInfo), xLogToken)
+            .versioned(version)
             .name("accountoverview")
             .version("1")
             .maxAge(10)
@@ -208,32 +233,84 @@ public class AccountServiceExposure {
 
     @LogDuration(limit = 50)
     Response getServiceGeneration1Version1(UriInfo uriInfo, Request request, String xLogToken, String regNo, String accountNo) {
-        Account account = archivist.getAccount(regNo, accountNo);
+        Optional<Response> notModified = archivist.findAccountVersion(regNo, accountNo)
+            .flatMap(version -> EntityResponseBuilder.evaluatePreconditions(request, "account", "1", version));
+        if (notModified.isPresent()) {
+            return notModified.get();
+        }
+        SerializedEntity account = ACCOUNT_LOADS.load(Arrays.asList(uriInfo.getRequestUri(), "account", "1"), () -> {
+            Account acc = archivist.getAccount(regNo, accountNo);
+            return SerializedEntity.of(new AccountSparseRepresentation(acc, uriInfo), EntityVersion.of(acc));
+        });
         LOGGER.info("Usage - application/hal+json;concept=account;v=1");
-        return new EntityResponseBuilder<>(account, acc -> new AccountSparseRepresentation(acc, uriInfo), xLogToken)
+        return new EntityResponseBuilder<>(account, acc -> acc, xLogToken)
             .name("account")
             .version("1")
+            .versioned(account)
             .maxAge(120)
             .build(request);
     }
 
     @LogDuration(limit = 50)
     Response getServiceGeneration1Version2(UriInfo uriInfo, Request request, String xLogToken, String regNo, String accountNo) {
-        Account account = archivist.getAccount(regNo, accountNo);
+        // the version of the account is incremented by the persistence provider when transactions are added to the account,
+        // thus the version of the account covers the transactions included in this projection as well
+        Optional<Response> notModified = archivist.findAccountVersion(regNo, accountNo)
+            .flatMap(version -> EntityResponseBuilder.evaluatePreconditions(request, "account", "2", version));
+        if (notModified.isPresent()) {
+            return notModified.get();
+        }
+        SerializedEntity account = ACCOUNT_LOADS.load(Arrays.asList(uriInfo.getRequestUri(), "account", "2"), () -> {
+            Account acc = archivist.getAccount(regNo, accountNo);
+            return SerializedEntity.of(new AccountRepresentation(acc, acc.getTransactions(), uriInfo), EntityVersion.of(acc));
+        });
         LOGGER.info("Usage - application/hal+json;concept=account;v=2");
-        return new EntityResponseBuilder<>(account, acc -> new AccountRepresentation(acc, acc.getTransactions(), uriInfo), xLogToken)
+        return new EntityResponseBuilder<>(account, acc -> acc, xLogToken)
             .name("account")
             .version("2")
+            .versioned(account)
             .maxAge(60)
             .build(request);
     }
 
+    /**
+     * Decodes the optional cursor holding registration and account number - a cursor which cannot be decoded is a bad request.
+     */
+    private static Optional<Cursor> pageCursor(String cursor) {
+        if (cursor == null || "".equals(cursor.trim())) {
+            return Optional.empty();
+        }
+        Optional<Cursor> c = Cursor.decode(cursor);
+        if (!c.isPresent() || c.get().getKeys().size() != 2) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return c;
+    }
+
+    /**
+     * The requested page size, the archivist bounds the size of the page regardless of what is requested.
+     */
+    private static int pageSize(String size) {
+        if (size == null || "".equals(size.trim())) {
+            return DEFAULT_PAGESIZE;
+        }
+        try {
+            int pageSize = Integer.parseInt(size.trim());
+            if (pageSize > 0) {
+                return pageSize;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+
     Response handleUnsupportedContentType(UriInfo uriInfo, Request request, String... params) {
         return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build();
     }
 
     interface AccountsProducerMethod {
-        Response getResponse(UriInfo uriInfo, Request request, String xLogToken);
+        Response getResponse(UriInfo uriInfo, Request request, String xLogToken, String cursor, String size);
     }
 
     interface AccountProducerMethod {
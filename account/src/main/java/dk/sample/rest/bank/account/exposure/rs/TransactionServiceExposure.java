@@ -1,15 +1,20 @@
 package dk.sample.rest.bank.account.exposure.rs;
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.PermitAll;
@@ -26,12 +31,19 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import dk.nykredit.api.capabilities.Element;
 import dk.nykredit.api.capabilities.Interval;
 import dk.nykredit.api.capabilities.Sort;
@@ -41,11 +53,18 @@ import dk.sample.rest.bank.account.exposure.rs.model.TransactionUpdateRepresenta
 import dk.sample.rest.bank.account.exposure.rs.model.TransactionsRepresentation;
 import dk.sample.rest.bank.account.model.Account;
 import dk.sample.rest.bank.account.model.Event;
+import dk.sample.rest.bank.account.model.OutboxEvent;
 import dk.sample.rest.bank.account.model.Transaction;
 import dk.sample.rest.bank.account.persistence.AccountArchivist;
 import dk.sample.rest.common.core.logging.LogDuration;
+import dk.sample.rest.common.persistence.jpa.AggregateVersion;
+import dk.sample.rest.common.rs.AsyncResponses;
 import dk.sample.rest.common.rs.EntityResponseBuilder;
+import dk.sample.rest.common.rs.RequestSnapshot;
+import dk.sample.rest.common.rs.UriInfoSnapshot;
 import dk.sample.rest.common.rs.error.ErrorRepresentation;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -66,12 +85,20 @@ import io.swagger.annotations.ExtensionProperty;
     tags = {"immutable", "transactions"})
 public class TransactionServiceExposure {
 
+    private static final int TX_PAGESIZE = 50;
+    private static final JsonFactory EXPORT_JSON = new JsonFactory()
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+        .setRootValueSeparator(null);
+
     private final Map<String, TransactionsProducerMethod> transactionsProducers = new HashMap<>();
     private final Map<String, TransactionProducerMethod> transactionProducers = new HashMap<>();
 
     @EJB
     private AccountArchivist archivist;
 
+    @EJB
+    private AccountListExecutor lists;
+
     public TransactionServiceExposure() {
         transactionsProducers.put("application/hal+json", this::listTransactionsSG1V1);
         transactionsProducers.put("application/hal+json;concept=transactionoverview;v=1", this::listTransactionsSG1V1);
@@ -95,19 +122,80 @@ public class TransactionServiceExposure {
             @ExtensionProperty(name = "customer", value = "customer allows getting from own account"),
             @ExtensionProperty(name = "advisor", value = "advisor allows getting from every account")}
         )},
+        notes = "the transactions are listed either by the sort, elements and interval capabilities or page by page in time order " +
+            "by following the next and prev links, which carry an opaque cursor - the cursor takes precedence over the capabilities",
         tags = {"sort", "elements", "interval", "transactions"},
         produces = "application/hal+json, application/hal+json;concept=transactionoverview;v=1",
         nickname = "listTransactions"
     )
-    public Response list(@Context UriInfo uriInfo, @Context Request request,
-                         @HeaderParam("Accept") String accept,
-                         @HeaderParam("X-Log-Token") String xLogToken,
-                         @PathParam("regNo") String regNo,
-                         @PathParam("accountNo") String accountNo,
-                         @QueryParam("sort") String sort, @QueryParam("elements") String elements,
-                         @QueryParam("interval") String interval) {
-        return transactionsProducers.getOrDefault(accept, this::handleUnsupportedContentType)
-            .getResponse(uriInfo, request, xLogToken, regNo, accountNo, sort, elements, interval);
+    public void list(@Context UriInfo uriInfo, @Context Request request, @Context HttpHeaders headers,
+                     @HeaderParam("Accept") String accept,
+                     @HeaderParam("X-Log-Token") String xLogToken,
+                     @PathParam("regNo") String regNo,
+                     @PathParam("accountNo") String accountNo,
+                     @QueryParam("sort") String sort, @QueryParam("elements") String elements,
+                     @QueryParam("interval") String interval,
+                     @QueryParam("cursor") String cursor,
+                     @Suspended AsyncResponse response) {
+        TransactionsProducerMethod producer = transactionsProducers.get(accept);
+        if (producer == null) {
+            response.resume(handleUnsupportedContentType(uriInfo, request));
+            return;
+        }
+        // the parameters are validated while the request is handled, a bad request is not queued for a pooled thread
+        Optional<Cursor> txCursor = cursor == null || "".equals(cursor.trim()) ? Optional.empty() : Optional.of(transactionCursor(cursor));
+        List<Sort> sortAs = Sort.getSortings(sort);
+        Optional<Element> elementSet = Element.getElement(elements);
+        Optional<Interval> withIn = Interval.getInterval(interval);
+        UriInfo uriSnapshot = UriInfoSnapshot.of(uriInfo);
+        Request requestSnapshot = RequestSnapshot.of(request, headers);
+        AsyncResponses.dispatch(lists.executor(), response, AccountListExecutor.TIMEOUT_SECONDS, TimeUnit.SECONDS,
+            () -> producer.getResponse(uriSnapshot, requestSnapshot, xLogToken, regNo, accountNo, sortAs, elementSet, withIn, txCursor));
+    }
+
+    @GET
+    @Produces({"application/x-ndjson", "application/x-ndjson;concept=transactionexport;v=1"})
+    @LogDuration(limit = 50)
+    @ApiOperation(
+        value = "export the full transaction history of an account", response = TransactionRepresentation.class,
+        authorizations = {
+            @Authorization(value = "oauth2", scopes = {}),
+            @Authorization(value = "oauth2-cc", scopes = {}),
+            @Authorization(value = "oauth2-ac", scopes = {}),
+            @Authorization(value = "oauth2-rop", scopes = {}),
+            @Authorization(value = "Bearer")
+        },
+        extensions = {@Extension(name = "roles", properties = {
+            @ExtensionProperty(name = "advisor", value = "advisor allows exporting from every account")}
+        )},
+        notes = "every transaction on the account is streamed in time order as one json object per line, the export is not " +
+            "limited in size and is not subject to the sort, elements and interval capabilities",
+        tags = {"transactions"},
+        produces = "application/x-ndjson, application/x-ndjson;concept=transactionexport;v=1",
+        nickname = "exportTransactions"
+    )
+    public Response export(@HeaderParam("X-Log-Token") String xLogToken,
+                           @PathParam("regNo") String regNo,
+                           @PathParam("accountNo") String accountNo) {
+        if (!archivist.findAccount(regNo, accountNo).isPresent()) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        StreamingOutput export = output -> {
+            try (JsonGenerator json = EXPORT_JSON.createGenerator(output)) {
+                archivist.exportTransactions(regNo, accountNo, tx -> writeTransaction(json, tx));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        String logToken = (xLogToken != null && !"".equals(xLogToken.trim())) ? xLogToken : UUID.randomUUID().toString();
+        return Response.ok(export)
+            .type("application/x-ndjson;concept=transactionexport;v=1")
+            .header("X-Log-Token", logToken)
+            .header("X-RateLimit-Limit", "-1")
+            .header("X-RateLimit-Limit-24h", "-1")
+            .header("X-RateLimit-Remaining", "-1")
+            .header("X-RateLimit-Reset", "-1")
+            .build();
     }
 
     @GET
@@ -197,9 +285,8 @@ public class TransactionServiceExposure {
                     .header("X-RateLimit-Remaining", "-1")
                     .header("X-RateLimit-Reset", "-1")
                     .build();
-                Event newTX = new Event(new URI(uriInfo.getPath()), Event.getCategory(accountNo, regNo),
-                    "new transaction on account " + regNo + "-" + accountNo);
-                archivist.save(newTX);
+                archivist.save(new OutboxEvent(new URI(uriInfo.getPath()), Event.getCategory(accountNo, regNo),
+                    "new transaction on account " + regNo + "-" + accountNo));
                 return response;
             } catch (URISyntaxException e) {
                 throw new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR);
@@ -213,14 +300,28 @@ public class TransactionServiceExposure {
     }
 
     @LogDuration(limit = 50)
-    public Response listTransactionsSG1V1(UriInfo uriInfo, Request request, String xLogToken,
-                                          String regNo, String accountNo, String sort, String elements, String interval) {
-        List<Sort> sortAs = Sort.getSortings(sort);
-        Optional<Element> elementSet = Element.getElement(elements);
-        Optional<Interval> withIn = Interval.getInterval(interval);
-        List<Transaction> transactions = archivist.getTransactions(regNo, accountNo, elementSet, withIn, sortAs);
-        return new EntityResponseBuilder<>(transactions,
-            txs -> new TransactionsRepresentation(regNo, accountNo, transactions, uriInfo), xLogToken)
+    public Response listTransactionsSG1V1(UriInfo uriInfo, Request request, String xLogToken, String regNo, String accountNo,
+                                          List<Sort> sortAs, Optional<Element> elementSet, Optional<Interval> withIn,
+                                          Optional<Cursor> txCursor) {
+        AggregateVersion version = archivist.getTransactionsVersion(regNo, accountNo);
+        Optional<Response> notModified = EntityResponseBuilder.evaluatePreconditions(request, "transactionoverview", "1", version);
+        if (notModified.isPresent()) {
+            return notModified.get();
+        }
+        if (txCursor.isPresent()) {
+            Page<Transaction> page = archivist.getTransactionPage(regNo, accountNo, txCursor, TX_PAGESIZE);
+            return new EntityResponseBuilder<>(page, p -> new TransactionsRepresentation(regNo, accountNo, p, uriInfo), xLogToken)
+                .versioned(version)
+                .name("transactionoverview")
+                .version("1")
+                .maxAge(10)
+                .build(request);
+        }
+        // in the default order the transactions are in keyset order, so the listing may be continued page by page from here
+        Page<Transaction> page = archivist.getTransactions(regNo, accountNo, elementSet, withIn, sortAs);
+        return new EntityResponseBuilder<>(page.getItems(),
+            txs -> new TransactionsRepresentation(regNo, accountNo, page, uriInfo), xLogToken)
+            .versioned(version)
             .name("transactionoverview")
             .version("1")
             .maxAge(10)
@@ -229,6 +330,11 @@ public class TransactionServiceExposure {
 
     @LogDuration(limit = 50)
     public Response getSG1V1(UriInfo uriInfo, Request request, String xLogToken, String regNo, String accountNo, String id) {
+        Optional<Response> notModified = archivist.findTransactionVersion(regNo, accountNo, id)
+            .flatMap(version -> EntityResponseBuilder.evaluatePreconditions(request, "transaction", "1", version));
+        if (notModified.isPresent()) {
+            return notModified.get();
+        }
         Transaction transaction = archivist.getTransaction(regNo, accountNo, id);
         return new EntityResponseBuilder<>(transaction, t -> new TransactionRepresentation(t, uriInfo), xLogToken)
             .maxAge(7 * 24 * 60 * 60)
@@ -237,13 +343,47 @@ public class TransactionServiceExposure {
             .build(request);
     }
 
+    /**
+     * Decodes a transaction cursor holding time and semantic id of a transaction - a cursor which cannot be decoded is a
+     * bad request rather than a request for the first page, as silently restarting the listing would confuse the consumer.
+     */
+    private static Cursor transactionCursor(String cursor) {
+        Optional<Cursor> c = Cursor.decode(cursor);
+        if (!c.isPresent() || c.get().getKeys().size() != 2) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        try {
+            Instant.parse(c.get().getKey(0));
+        } catch (DateTimeParseException e) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return c.get();
+    }
+
+    /**
+     * Writes a transaction as a single line, straight from the entity to the stream without an intermediate representation.
+     */
+    private static void writeTransaction(JsonGenerator json, Transaction tx) {
+        try {
+            json.writeStartObject();
+            json.writeStringField("id", tx.getId());
+            json.writeStringField("description", tx.getDescription());
+            json.writeStringField("amount", tx.getAmount().toPlainString());
+            json.writeStringField("time", tx.getLastModifiedTime().toInstant().toString());
+            json.writeEndObject();
+            json.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     Response handleUnsupportedContentType(UriInfo uriInfo, Request request, String... params) {
         return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build();
     }
 
     interface TransactionsProducerMethod {
-        Response getResponse(UriInfo uriInfo, Request request, String xLogToken,
-                             String regNo, String accountNo, String sort, String elements, String interval);
+        Response getResponse(UriInfo uriInfo, Request request, String xLogToken, String regNo, String accountNo,
+                             List<Sort> sortAs, Optional<Element> elementSet, Optional<Interval> withIn, Optional<Cursor> cursor);
     }
 
     interface TransactionProducerMethod {
@@ -3,7 +3,6 @@ package dk.sample.rest.bank.account.exposure.rs.model;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.core.UriInfo;
@@ -14,6 +13,8 @@ import dk.nykredit.jackson.dataformat.hal.annotation.Link;
 import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
 import dk.sample.rest.bank.account.exposure.rs.AccountServiceExposure;
 import dk.sample.rest.bank.account.model.Account;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 
@@ -28,16 +29,46 @@ public class AccountsRepresentation {
     @Link
     private HALLink self;
 
+    @Link
+    private HALLink next;
+
+    @Link
+    private HALLink prev;
+
     @EmbeddedResource("accounts")
     private Collection<AccountRepresentation> accounts;
 
-    public AccountsRepresentation(List<Account> accounts, UriInfo uriInfo) {
+    /**
+     * Represents a page of the keyset ordered listing of accounts including links to the neighbouring pages.
+     */
+    public AccountsRepresentation(Page<Account> page, int size, UriInfo uriInfo) {
         this.accounts = new ArrayList<>();
-        this.accounts.addAll(accounts.stream().map(account -> new AccountRepresentation(account, uriInfo)).collect(Collectors.toList()));
+        this.accounts.addAll(page.getItems().stream()
+            .map(account -> new AccountRepresentation(account, uriInfo))
+            .collect(Collectors.toList()));
         this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
             .path(AccountServiceExposure.class)
             .build())
             .build();
+        if (page.hasNext()) {
+            page.last().ifPresent(account -> this.next = createPageLink(Cursor.after(cursorKeys(account)), size, uriInfo));
+        }
+        if (page.hasPrevious()) {
+            page.first().ifPresent(account -> this.prev = createPageLink(Cursor.before(cursorKeys(account)), size, uriInfo));
+        }
+    }
+
+    private static String[] cursorKeys(Account account) {
+        return new String[]{account.getRegNo(), account.getAccountNo()};
+    }
+
+    private static HALLink createPageLink(Cursor cursor, int size, UriInfo uriInfo) {
+        return new HALLink.Builder(uriInfo.getBaseUriBuilder()
+            .path(AccountServiceExposure.class)
+            .queryParam("cursor", cursor.encode())
+            .queryParam("size", size)
+            .build())
+            .build();
     }
 
     @ApiModelProperty(
@@ -55,4 +86,20 @@ public class AccountsRepresentation {
     public Collection<AccountRepresentation> getAccounts() {
         return Collections.unmodifiableCollection(accounts);
     }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "next",
+            notes = "link to the next page of accounts, present when the listing continues.")
+    public HALLink getNext() {
+        return next;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "prev",
+            notes = "link to the previous page of accounts, present when the listing has earlier accounts.")
+    public HALLink getPrev() {
+        return prev;
+    }
 }
@@ -0,0 +1,113 @@
+package dk.sample.rest.bank.account.exposure.rs.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import dk.sample.rest.bank.account.exposure.rs.AccountEventServiceExposure;
+import dk.sample.rest.bank.account.model.Event;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents a page of the event feed, i.e. the events within a fixed range of sequence numbers, linked to the pages
+ * before and after it in the style of archived Atom feeds.
+ */
+@Resource
+@ApiModel(value = "EventPage",
+        description = "A page of the event feed, an archived page never changes")
+
+public class EventPageRepresentation {
+    @EmbeddedResource("events")
+    private Collection<EventRepresentation> events;
+
+    @Link
+    private HALLink self;
+
+    @Link("current")
+    private HALLink current;
+
+    @Link("prev-archive")
+    private HALLink prevArchive;
+
+    @Link("next-archive")
+    private HALLink nextArchive;
+
+    /**
+     * @param events  the events of the page in sequence order
+     * @param page    the number of the page counting from 0
+     * @param hasNext true if there are events following the page
+     */
+    public EventPageRepresentation(List<Event> events, long page, boolean hasNext, UriInfo uriInfo) {
+        this.events = events.stream()
+                .map(event -> new EventRepresentation(event, uriInfo))
+                .collect(Collectors.toList());
+        this.self = pageLink(uriInfo, page);
+        this.current = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(AccountEventServiceExposure.class)
+                .path(AccountEventServiceExposure.class, "getCurrentPage")
+                .build())
+                .build();
+        if (page > 0) {
+            this.prevArchive = pageLink(uriInfo, page - 1);
+        }
+        if (hasNext) {
+            this.nextArchive = pageLink(uriInfo, page + 1);
+        }
+    }
+
+    private static HALLink pageLink(UriInfo uriInfo, long page) {
+        return new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(AccountEventServiceExposure.class)
+                .path(AccountEventServiceExposure.class, "getPage")
+                .build(page))
+                .build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "events",
+            value = "the events of the page in sequence order.")
+    public Collection<EventRepresentation> getEvents() {
+        return Collections.unmodifiableCollection(events);
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "self",
+            notes = "link to the page itself.")
+    public HALLink getSelf() {
+        return self;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "current",
+            notes = "link to the page holding the latest events.")
+    public HALLink getCurrent() {
+        return current;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "prev-archive",
+            notes = "link to the page before this one, absent for the first page.")
+    public HALLink getPrevArchive() {
+        return prevArchive;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "next-archive",
+            notes = "link to the page after this one, absent until events following the page exist.")
+    public HALLink getNextArchive() {
+        return nextArchive;
+    }
+}
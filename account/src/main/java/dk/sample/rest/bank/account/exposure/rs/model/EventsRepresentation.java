@@ -31,6 +31,9 @@ public class EventsRepresentation {
     @Link
     private HALLink self;
 
+    @Link
+    private HALLink next;
+
     public EventsRepresentation(List<Event> events, UriInfo uriInfo) {
         this.events = new ArrayList<>();
         this.events.addAll(events.stream()
@@ -42,6 +45,21 @@ public class EventsRepresentation {
                 .build();
     }
 
+    /**
+     * Represents the events following a given sequence number in sequence order including a link to poll for the events
+     * following these.
+     */
+    public EventsRepresentation(List<Event> events, long since, int limit, UriInfo uriInfo) {
+        this(events, uriInfo);
+        long latest = events.isEmpty() ? since : events.get(events.size() - 1).getSequence();
+        this.next = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(AccountEventServiceExposure.class)
+                .queryParam("since", latest)
+                .queryParam("limit", limit)
+                .build())
+                .build();
+    }
+
     @ApiModelProperty(
             access = "public",
             name = "events",
@@ -57,4 +75,12 @@ public class EventsRepresentation {
     public HALLink getSelf() {
         return self;
     }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "next",
+            notes = "link to the events following these, present when the events are read since a sequence number.")
+    public HALLink getNext() {
+        return next;
+    }
 }
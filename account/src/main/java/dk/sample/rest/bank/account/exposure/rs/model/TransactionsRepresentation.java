@@ -15,6 +15,8 @@ import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
 import dk.sample.rest.bank.account.exposure.rs.TransactionServiceExposure;
 import dk.sample.rest.bank.account.model.Account;
 import dk.sample.rest.bank.account.model.Transaction;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 
@@ -32,6 +34,12 @@ public class TransactionsRepresentation {
     @Link
     private HALLink self;
 
+    @Link
+    private HALLink next;
+
+    @Link
+    private HALLink prev;
+
     public TransactionsRepresentation(Account account, UriInfo uriInfo) {
         transactions = new ArrayList<>();
         transactions.addAll(account.getTransactions().stream()
@@ -54,6 +62,31 @@ public class TransactionsRepresentation {
                 .build();
     }
 
+    /**
+     * Represents a page of a keyset ordered listing of transactions including links to the neighbouring pages.
+     */
+    public TransactionsRepresentation(String regNo, String accountNo, Page<Transaction> page, UriInfo uriInfo) {
+        this(regNo, accountNo, page.getItems(), uriInfo);
+        if (page.hasNext()) {
+            page.last().ifPresent(tx -> this.next = createPageLink(regNo, accountNo, Cursor.after(cursorKeys(tx)), uriInfo));
+        }
+        if (page.hasPrevious()) {
+            page.first().ifPresent(tx -> this.prev = createPageLink(regNo, accountNo, Cursor.before(cursorKeys(tx)), uriInfo));
+        }
+    }
+
+    private static String[] cursorKeys(Transaction tx) {
+        return new String[]{tx.getLastModifiedTime().toInstant().toString(), tx.getId()};
+    }
+
+    private static HALLink createPageLink(String regNo, String accountNo, Cursor cursor, UriInfo uriInfo) {
+        return new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(TransactionServiceExposure.class)
+                .queryParam("cursor", cursor.encode())
+                .build(regNo, accountNo))
+                .build();
+    }
+
     @ApiModelProperty(
             access = "public",
             name = "transactions",
@@ -69,4 +102,20 @@ public class TransactionsRepresentation {
     public HALLink getSelf() {
         return self;
     }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "next",
+            notes = "link to the next page of transactions, present when the listing continues.")
+    public HALLink getNext() {
+        return next;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "prev",
+            notes = "link to the previous page of transactions, present when the listing has earlier transactions.")
+    public HALLink getPrev() {
+        return prev;
+    }
 }
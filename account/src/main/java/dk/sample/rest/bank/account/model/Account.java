@@ -4,7 +4,6 @@ import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.UUID;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -15,6 +14,7 @@ import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
+import dk.sample.rest.common.core.id.TimeOrderedUuid;
 import dk.sample.rest.common.persistence.jpa.AbstractAuditable;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -59,7 +59,7 @@ public class Account extends AbstractAuditable {
         this.name = name;
         transactions = new HashSet<>();
         reconciledTransactions = new HashSet<>();
-        tId = UUID.randomUUID().toString();
+        tId = TimeOrderedUuid.nextString();
     }
 
     public String getRegNo() {
@@ -1,6 +1,5 @@
 package dk.sample.rest.bank.account.model;
 
-import java.util.UUID;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -11,6 +10,7 @@ import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
+import dk.sample.rest.common.core.id.TimeOrderedUuid;
 import dk.sample.rest.common.persistence.jpa.AbstractAuditable;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -61,7 +61,7 @@ public class ReconciledTransaction extends AbstractAuditable {
         this.reconciled = getStringFromBoolean(reconciled);
         this.note = note;
         transaction = tx;
-        tId = UUID.randomUUID().toString();
+        tId = TimeOrderedUuid.nextString();
         id = tx.getId();
     }
 
@@ -1,16 +1,17 @@
 package dk.sample.rest.bank.account.model;
 
 import java.math.BigDecimal;
-import java.util.UUID;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
+import dk.sample.rest.common.core.id.TimeOrderedUuid;
 import dk.sample.rest.common.persistence.jpa.AbstractAuditable;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -19,10 +20,11 @@ import org.apache.commons.lang3.builder.ToStringStyle;
  * Very basic modelling of an transaction concept to show the relation to account handled by JPA.
  */
 @Entity
-@Table(name = "BANK_TRANSACTION", uniqueConstraints = @UniqueConstraint(columnNames = { "FK_ACCOUNT_TID", "SID" }))
+@Table(name = "BANK_TRANSACTION", uniqueConstraints = @UniqueConstraint(columnNames = { "FK_ACCOUNT_TID", "SID" }),
+    indexes = @Index(name = "IDX_BANK_TRANSACTION_TS", columnList = "FK_ACCOUNT_TID, LAST_MODIFIED_TS, SID"))
 public class Transaction extends AbstractAuditable {
     private static final String[] EXCLUDED_FIELDS = new String[]{
-        "tId", "account", "lastModifiedBy", "lastModifiedTime"
+        "tId", "account", "lastModifiedBy", "lastModifiedTime", "version"
     };
 
     /**
@@ -60,10 +62,10 @@ public class Transaction extends AbstractAuditable {
         this.account = account;
         this.amount = amount;
         this.description = description;
-        tId = UUID.randomUUID().toString();
+        tId = TimeOrderedUuid.nextString();
         // The semantic key might as well be generated as a hash value of the transaction values
         // for simplicity it is just a unique id here.
-        id = UUID.randomUUID().toString();
+        id = TimeOrderedUuid.nextString();
     }
 
     /**
@@ -1,43 +1,121 @@
 package dk.sample.rest.bank.account.persistence;
 
 import java.sql.Timestamp;
-import java.util.ArrayList;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import javax.annotation.Resource;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
-import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
+import javax.transaction.TransactionSynchronizationRegistry;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import dk.nykredit.api.capabilities.Element;
 import dk.nykredit.api.capabilities.Interval;
 import dk.nykredit.api.capabilities.Sort;
 import dk.sample.rest.bank.account.model.Account;
 import dk.sample.rest.bank.account.model.Event;
+import dk.sample.rest.bank.account.model.OutboxEvent;
 import dk.sample.rest.bank.account.model.ReconciledTransaction;
 import dk.sample.rest.bank.account.model.Transaction;
+import dk.sample.rest.common.core.deadline.TimeBudget;
+import dk.sample.rest.common.core.events.EventBroadcaster;
 import dk.sample.rest.common.core.logging.LogDuration;
+import dk.sample.rest.common.core.metrics.CacheMetrics;
+import dk.sample.rest.common.persistence.jpa.AggregateVersion;
+import dk.sample.rest.common.persistence.jpa.EntityVersion;
+import dk.sample.rest.common.persistence.jpa.QueryTimeouts;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 
 /**
  * Handles archiving (persistence) tasks for the account domain model.
  */
 @Stateless
 @TransactionAttribute(TransactionAttributeType.REQUIRED)
+@TimeBudget(millis = 2000)
 public class AccountArchivist {
-    private static final int TX_DEFAULTSIZE = 5;
+    private static final int ACCOUNT_MAXSIZE = 500;
     private static final int TX_MAXSIZE = 500;
+    private static final int EVENT_MAXSIZE = 500;
+    private static final int TX_FETCHSIZE = 1000;
+    private static final Map<String, String> TX_SORTABLE = new HashMap<>();
+    private static final long EVENT_CACHE_MAXSIZE = 16L * 1024 * 1024;
+    private static final int EVENT_BASESIZE = 1024;
+    private static final Cache<List<String>, Event> EVENTS = CacheMetrics.register("account-events", Caffeine.newBuilder()
+            .maximumWeight(EVENT_CACHE_MAXSIZE)
+            .weigher((List<String> key, Event event) -> weigh(event))
+            .recordStats()
+            .build());
+    private static final int EVENT_SUBSCRIBERS_MAX = 100;
+    private static final int EVENT_SUBSCRIBER_BACKLOG = 1000;
+    private static final int EVENT_WAITERS_MAX = 1000;
+    private static final EventBroadcaster<Event> EVENT_BROADCASTER = new EventBroadcaster<>(EVENT_SUBSCRIBERS_MAX,
+            EVENT_SUBSCRIBER_BACKLOG, EVENT_WAITERS_MAX);
+
+    static {
+        TX_SORTABLE.put("time", "t.lastModifiedTime");
+        TX_SORTABLE.put("amount", "t.amount");
+        TX_SORTABLE.put("description", "t.description");
+    }
+
     @PersistenceContext(unitName = "accountPersistenceUnit")
     private EntityManager em;
 
+    @Resource
+    private TransactionSynchronizationRegistry transactions;
+
+    /**
+     * getting a page of accounts in keyset order, i.e. ordered by registration and account number. The page continues
+     * from the position given by the cursor, thus only a single page of accounts is ever read from the database.
+     *
+     * @param cursor the position to continue from holding registration and account number, empty for the first page
+     * @param size   the maximum number of accounts in the page
+     */
+    @TimeBudget(millis = 8000)
     @LogDuration(limit = 50)
-    public List<Account> listAccounts() {
-        TypedQuery<Account> q = em.createQuery("select a from Account a", Account.class);
-        return q.getResultList();
+    public Page<Account> listAccounts(Optional<Cursor> cursor, int size) {
+        StringBuilder qs = new StringBuilder("select a from Account a");
+        boolean backwards = cursor.isPresent() && !cursor.get().isNext();
+        if (cursor.isPresent()) {
+            String op = backwards ? "<" : ">";
+            qs.append(" where a.regNo").append(op).append(":regNo")
+                    .append(" or (a.regNo=:regNo and a.accountNo").append(op).append(":accountNo)");
+        }
+        qs.append(backwards ? " order by a.regNo desc, a.accountNo desc" : " order by a.regNo, a.accountNo");
+        TypedQuery<Account> q = query(qs.toString(), Account.class);
+        if (cursor.isPresent()) {
+            q.setParameter("regNo", cursor.get().getKey(0));
+            q.setParameter("accountNo", cursor.get().getKey(1));
+        }
+        int limit = Math.min(size, ACCOUNT_MAXSIZE);
+        return Page.of(q.setMaxResults(limit + 1).getResultList(), limit, cursor);
+    }
+
+    /**
+     * getting the version of all accounts as an aggregate computed by the database, a change to any account changes it.
+     */
+    @LogDuration(limit = 50)
+    public AggregateVersion getAccountsVersion() {
+        return query("select new dk.sample.rest.common.persistence.jpa.AggregateVersion(" +
+                "count(a), sum(a.version), max(a.lastModifiedTime)) from Account a", AggregateVersion.class)
+                .getSingleResult();
     }
 
     /**
@@ -46,12 +124,24 @@ public class AccountArchivist {
      */
     @LogDuration(limit = 50)
     public Account getAccount(String regNo, String accountNo) {
-        TypedQuery<Account> q = em.createQuery("select a from Account a where a.regNo=:regNo and a.accountNo=:accountNo", Account.class);
+        TypedQuery<Account> q = query("select a from Account a where a.regNo=:regNo and a.accountNo=:accountNo", Account.class);
         q.setParameter("regNo", regNo);
         q.setParameter("accountNo", accountNo);
         return q.getSingleResult();
     }
 
+    /**
+     * Find the version of an account without reading the account itself.
+     */
+    @LogDuration(limit = 50)
+    public Optional<EntityVersion> findAccountVersion(String regNo, String accountNo) {
+        return query("select new dk.sample.rest.common.persistence.jpa.EntityVersion(a.version, a.lastModifiedTime) " +
+                "from Account a where a.regNo=:regNo and a.accountNo=:accountNo", EntityVersion.class)
+                .setParameter("regNo", regNo)
+                .setParameter("accountNo", accountNo)
+                .getResultList().stream().findFirst();
+    }
+
     @LogDuration(limit = 50)
     public Optional<Account> findAccount(String regNo, String accountNo) {
         try {
@@ -68,7 +158,7 @@ public class AccountArchivist {
 
     @LogDuration(limit = 50)
     public Transaction getTransaction(String regNo, String accountNo, String id) {
-        TypedQuery<Transaction> q = em.createQuery("select t from Transaction t " +
+        TypedQuery<Transaction> q = query("select t from Transaction t " +
                 "where t.account.regNo=:regNo and t.account.accountNo=:accountNo and t.id=:id", Transaction.class);
         q.setParameter("regNo", regNo);
         q.setParameter("accountNo", accountNo);
@@ -76,9 +166,22 @@ public class AccountArchivist {
         return q.getSingleResult();
     }
 
+    /**
+     * Find the version of a transaction without reading the transaction itself.
+     */
+    @LogDuration(limit = 50)
+    public Optional<EntityVersion> findTransactionVersion(String regNo, String accountNo, String id) {
+        return query("select new dk.sample.rest.common.persistence.jpa.EntityVersion(t.version, t.lastModifiedTime) " +
+                "from Transaction t where t.account.regNo=:regNo and t.account.accountNo=:accountNo and t.id=:id", EntityVersion.class)
+                .setParameter("regNo", regNo)
+                .setParameter("accountNo", accountNo)
+                .setParameter("id", id)
+                .getResultList().stream().findFirst();
+    }
+
     @LogDuration(limit = 50)
     public Transaction findTransaction(String regNo, String accountNo, String id) {
-        TypedQuery<Transaction> q = em.createQuery("select t from Transaction t " +
+        TypedQuery<Transaction> q = query("select t from Transaction t " +
                 "where t.account.regNo=:regNo and t.account.accountNo=:accountNo and t.id=:id", Transaction.class);
         q.setParameter("regNo", regNo);
         q.setParameter("accountNo", accountNo);
@@ -88,7 +191,7 @@ public class AccountArchivist {
 
     @LogDuration(limit = 50)
     public ReconciledTransaction getReconciledTransaction(String regNo, String accountNo, String id) {
-        TypedQuery<ReconciledTransaction> q = em.createQuery("select rt from ReconciledTransaction rt " +
+        TypedQuery<ReconciledTransaction> q = query("select rt from ReconciledTransaction rt " +
                 "where rt.account.regNo=:regNo and rt.account.accountNo=:accountNo and rt.id=:id", ReconciledTransaction.class);
         q.setParameter("regNo", regNo);
         q.setParameter("accountNo", accountNo);
@@ -102,23 +205,38 @@ public class AccountArchivist {
     }
 
     /**
-     * getting a set of transactions filtered according to the APi capabilities
+     * getting the version of the transactions on an account as an aggregate computed by the database, a change to any
+     * transaction on the account changes it.
+     */
+    @LogDuration(limit = 50)
+    public AggregateVersion getTransactionsVersion(String regNo, String accountNo) {
+        return query("select new dk.sample.rest.common.persistence.jpa.AggregateVersion(" +
+                "count(t), sum(t.version), max(t.lastModifiedTime)) from Transaction t " +
+                "where t.account.regNo=:regNo and t.account.accountNo=:accountNo", AggregateVersion.class)
+                .setParameter("regNo", regNo)
+                .setParameter("accountNo", accountNo)
+                .getSingleResult();
+    }
+
+    /**
+     * getting a set of transactions filtered according to the APi capabilities. The capabilities are all pushed down
+     * into the query, so only the requested rows are fetched from the database. In the default order the transactions are
+     * in keyset order, the page then knows whether the listing continues beyond it, otherwise the page stands alone.
      *
      * @param elementSet the number of element that is wished returned
      * @param withIn     the interval which the returned items needs to stay within
-     * @param sortAs     attribute to sort by, default is time and supports sorting by amount
+     * @param sortAs     attributes to sort by, default is time and supports sorting by time, amount and description
      */
-    public List<Transaction> getTransactions(String regNo, String accountNo, Optional<Element> elementSet, Optional<Interval> withIn,
+    @TimeBudget(millis = 8000)
+    @LogDuration(limit = 50)
+    public Page<Transaction> getTransactions(String regNo, String accountNo, Optional<Element> elementSet, Optional<Interval> withIn,
             List<Sort> sortAs) {
         StringBuilder qs = new StringBuilder("select t from Transaction t where t.account.regNo=:regNo and t.account.accountNo=:accountNo");
         if (withIn.isPresent()) {
             qs.append(" and t.lastModifiedTime>:startsAt and t.lastModifiedTime<:endsAt");
         }
-        sortAs.stream()
-                .filter(sort -> "amount".equals(sort.getAttribute()))
-                .findAny()
-                .ifPresent(sort -> qs.append(" order by t.").append(sort.getAttribute()).append(" ").append(sort.getDirection()));
-        TypedQuery<Transaction> q = em.createQuery(qs.toString(), Transaction.class);
+        qs.append(orderBy(sortAs));
+        TypedQuery<Transaction> q = query(qs.toString(), Transaction.class);
         q.setParameter("regNo", regNo);
         q.setParameter("accountNo", accountNo);
         if (withIn.isPresent()) {
@@ -127,39 +245,108 @@ public class AccountArchivist {
             Timestamp te = Timestamp.from(withIn.get().getEnd().toInstant());
             q.setParameter("endsAt", te);
         }
-        List<Transaction> txs = q.setMaxResults(TX_MAXSIZE).getResultList();
-        if ((TX_DEFAULTSIZE < txs.size() && (elementSet.isPresent()))) {
-            return reduceElements(elementSet.get(), txs);
+        int first = 1;
+        int limit = TX_MAXSIZE;
+        if (elementSet.isPresent()) {
+            Element element = elementSet.get();
+            first = Math.max(element.getStart(), 1);
+            int elements = element.getEnd() - first + 1;
+            if (elements < 1) {
+                return new Page<>(Collections.emptyList(), false, false);
+            }
+            q.setFirstResult(first - 1);
+            limit = Math.min(elements, TX_MAXSIZE);
+        }
+        if (!sortAs.isEmpty() || withIn.isPresent()) {
+            return new Page<>(q.setMaxResults(limit).getResultList(), false, false);
         }
-        return txs;
+        Page<Transaction> page = Page.of(q.setMaxResults(limit + 1).getResultList(), limit, Optional.empty());
+        return new Page<>(page.getItems(), first > 1, page.hasNext());
+    }
 
+    /**
+     * getting a page of transactions in keyset order, i.e. ordered by time and semantic id. The page continues from the
+     * position given by the cursor, which makes every page a single index range scan independent of the paging depth,
+     * and stable while new transactions arrive.
+     *
+     * @param cursor the position to continue from holding time and semantic id, empty for the first page
+     * @param size   the maximum number of transactions in the page
+     */
+    @TimeBudget(millis = 8000)
+    @LogDuration(limit = 50)
+    public Page<Transaction> getTransactionPage(String regNo, String accountNo, Optional<Cursor> cursor, int size) {
+        StringBuilder qs = new StringBuilder("select t from Transaction t where t.account.regNo=:regNo and t.account.accountNo=:accountNo");
+        boolean backwards = cursor.isPresent() && !cursor.get().isNext();
+        if (cursor.isPresent()) {
+            String op = backwards ? "<" : ">";
+            qs.append(" and (t.lastModifiedTime").append(op).append(":time")
+                    .append(" or (t.lastModifiedTime=:time and t.id").append(op).append(":sid))");
+        }
+        qs.append(backwards ? " order by t.lastModifiedTime desc, t.id desc" : " order by t.lastModifiedTime, t.id");
+        TypedQuery<Transaction> q = query(qs.toString(), Transaction.class);
+        q.setParameter("regNo", regNo);
+        q.setParameter("accountNo", accountNo);
+        if (cursor.isPresent()) {
+            q.setParameter("time", Timestamp.from(Instant.parse(cursor.get().getKey(0))));
+            q.setParameter("sid", cursor.get().getKey(1));
+        }
+        int limit = Math.min(size, TX_MAXSIZE);
+        return Page.of(q.setMaxResults(limit + 1).getResultList(), limit, cursor);
     }
 
     /**
-     * this merely shows that the persistence does not have to support the complete API Capability set
-     * sometimes the use of these capabilities will cause the query to be designed in order to deliver results
-     * in a good and efficient way to the users of the API.
+     * Feeds every transaction on the account to the consumer in keyset order, i.e. by time and semantic id. The
+     * transactions are read through a forward only cursor and evicted from the persistence context once consumed, which
+     * keeps the memory use flat regardless of the number of transactions on the account. The export is streamed after
+     * the response is committed, it is therefore not bounded by a deadline as a timeout would silently truncate it.
+     *
+     * @param consumer the receiver of the transactions, called once per transaction in the order read
      */
-    private List<Transaction> reduceElements(Element elementSet, List<Transaction> txs) {
-        int elements = elementSet.getEnd() - elementSet.getStart() + 1;
-        List<Transaction> txr = new ArrayList<>(elements);
-        int no = 0;
-        for (Transaction tx : txs) {
-            no++;
-            if ((no >= elementSet.getStart()) && (no <= elementSet.getEnd())) {
-                txr.add(tx);
+    @TimeBudget(millis = TimeBudget.UNBOUNDED)
+    @LogDuration(limit = 50)
+    public void exportTransactions(String regNo, String accountNo, Consumer<Transaction> consumer) {
+        Session session = em.unwrap(Session.class);
+        ScrollableResults rows = session.createQuery("select t from Transaction t " +
+                "where t.account.regNo=:regNo and t.account.accountNo=:accountNo order by t.lastModifiedTime, t.id")
+                .setParameter("regNo", regNo)
+                .setParameter("accountNo", accountNo)
+                .setFetchSize(TX_FETCHSIZE)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (rows.next()) {
+                Transaction tx = (Transaction) rows.get(0);
+                consumer.accept(tx);
+                session.evict(tx);
             }
+        } finally {
+            rows.close();
         }
-        return txr;
+    }
 
+    /**
+     * Translates the requested sortings into an order by clause. Only the attributes known to the API are accepted
+     * as they are mapped onto columns, the rest are ignored. The semantic id is always added as the last ordering
+     * making the order deterministic and thus the element ranges stable across requests.
+     */
+    private String orderBy(List<Sort> sortAs) {
+        StringBuilder ob = new StringBuilder(" order by ");
+        sortAs.stream()
+                .filter(sort -> TX_SORTABLE.containsKey(sort.getAttribute()))
+                .forEach(sort -> ob.append(TX_SORTABLE.get(sort.getAttribute())).append(" ").append(sort.getDirection()).append(", "));
+        if (sortAs.stream().noneMatch(sort -> TX_SORTABLE.containsKey(sort.getAttribute()))) {
+            ob.append(TX_SORTABLE.get("time")).append(", ");
+        }
+        return ob.append("t.id").toString();
     }
 
+    @TimeBudget(millis = 8000)
     public List<Event> findEvents(Optional<Interval> withIn) {
         StringBuilder qs = new StringBuilder("select e from Event e");
         if (withIn.isPresent()) {
-            qs.append(" and t.lastModifiedTime>:startsAt and t.lastModifiedTime<:endsAt");
+            qs.append(" where e.lastModifiedTime>:startsAt and e.lastModifiedTime<:endsAt");
         }
-        TypedQuery<Event> q = em.createQuery(qs.toString(), Event.class);
+        TypedQuery<Event> q = query(qs.toString(), Event.class);
         if (withIn.isPresent()) {
             Timestamp ts = Timestamp.from(withIn.get().getStart().toInstant());
             q.setParameter("startsAt", ts);
@@ -169,12 +356,54 @@ public class AccountArchivist {
         return q.getResultList();
     }
 
+    /**
+     * getting the events following a given sequence number in sequence order, i.e. the events emitted since a consumer
+     * last polled the feed. The sequence is indexed thus reading a feed is a range scan of the new events only.
+     *
+     * @param since the sequence number of the latest event already seen, 0 for the beginning of the feed
+     * @param limit the maximum number of events returned
+     */
+    @TimeBudget(millis = 8000)
+    @LogDuration(limit = 50)
+    public List<Event> findEventsSince(long since, int limit) {
+        return query("select e from Event e where e.sequence>:since order by e.sequence", Event.class)
+                .setParameter("since", since)
+                .setMaxResults(Math.min(limit, EVENT_MAXSIZE))
+                .getResultList();
+    }
+
+    /**
+     * getting the events within a range of sequence numbers in sequence order, e.g. a page of the event feed.
+     *
+     * @param after the sequence number preceding the range
+     * @param last  the last sequence number of the range
+     */
+    @TimeBudget(millis = 8000)
+    @LogDuration(limit = 50)
+    public List<Event> findEventsBetween(long after, long last) {
+        return query("select e from Event e where e.sequence>:after and e.sequence<=:last order by e.sequence", Event.class)
+                .setParameter("after", after)
+                .setParameter("last", last)
+                .setMaxResults(EVENT_MAXSIZE)
+                .getResultList();
+    }
+
+    /**
+     * getting the sequence number of the latest event, 0 if there are no events.
+     */
+    @LogDuration(limit = 50)
+    public long getLatestEventSequence() {
+        Long latest = query("select max(e.sequence) from Event e", Long.class).getSingleResult();
+        return latest == null ? 0 : latest;
+    }
+
+    @TimeBudget(millis = 8000)
     public List<Event> getEventsForCategory(String category, Optional<Interval> withIn) {
         StringBuilder qs = new StringBuilder("select e from Event e where e.category=:category");
         if (withIn.isPresent()) {
-            qs.append(" and t.lastModifiedTime>:startsAt and t.lastModifiedTime<:endsAt");
+            qs.append(" and e.lastModifiedTime>:startsAt and e.lastModifiedTime<:endsAt");
         }
-        TypedQuery<Event> q = em.createQuery(qs.toString(), Event.class);
+        TypedQuery<Event> q = query(qs.toString(), Event.class);
         q.setParameter("category", category);
         if (withIn.isPresent()) {
             Interval intv = withIn.get();
@@ -184,23 +413,104 @@ public class AccountArchivist {
         return q.getResultList();
     }
 
+    /**
+     * getting a single event, events are immutable thus an event is only read from the database the first time it is
+     * asked for and is kept, detached, in a cache bounded by the estimated size of the events from then on.
+     */
     public Event getEvent(String category, String id) {
-        TypedQuery<Event> q = em.createQuery("select e from Event e where e.category=:category and e.id=:sid", Event.class);
+        return EVENTS.get(Arrays.asList(category, id), key -> loadEvent(category, id));
+    }
+
+    private Event loadEvent(String category, String id) {
+        TypedQuery<Event> q = query("select e from Event e where e.category=:category and e.id=:sid", Event.class);
         q.setParameter("category", category);
         q.setParameter("sid", id);
-        return q.getResultList().get(0);
+        Event event = q.getResultList().get(0);
+        em.detach(event);
+        return event;
     }
 
+    /**
+     * The estimated size in bytes of an event, the fixed part covers the object headers, timestamps and origin.
+     */
+    private static int weigh(Event event) {
+        return EVENT_BASESIZE + 2 * (length(event.getId()) + length(event.getCategory()) + length(event.getInformation()));
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    /**
+     * subscribing to the events saved by this service instance from now on, the events are published once the
+     * transaction saving them is committed.
+     *
+     * @return the subscription, which must be closed, or empty if there are too many subscribers already
+     */
+    public Optional<EventBroadcaster.Subscription<Event>> subscribeEvents() {
+        return EVENT_BROADCASTER.subscribe();
+    }
+
+    /**
+     * waiting for the next event saved by this service instance without holding a thread, the listener is called once
+     * the transaction saving the event is committed.
+     *
+     * @return the waiter, which must be cancelled if no longer waiting, or empty if there are too many waiting already
+     */
+    public Optional<EventBroadcaster.Waiter<Event>> awaitEvent(Consumer<Event> listener) {
+        return EVENT_BROADCASTER.await(listener);
+    }
+
+    /**
+     * saving an event to the event feed, subscribers are notified once the transaction is committed. The sequence number
+     * of the event must be unique, events signalling changes are saved to the outbox by {@link #save(OutboxEvent)}.
+     */
     public void save(Event newTX) {
-        try {
-            em.persist(newTX);
-        } catch (PersistenceException pe) {
-            // in the example there is no check for collision in sequence, the check for time and sequence uniqueness.
-            // This check must be done in a real life example in order to have choice for that.
-            // The sequence is imho less attractive as a chronological order for the events.
-            // The sequence is that is dependent on central persistence and thus is not very cloud capable
-            // and is going to pose a challenge (taking it to the NP level) in a true distributed setup.
+        em.persist(newTX);
+        EVENT_BROADCASTER.publishAfterCommit(transactions, newTX);
+    }
+
+    /**
+     * saving an event to the outbox as part of the transaction making the change it signals, the event is moved to the
+     * event feed by {@link #dispatchEvents(int)} later on.
+     */
+    public void save(OutboxEvent event) {
+        em.persist(event);
+    }
+
+    /**
+     * moving the oldest events from the outbox to the event feed in a transaction of its own, the events are given the
+     * sequence numbers following the latest event in the order they were saved to the outbox. The outbox rows are locked
+     * and a concurrent dispatch assigning the same sequence numbers is rolled back by the unique sequence index, thus
+     * no event is lost or dispatched twice.
+     *
+     * @param max the maximum number of events to dispatch
+     * @return the number of events dispatched
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @TimeBudget(millis = 5000)
+    @LogDuration(limit = 50)
+    public int dispatchEvents(int max) {
+        List<OutboxEvent> pending = query("select o from OutboxEvent o order by o.time", OutboxEvent.class)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setMaxResults(max)
+                .getResultList();
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        long sequence = getLatestEventSequence();
+        for (OutboxEvent event : pending) {
+            save(event.toEvent(++sequence));
+            em.remove(event);
         }
+        return pending.size();
+    }
+
+    /**
+     * creating a query limited by the deadline of the current request, see {@link QueryTimeouts}.
+     */
+    private <T> TypedQuery<T> query(String qs, Class<T> type) {
+        return QueryTimeouts.limit(em.createQuery(qs, type));
     }
 
 }
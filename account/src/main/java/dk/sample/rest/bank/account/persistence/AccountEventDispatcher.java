@@ -0,0 +1,39 @@
+package dk.sample.rest.bank.account.persistence;
+
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves the events saved to the outbox to the event feed every second in batches, each in a transaction of its own. The
+ * timer is not persistent, every instance of the service dispatches and the events left in the outbox when stopped
+ * are dispatched once an instance is running again.
+ */
+@Singleton
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class AccountEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountEventDispatcher.class);
+    static final int BATCH_SIZE = 100;
+    static final int MAX_BATCHES = 10;
+
+    @EJB
+    private AccountArchivist archivist;
+
+    @Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+    public void dispatch() {
+        try {
+            for (int batch = 0; batch < MAX_BATCHES; batch++) {
+                if (archivist.dispatchEvents(BATCH_SIZE) < BATCH_SIZE) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Dispatching events from the outbox failed, the events are dispatched later on", e);
+        }
+    }
+}
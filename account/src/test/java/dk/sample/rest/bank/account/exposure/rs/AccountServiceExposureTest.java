@@ -2,25 +2,48 @@ package dk.sample.rest.bank.account.exposure.rs;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import dk.sample.rest.bank.account.exposure.rs.model.AccountRepresentation;
 import dk.sample.rest.bank.account.exposure.rs.model.AccountUpdateRepresentation;
 import dk.sample.rest.bank.account.exposure.rs.model.AccountsRepresentation;
 import dk.sample.rest.bank.account.model.Account;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
 import dk.sample.rest.bank.account.persistence.AccountArchivist;
+import dk.sample.rest.common.persistence.jpa.AggregateVersion;
+import dk.sample.rest.common.persistence.jpa.EntityVersion;
+import dk.sample.rest.common.rs.SerializedEntity;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 import dk.sample.rest.common.test.rs.UriBuilderFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -43,22 +66,67 @@ public class AccountServiceExposureTest {
         UriInfo ui = mock(UriInfo.class);
         when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
 
-        when(archivist.listAccounts())
-            .thenReturn(Arrays.asList(new Account("5479", "1", "Checking account"), new Account("5479", "2", "Savings account")));
+        when(archivist.listAccounts(Optional.empty(), 2))
+            .thenReturn(new Page<>(Arrays.asList(new Account("5479", "1", "Checking account"), new Account("5479", "2", "Savings account")),
+                false, true));
+        when(archivist.getAccountsVersion()).thenReturn(new AggregateVersion(2L, 3L, new Timestamp(4096)));
 
-        Response response = service.list(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765");
+        Response response = service.list(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "2");
         AccountsRepresentation accounts = (AccountsRepresentation) response.getEntity();
+        assertEquals(new EntityTag("accountoverview.1.2-3-1000"), response.getEntityTag());
+        assertEquals(new Timestamp(4096), response.getLastModified());
 
         assertEquals(2, accounts.getAccounts().size());
         assertEquals("http://mock/accounts", accounts.getSelf().getHref());
+        assertEquals("http://mock/accounts?cursor=" + Cursor.after("5479", "2").encode() + "&size=2", accounts.getNext().getHref());
+        assertNull(accounts.getPrev());
 
-        response = service.list(ui, request, "application/hal+json;concept=non.existing;type", "this-is-a-Log-Token-that-r0cks-98765");
+        response = service.list(ui, request, "application/hal+json;concept=non.existing;type", "this-is-a-Log-Token-that-r0cks-98765",
+            "", "");
         assertEquals(415,response.getStatus());
 
     }
 
     @Test
-    public void testGet() {
+    public void testListByCursor() {
+        Request request = mock(Request.class);
+
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+
+        Cursor cursor = Cursor.after("5479", "2");
+        when(archivist.getAccountsVersion()).thenReturn(new AggregateVersion(3L, 0L, null));
+        when(archivist.listAccounts(any(), eq(50)))
+            .thenReturn(new Page<>(Collections.singletonList(new Account("5479", "3", "Savings account")), true, false));
+
+        Response response = service.list(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", cursor.encode(), null);
+        AccountsRepresentation accounts = (AccountsRepresentation) response.getEntity();
+
+        assertEquals(1, accounts.getAccounts().size());
+        assertNull(accounts.getNext());
+        assertEquals("http://mock/accounts?cursor=" + Cursor.before("5479", "3").encode() + "&size=50", accounts.getPrev().getHref());
+    }
+
+    @Test
+    public void testGetNotModified() {
+        Request request = mock(Request.class);
+        UriInfo ui = mock(UriInfo.class);
+
+        when(archivist.findAccountVersion("5479", "1234")).thenReturn(Optional.of(new EntityVersion(2L, new Timestamp(4096))));
+        when(request.evaluatePreconditions(new Timestamp(4096), new EntityTag("account.2.2-1000"))).thenReturn(Response.notModified());
+
+        Response response = service.get(ui, request, "5479", "1234", "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765");
+        assertEquals(304, response.getStatus());
+        verify(archivist, never()).getAccount("5479", "1234");
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testListByInvalidSize() {
+        service.list(mock(UriInfo.class), mock(Request.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "0");
+    }
+
+    @Test
+    public void testGet() throws IOException {
         Request request = mock(Request.class);
 
         UriInfo ui = mock(UriInfo.class);
@@ -66,14 +134,16 @@ public class AccountServiceExposureTest {
 
         when(archivist.getAccount("5479", "1234")).thenReturn(new Account("5479", "1234", "Savings account"));
 
-        AccountRepresentation account = (AccountRepresentation) service.get(ui, request, "5479", "1234",
-             "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765").getEntity();
+        Response response = service.get(ui, request, "5479", "1234", "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765");
+        JsonNode account = read((SerializedEntity) response.getEntity());
+        assertEquals(new EntityTag("account.2.0-0"), response.getEntityTag());
+        assertEquals("this-is-a-Log-Token-that-r0cks-98765", response.getHeaderString("X-Log-Token"));
 
-        assertEquals("5479", account.getRegNo());
-        assertEquals("1234", account.getAccountNo());
-        assertEquals("http://mock/accounts/5479-1234", account.getSelf().getHref());
+        assertEquals("5479", account.get("regNo").asText());
+        assertEquals("1234", account.get("accountNo").asText());
+        assertEquals("http://mock/accounts/5479-1234", account.at("/_links/self/href").asText());
 
-        Response response = service.get(ui, request, "5479", "1234",
+        response = service.get(ui, request, "5479", "1234",
             "application/hal+json;concept=account;v=0", "this-is-a-Log-Token-that-r0cks-98765");
         assertEquals(415,response.getStatus());
 
@@ -141,4 +211,48 @@ public class AccountServiceExposureTest {
             "this-is-a-Log-Token-that-r0cks-98765", accountUpdate);
         fail("Should have thrown exception before this step");
     }
+
+    @Test
+    public void testGetCoalesced() throws Exception {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        when(ui.getRequestUri()).thenReturn(URI.create("http://mock/accounts/5479-1234"));
+
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(archivist.getAccount("5479", "1234")).then(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new Account("5479", "1234", "Savings account");
+        });
+
+        FutureTask<Response> first = new FutureTask<>(() -> service.get(ui, mock(Request.class), "5479", "1234",
+            "application/hal+json", "first-log-token"));
+        FutureTask<Response> second = new FutureTask<>(() -> service.get(ui, mock(Request.class), "5479", "1234",
+            "application/hal+json;concept=account;v=2", "second-log-token"));
+        Thread leader = new Thread(first);
+        Thread follower = new Thread(second);
+        try {
+            leader.start();
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            follower.start();
+            while (follower.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertSame(first.get().getEntity(), second.get().getEntity());
+            assertEquals("first-log-token", first.get().getHeaderString("X-Log-Token"));
+            assertEquals("second-log-token", second.get().getHeaderString("X-Log-Token"));
+            verify(archivist, times(1)).getAccount("5479", "1234");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static JsonNode read(SerializedEntity entity) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return new ObjectMapper().readTree(out.toByteArray());
+    }
 }
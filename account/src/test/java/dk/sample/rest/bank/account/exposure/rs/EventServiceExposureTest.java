@@ -1,27 +1,52 @@
 package dk.sample.rest.bank.account.exposure.rs;
 
 
-import dk.sample.rest.bank.account.exposure.rs.model.EventRepresentation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.concurrent.ManagedExecutorService;
 
+import dk.sample.rest.bank.account.exposure.rs.model.EventPageRepresentation;
 import dk.sample.rest.bank.account.exposure.rs.model.EventsRepresentation;
 import dk.sample.rest.bank.account.model.Event;
+import dk.sample.rest.bank.account.model.OutboxEvent;
 import dk.sample.rest.bank.account.persistence.AccountArchivist;
+import dk.sample.rest.common.core.events.EventBroadcaster;
+import dk.sample.rest.common.rs.SerializedEntity;
 import dk.sample.rest.common.test.rs.UriBuilderFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.nykredit.time.CurrentTime;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
@@ -30,12 +55,31 @@ public class EventServiceExposureTest {
     @Mock
     AccountArchivist archivist;
 
+    @Mock
+    ManagedExecutorService executor;
+
+    @Mock
+    AccountListExecutor lists;
+
+    @Mock
+    Executor listExecutor;
+
     @InjectMocks
     AccountEventServiceExposure service;
 
+    @Before
+    public void listInline() {
+        when(lists.executor()).thenReturn(listExecutor);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(listExecutor).execute(any());
+    }
+
     @Test
-    public void testListEvents() throws URISyntaxException {
+    public void testListEvents() throws URISyntaxException, IOException {
         UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
         when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
 
         Request request = mock(Request.class);
@@ -47,47 +91,40 @@ public class EventServiceExposureTest {
         when(event.getSequence()).thenReturn(1234567L);
 
         List<Event> eventList = new ArrayList<>(3);
-        eventList.add(new Event(new URI("accounts/5479-123456/users"),
-                "default", CurrentTime.now()));
-        eventList.add(new Event(new URI("accounts/5479-123456/cards"),
-                "5479-123456-other", CurrentTime.now()));
-        eventList.add(new Event(new URI("accounts/5479-123456/transactions/mockedTxSID"),
-                "5479-123456", CurrentTime.nowAsZonedDateTime().minusDays(1).toInstant()));
+        eventList.add(new OutboxEvent(new URI("accounts/5479-123456/users"), "default", "").toEvent(1L));
+        eventList.add(new OutboxEvent(new URI("accounts/5479-123456/cards"), "5479-123456-other", "").toEvent(2L));
+        eventList.add(new OutboxEvent(new URI("accounts/5479-123456/transactions/mockedTxSID"), "5479-123456", "").toEvent(3L));
 
         when(archivist.findEvents(Optional.empty()))
                 .thenReturn(eventList);
 
-        Response response = service.listAll(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "");
-        EventsRepresentation events = (EventsRepresentation) response.getEntity();
+        Response response = listAll(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", null, null, null);
+        JsonNode events = read((SerializedEntity) response.getEntity());
 
-        assertEquals(3, events.getEvents().size());
-        assertEquals("http://mock/account-events", events.getSelf().getHref());
+        assertEquals(3, events.at("/_embedded/events").size());
+        assertEquals("http://mock/account-events", events.at("/_links/self/href").asText());
 
-        Collection<EventRepresentation> ers = events.getEvents();
         int found = 0;
-        for (EventRepresentation eventRepresentation : ers) {
-            if("default".equals(eventRepresentation.getCategory())) {
-                assertEquals("http://mock/accounts/5479-123456/users", eventRepresentation.getOrigin().getHref());
-                assertEquals("default", eventRepresentation.getCategory());
-                assertEquals("http://mock/account-events/default/" + eventRepresentation.getId(), eventRepresentation.getSelf().getHref());
+        for (JsonNode er : events.at("/_embedded/events")) {
+            if ("default".equals(er.get("category").asText())) {
+                assertEquals("http://mock/accounts/5479-123456/users", er.at("/_links/origin/href").asText());
+                assertEquals("http://mock/account-events/default/" + er.get("id").asText(), er.at("/_links/self/href").asText());
                 found++;
             }
-            if("5479-123456-other".equals(eventRepresentation.getCategory())) {
-                assertEquals("http://mock/accounts/5479-123456/cards", eventRepresentation.getOrigin().getHref());
-                assertEquals("5479-123456-other", eventRepresentation.getCategory());
-                assertEquals("http://mock/account-events/5479-123456-other/" + eventRepresentation.getId(), eventRepresentation.getSelf().getHref());
+            if ("5479-123456-other".equals(er.get("category").asText())) {
+                assertEquals("http://mock/accounts/5479-123456/cards", er.at("/_links/origin/href").asText());
+                assertEquals("http://mock/account-events/5479-123456-other/" + er.get("id").asText(), er.at("/_links/self/href").asText());
                 found++;
             }
-            if("5479-123456".equals(eventRepresentation.getCategory())) {
-                assertEquals("http://mock/accounts/5479-123456/transactions/mockedTxSID", eventRepresentation.getOrigin().getHref());
-                assertEquals("5479-123456", eventRepresentation.getCategory());
-                assertEquals("http://mock/account-events/5479-123456/" +  eventRepresentation.getId(), eventRepresentation.getSelf().getHref());
+            if ("5479-123456".equals(er.get("category").asText())) {
+                assertEquals("http://mock/accounts/5479-123456/transactions/mockedTxSID", er.at("/_links/origin/href").asText());
+                assertEquals("http://mock/account-events/5479-123456/" + er.get("id").asText(), er.at("/_links/self/href").asText());
                 found++;
             }
         }
         assertEquals(3, found);
 
-        response = service.listAll(ui, request, "application/hal+json;no-real-type", "this-is-a-Log-Token-that-r0cks-98765", "");
+        response = listAll(ui, request, "application/hal+json;no-real-type", "this-is-a-Log-Token-that-r0cks-98765", "", null, null, null);
         assertEquals(415,response.getStatus());
 
     }
@@ -95,6 +132,7 @@ public class EventServiceExposureTest {
     @Test
     public void testListEventsByCategory() throws URISyntaxException {
         UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
         when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
 
         Request request = mock(Request.class);
@@ -105,8 +143,8 @@ public class EventServiceExposureTest {
         when(event.getSequence()).thenReturn(1234567L);
 
         when(archivist.getEventsForCategory(Event.getCategory("5479", "123456"), Optional.empty()))
-                .thenReturn(Collections.singletonList(new Event(new URI("account-events/5479-1234567/eventSID"),
-                        "5479-123456", CurrentTime.now())));
+                .thenReturn(Collections.singletonList(new OutboxEvent(new URI("account-events/5479-1234567/eventSID"),
+                        "5479-123456", "").toEvent(1L)));
 
         Response response = service.getByCategory(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
             "5479-123456", "");
@@ -121,9 +159,10 @@ public class EventServiceExposureTest {
     }
 
     @Test
-    public void testGetEvent() throws URISyntaxException {
+    public void testGetEvent() throws Exception {
         UriInfo ui = mock(UriInfo.class);
         when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
 
         Request request = mock(Request.class);
 
@@ -134,15 +173,22 @@ public class EventServiceExposureTest {
         when(event.getSequence()).thenReturn(1234567L);
 
         when(archivist.getEvent("5479-123456","eventSID"))
-                .thenReturn(new Event(new URI("accounts/5479-1234567/transactions/txSID")));
+                .thenReturn(new OutboxEvent(new URI("accounts/5479-1234567/transactions/txSID"), "default", "").toEvent(1L));
 
         Response response = service.getSingle(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
             "5479-123456", "eventSID");
-        EventRepresentation er = (EventRepresentation) response.getEntity();
+        JsonNode er = read((SerializedEntity) response.getEntity());
+
+        assertEquals("http://mock/accounts/5479-1234567/transactions/txSID", er.at("/_links/origin/href").asText());
+        assertEquals("default", er.get("category").asText());
+        assertEquals("http://mock/account-events/default/" + er.get("id").asText(), er.at("/_links/self/href").asText());
+        assertEquals("application/hal+json;concept=event;v=1", response.getMediaType().toString());
 
-        assertEquals("http://mock/accounts/5479-1234567/transactions/txSID", er.getOrigin().getHref());
-        assertEquals("default", er.getCategory());
-        assertEquals("http://mock/account-events/default/" + er.getId(), er.getSelf().getHref());
+        Response cached = service.getSingle(ui, request, "application/hal+json;concept=event;v=1", "this-is-a-Log-Token-that-r0cks-98765",
+            "5479-123456", "eventSID");
+        assertSame(response.getEntity(), cached.getEntity());
+        assertEquals(response.getEntityTag(), cached.getEntityTag());
+        verify(archivist, times(1)).getEvent("5479-123456", "eventSID");
 
         response = service.getSingle(ui, request, "application/hal+json;no-real-type", "this-is-a-Log-Token-that-r0cks-98765",
             "5479-123456", "eventSID");
@@ -150,4 +196,212 @@ public class EventServiceExposureTest {
 
     }
 
+    private static JsonNode read(SerializedEntity entity) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return new ObjectMapper().readTree(out.toByteArray());
+    }
+
+    @Test
+    public void testListEventsSince() throws URISyntaxException, IOException {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+
+        Request request = mock(Request.class);
+
+        List<Event> eventList = new ArrayList<>(2);
+        eventList.add(sequencedEvent("eventSID1", 41L));
+        eventList.add(sequencedEvent("eventSID2", 42L));
+        when(archivist.findEventsSince(40L, 2)).thenReturn(eventList);
+
+        Response response = listAll(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "40", "2", null);
+        JsonNode events = read((SerializedEntity) response.getEntity());
+
+        assertEquals(2, events.at("/_embedded/events").size());
+        assertEquals("http://mock/account-events?since=42&limit=2", events.at("/_links/next/href").asText());
+
+        when(archivist.findEventsSince(42L, 2)).thenReturn(Collections.emptyList());
+        response = listAll(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "42", "2", null);
+        events = read((SerializedEntity) response.getEntity());
+
+        assertEquals(0, events.at("/_embedded/events").size());
+        assertEquals("http://mock/account-events?since=42&limit=2", events.at("/_links/next/href").asText());
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testListEventsSinceInvalid() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+
+        listAll(ui, mock(Request.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "-1", null, null);
+    }
+
+    @Test
+    public void testStreamEvents() throws Exception {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+
+        EventBroadcaster<Event> broadcaster = new EventBroadcaster<>(1, 1, 0);
+        when(archivist.subscribeEvents()).then(invocation -> broadcaster.subscribe());
+        List<Event> missed = Arrays.asList(sequencedEvent("streamSID1", 41L), sequencedEvent("streamSID2", 42L));
+        when(archivist.findEventsSince(40L, 100)).thenReturn(missed);
+
+        Response response = service.stream(ui, "this-is-a-Log-Token-that-r0cks-98765", "40");
+        assertEquals(200, response.getStatus());
+        assertEquals("text/event-stream", response.getMediaType().toString());
+        assertEquals(1, broadcaster.subscribers());
+
+        Response rejected = service.stream(ui, "this-is-a-Log-Token-that-r0cks-98765", null);
+        assertEquals(503, rejected.getStatus());
+
+        // the published event was also read as missed, the next one overflows the subscription which ends the stream
+        broadcaster.publish(sequencedEvent("streamSID2", 42L));
+        broadcaster.publish(sequencedEvent("streamSID3", 43L));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals("retry: 3000", lines[0]);
+        assertEquals("id: 41", lines[2]);
+        assertTrue(lines[3].startsWith("data: {"));
+        assertEquals("id: 42", lines[5]);
+        assertEquals(7, lines.length);
+        assertEquals(0, broadcaster.subscribers());
+    }
+
+    @Test
+    public void testAwaitEvents() throws URISyntaxException {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+
+        EventBroadcaster<Event> broadcaster = new EventBroadcaster<>(0, 1, 1);
+        when(archivist.awaitEvent(any())).then(invocation -> broadcaster.await(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(executor).execute(any(Runnable.class));
+        Event event = sequencedEvent("eventSID43", 43L);
+        when(archivist.findEventsSince(42L, 100)).thenReturn(Collections.emptyList(), Collections.singletonList(event));
+
+        AsyncResponse response = mock(AsyncResponse.class);
+        service.listAll(ui, mock(Request.class), mock(HttpHeaders.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
+            "", "42", null, "90s", response);
+        verify(response).setTimeout(60, TimeUnit.SECONDS);
+        verify(response, never()).resume(any(Object.class));
+        assertEquals(1, broadcaster.waiters());
+
+        broadcaster.publish(event);
+        EventsRepresentation events = (EventsRepresentation) resumed(response).getEntity();
+        assertEquals(1, events.getEvents().size());
+        assertEquals("http://mock/account-events?since=43&limit=100", events.getNext().getHref());
+        assertEquals(0, broadcaster.waiters());
+    }
+
+    @Test
+    public void testAwaitEventsTimeout() throws URISyntaxException {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+
+        EventBroadcaster<Event> broadcaster = new EventBroadcaster<>(0, 1, 1);
+        when(archivist.awaitEvent(any())).then(invocation -> broadcaster.await(invocation.getArgument(0)));
+        when(archivist.findEventsSince(42L, 2)).thenReturn(Collections.emptyList());
+
+        AsyncResponse response = mock(AsyncResponse.class);
+        service.listAll(ui, mock(Request.class), mock(HttpHeaders.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
+            "", "42", "2", "30", response);
+        ArgumentCaptor<TimeoutHandler> timeout = ArgumentCaptor.forClass(TimeoutHandler.class);
+        verify(response).setTimeoutHandler(timeout.capture());
+        verify(response).setTimeout(30, TimeUnit.SECONDS);
+
+        timeout.getValue().handleTimeout(response);
+        EventsRepresentation events = (EventsRepresentation) resumed(response).getEntity();
+        assertEquals(0, events.getEvents().size());
+        assertEquals("http://mock/account-events?since=42&limit=2", events.getNext().getHref());
+        assertEquals(0, broadcaster.waiters());
+    }
+
+    @Test
+    public void testArchivedEventPage() throws Exception {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+
+        List<Event> events = Arrays.asList(sequencedEvent("pageSID1", 41L), sequencedEvent("pageSID2", 42L));
+        Event following = sequencedEvent("pageSID3", 501L);
+        when(following.getTime()).thenReturn(CurrentTime.now().minusSeconds(3600));
+        when(archivist.findEventsSince(500L, 1)).thenReturn(Collections.singletonList(following));
+        when(archivist.findEventsBetween(0L, 500L)).thenReturn(events);
+
+        Response response = service.getPage(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "0");
+        assertEquals("no-transform, max-age=31536000, immutable", response.getHeaderString("Cache-Control"));
+        assertEquals("application/hal+json;concept=eventpage;v=1", response.getMediaType().toString());
+        JsonNode page = read((SerializedEntity) response.getEntity());
+        assertEquals(2, page.at("/_embedded/events").size());
+        assertEquals("http://mock/account-events/pages/1", page.at("/_links/next-archive/href").asText());
+        assertEquals("http://mock/account-events/pages", page.at("/_links/current/href").asText());
+        assertTrue(page.at("/_links/prev-archive").isMissingNode());
+
+        Response cached = service.getPage(ui, request, "application/hal+json;concept=eventpage;v=1", "this-is-a-Log-Token-that-r0cks-98765",
+            "0");
+        assertSame(response.getEntity(), cached.getEntity());
+        assertEquals(response.getEntityTag(), cached.getEntityTag());
+        verify(archivist, times(1)).findEventsBetween(0L, 500L);
+    }
+
+    @Test
+    public void testCurrentEventPage() throws URISyntaxException {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+
+        when(archivist.getLatestEventSequence()).thenReturn(1042L);
+        List<Event> events = Collections.singletonList(sequencedEvent("pageSID1042", 1042L));
+        when(archivist.findEventsSince(1500L, 1)).thenReturn(Collections.emptyList());
+        when(archivist.findEventsBetween(1000L, 1500L)).thenReturn(events);
+
+        Response response = service.getCurrentPage(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765");
+        EventPageRepresentation page = (EventPageRepresentation) response.getEntity();
+        assertEquals(1, page.getEvents().size());
+        assertEquals("http://mock/account-events/pages/2", page.getSelf().getHref());
+        assertEquals("http://mock/account-events/pages/1", page.getPrevArchive().getHref());
+        assertNull(page.getNextArchive());
+        assertEquals("no-transform, max-age=5", response.getHeaderString("Cache-Control"));
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testEventPageBeyondLatest() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+
+        service.getPage(ui, mock(Request.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "7");
+    }
+
+    private Response listAll(UriInfo ui, Request request, String accept, String token, String interval, String since, String limit,
+                             String wait) {
+        AsyncResponse response = mock(AsyncResponse.class);
+        service.listAll(ui, request, mock(HttpHeaders.class), accept, token, interval, since, limit, wait, response);
+        return resumed(response);
+    }
+
+    private static Response resumed(AsyncResponse response) {
+        ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        verify(response).resume(resumed.capture());
+        return resumed.getValue();
+    }
+
+    private static Event sequencedEvent(String id, long sequence) throws URISyntaxException {
+        Event event = mock(Event.class);
+        when(event.getId()).thenReturn(id);
+        when(event.getCategory()).thenReturn("default");
+        when(event.getInformation()).thenReturn("event information");
+        when(event.getOrigin()).thenReturn(new URI("accounts/1234567890"));
+        when(event.getTime()).thenReturn(CurrentTime.now());
+        when(event.getSequence()).thenReturn(sequence);
+        return event;
+    }
 }
@@ -1,16 +1,36 @@
 package dk.sample.rest.bank.account.exposure.rs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import dk.sample.rest.bank.account.exposure.rs.model.TransactionRepresentation;
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import dk.nykredit.api.capabilities.Sort;
@@ -18,9 +38,14 @@ import dk.sample.rest.bank.account.exposure.rs.model.TransactionsRepresentation;
 import dk.sample.rest.bank.account.model.Account;
 import dk.sample.rest.bank.account.model.Transaction;
 import dk.sample.rest.bank.account.persistence.AccountArchivist;
+import dk.sample.rest.common.persistence.jpa.AggregateVersion;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 import dk.sample.rest.common.test.rs.UriBuilderFactory;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -31,36 +56,169 @@ public class TransactionServiceExposureTest {
     @Mock
     AccountArchivist archivist;
 
+    @Mock
+    AccountListExecutor lists;
+
+    @Mock
+    Executor listExecutor;
+
     @InjectMocks
     TransactionServiceExposure service;
 
+    @Before
+    public void listInline() {
+        when(lists.executor()).thenReturn(listExecutor);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(listExecutor).execute(any());
+    }
+
     @Test
     public void testList() {
         UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
         when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
 
         Request request = mock(Request.class);
+        when(archivist.getTransactionsVersion("5479", "123456")).thenReturn(new AggregateVersion(1L, 0L, null));
 
         Account account = mock(Account.class);
         when(account.getRegNo()).thenReturn("5479");
         when(account.getAccountNo()).thenReturn("123456");
         List<Sort> sort = Collections.emptyList();
-        when(archivist.getTransactions("5479", "123456", Optional.empty(), Optional.empty(), sort)).thenReturn(
-                Collections.singletonList(new Transaction(account, new BigDecimal("1234.42"), "description")));
+        when(archivist.getTransactions("5479", "123456", Optional.empty(), Optional.empty(), sort)).thenReturn(new Page<>(
+                Collections.singletonList(new Transaction(account, new BigDecimal("1234.42"), "description")), false, true));
 
-        Response response = service.list(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
-            "5479", "123456", "", "", "");
+        Response response = list(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
+            "5479", "123456", "", "", "", "");
         TransactionsRepresentation transactions = (TransactionsRepresentation) response.getEntity();
 
         assertEquals(1, transactions.getTransactions().size());
         assertEquals("http://mock/accounts/5479-123456/transactions", transactions.getSelf().getHref());
+        assertTrue(transactions.getNext().getHref().startsWith("http://mock/accounts/5479-123456/transactions?cursor="));
+        assertNull(transactions.getPrev());
 
-        response = service.list(ui, request, "application/hal+json;concept=non.existing;type", "this-is-a-Log-Token-that-r0cks-98765"
+        response = list(ui, request, "application/hal+json;concept=non.existing;type", "this-is-a-Log-Token-that-r0cks-98765"
             ,"5479", "123456",
-                "", "", "");
+                "", "", "", "");
         assertEquals(415,response.getStatus());
     }
 
+    @Test
+    public void testListLastPage() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        when(archivist.getTransactionsVersion("5479", "123456")).thenReturn(new AggregateVersion(1L, 0L, null));
+
+        Account account = mock(Account.class);
+        when(account.getRegNo()).thenReturn("5479");
+        when(account.getAccountNo()).thenReturn("123456");
+        when(archivist.getTransactions("5479", "123456", Optional.empty(), Optional.empty(), Collections.emptyList())).thenReturn(
+                new Page<>(Collections.singletonList(new Transaction(account, new BigDecimal("1234.42"), "description")), false, false));
+
+        Response response = list(ui, mock(Request.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
+            "5479", "123456", "", "", "", "");
+        TransactionsRepresentation transactions = (TransactionsRepresentation) response.getEntity();
+
+        assertEquals(1, transactions.getTransactions().size());
+        assertNull(transactions.getNext());
+        assertNull(transactions.getPrev());
+    }
+
+    @Test
+    public void testListByCursor() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+
+        Request request = mock(Request.class);
+        when(archivist.getTransactionsVersion("5479", "123456")).thenReturn(new AggregateVersion(1L, 0L, null));
+
+        Account account = mock(Account.class);
+        when(account.getRegNo()).thenReturn("5479");
+        when(account.getAccountNo()).thenReturn("123456");
+        Cursor cursor = Cursor.after("2017-01-01T10:00:00Z", "xxx-yyy");
+        when(archivist.getTransactionPage(eq("5479"), eq("123456"), any(), anyInt())).thenReturn(new Page<>(
+                Collections.singletonList(new Transaction(account, new BigDecimal("1234.42"), "description")), true, true));
+
+        Response response = list(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
+            "5479", "123456", "", "", "", cursor.encode());
+        TransactionsRepresentation transactions = (TransactionsRepresentation) response.getEntity();
+
+        assertEquals(1, transactions.getTransactions().size());
+        assertTrue(transactions.getNext().getHref().startsWith("http://mock/accounts/5479-123456/transactions?cursor=n."));
+        assertTrue(transactions.getPrev().getHref().startsWith("http://mock/accounts/5479-123456/transactions?cursor=p."));
+    }
+
+    @Test
+    public void testListByInvalidCursor() {
+        UriInfo ui = mock(UriInfo.class);
+        Request request = mock(Request.class);
+        try {
+            list(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
+                "5479", "123456", "", "", "", "not-a-cursor");
+            fail("an invalid cursor is a bad request");
+        } catch (WebApplicationException e) {
+            assertEquals(400, e.getResponse().getStatus());
+            verify(listExecutor, never()).execute(any());
+        }
+    }
+
+    @Test
+    public void testListOffRequestThread() throws Exception {
+        Thread requestThread = Thread.currentThread();
+        Request request = mock(Request.class, invocation -> {
+            assertSame("the request is bound to the request thread", requestThread, Thread.currentThread());
+            return "getMethod".equals(invocation.getMethod().getName()) ? "GET" : null;
+        });
+        HttpHeaders headers = mock(HttpHeaders.class, invocation -> {
+            assertSame("the headers are bound to the request thread", requestThread, Thread.currentThread());
+            return HttpHeaders.IF_NONE_MATCH.equals(invocation.getArgument(0)) ? "\"transactionoverview.1.1-0-1000\"" : null;
+        });
+        doAnswer(invocation -> {
+            Thread pooled = new Thread(invocation.<Runnable>getArgument(0));
+            pooled.start();
+            pooled.join();
+            return null;
+        }).when(listExecutor).execute(any());
+        when(archivist.getTransactionsVersion("5479", "123456")).thenReturn(new AggregateVersion(1L, 0L, new Timestamp(4096)));
+
+        Response response = list(mock(UriInfo.class), request, headers, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
+            "5479", "123456", "", "", "", "");
+        assertEquals(304, response.getStatus());
+        verify(archivist, never()).getTransactions(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        Account account = mock(Account.class);
+        when(archivist.findAccount("5479", "123456")).thenReturn(Optional.of(account));
+        doAnswer(invocation -> {
+            Consumer<Transaction> consumer = invocation.getArgument(2);
+            consumer.accept(new Transaction("tx-1", account, new BigDecimal("1234.42"), "first"));
+            consumer.accept(new Transaction("tx-2", account, new BigDecimal("-12.50"), "second"));
+            return null;
+        }).when(archivist).exportTransactions(eq("5479"), eq("123456"), any());
+
+        Response response = service.export("this-is-a-Log-Token-that-r0cks-98765", "5479", "123456");
+        assertEquals("application/x-ndjson;concept=transactionexport;v=1", response.getMediaType().toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"id\":\"tx-1\",\"description\":\"first\",\"amount\":\"1234.42\",\"time\":\"1970-01-01T00:00:00Z\"}", lines[0]);
+        assertEquals("{\"id\":\"tx-2\",\"description\":\"second\",\"amount\":\"-12.50\",\"time\":\"1970-01-01T00:00:00Z\"}", lines[1]);
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testExportUnknownAccount() {
+        when(archivist.findAccount("5479", "123456")).thenReturn(Optional.empty());
+        service.export("this-is-a-Log-Token-that-r0cks-98765", "5479", "123456");
+    }
+
     @Test
     public void testGet() {
         UriInfo ui = mock(UriInfo.class);
@@ -107,4 +265,23 @@ public class TransactionServiceExposureTest {
         assertEquals("http://mock/accounts/5479-123456/transactions/human-readable-semantic-identifier", transaction.getSelf().getHref());
     }
 
+
+    private Response list(UriInfo ui, Request request, String accept, String token, String regNo, String accountNo,
+                          String sort, String elements, String interval, String cursor) {
+        return list(ui, request, mock(HttpHeaders.class), accept, token, regNo, accountNo, sort, elements, interval, cursor);
+    }
+
+    private Response list(UriInfo ui, Request request, HttpHeaders headers, String accept, String token, String regNo, String accountNo,
+                          String sort, String elements, String interval, String cursor) {
+        AsyncResponse response = mock(AsyncResponse.class);
+        service.list(ui, request, headers, accept, token, regNo, accountNo, sort, elements, interval, cursor, response);
+        ArgumentCaptor<Throwable> failure = ArgumentCaptor.forClass(Throwable.class);
+        verify(response, atMost(1)).resume(failure.capture());
+        if (!failure.getAllValues().isEmpty()) {
+            throw (RuntimeException) failure.getValue();
+        }
+        ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        verify(response).resume(resumed.capture());
+        return resumed.getValue();
+    }
 }
@@ -0,0 +1,24 @@
+package dk.sample.rest.bank.account.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+public class OutboxEventTest {
+
+    @Test
+    public void testToEvent() throws Exception {
+        OutboxEvent outboxed = new OutboxEvent(new URI("accounts/5479-123456/transactions/txSID"), "5479-123456",
+            "new transaction on account 5479-123456");
+        Event event = outboxed.toEvent(42);
+
+        assertEquals(outboxed.getId(), event.getId());
+        assertEquals(Long.valueOf(42), event.getSequence());
+        assertEquals(outboxed.getTime(), event.getTime());
+        assertEquals("5479-123456", event.getCategory());
+        assertEquals("new transaction on account 5479-123456", event.getInformation());
+        assertEquals(new URI("accounts/5479-123456/transactions/txSID"), event.getOrigin());
+    }
+}
@@ -0,0 +1,68 @@
+package dk.sample.rest.bank.account.persistence;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import dk.sample.rest.bank.account.model.Transaction;
+import dk.sample.rest.common.rs.paging.Page;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AccountArchivistTest {
+
+    @Mock
+    EntityManager em;
+
+    @Mock
+    TypedQuery<Transaction> query;
+
+    @InjectMocks
+    AccountArchivist archivist;
+
+    @Before
+    public void transactionQuery() {
+        when(em.createQuery(anyString(), eq(Transaction.class))).thenReturn(query);
+        when(query.setMaxResults(anyInt())).thenReturn(query);
+    }
+
+    @Test
+    public void testTransactionsLastPage() {
+        when(query.getResultList()).thenReturn(Collections.singletonList(mock(Transaction.class)));
+
+        Page<Transaction> page = archivist.getTransactions("5479", "123456", Optional.empty(), Optional.empty(), Collections.emptyList());
+        assertEquals(1, page.getItems().size());
+        assertFalse(page.hasPrevious());
+        assertFalse(page.hasNext());
+        verify(query).setMaxResults(501);
+    }
+
+    @Test
+    public void testTransactionsContinued() {
+        Transaction[] rows = new Transaction[501];
+        Arrays.fill(rows, mock(Transaction.class));
+        when(query.getResultList()).thenReturn(Arrays.asList(rows));
+
+        Page<Transaction> page = archivist.getTransactions("5479", "123456", Optional.empty(), Optional.empty(), Collections.emptyList());
+        assertEquals(500, page.getItems().size());
+        assertTrue(page.hasNext());
+    }
+}
@@ -0,0 +1,42 @@
+package dk.sample.rest.benchmark.core.id;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import dk.sample.rest.common.core.id.TimeOrderedUuid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares generating the key of an entity as a time ordered UUID to the random UUID previously used, on four threads
+ * as the random UUIDs share a single secure random source.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TimeOrderedUuidBenchmark {
+
+    @Benchmark
+    public String timeOrdered() {
+        return TimeOrderedUuid.nextString();
+    }
+
+    @Benchmark
+    public String random() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public byte[] timeOrderedBinary() {
+        return TimeOrderedUuid.toBytes(TimeOrderedUuid.next());
+    }
+}
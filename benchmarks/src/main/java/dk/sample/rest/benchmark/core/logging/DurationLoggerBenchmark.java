@@ -0,0 +1,47 @@
+package dk.sample.rest.benchmark.core.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import dk.sample.rest.common.core.logging.DurationLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures starting and stopping duration loggers as done for every intercepted call, a single one and one nesting
+ * two children like a service calling an archivist twice. The limits are never exceeded, hence nothing is logged
+ * unless debug logging is enabled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationLoggerBenchmark {
+    private static final long LIMIT = 60_000;
+
+    @Benchmark
+    public long single() {
+        DurationLogger logger = new DurationLogger(DurationLoggerBenchmark.class, "single", null, LIMIT);
+        logger.stop();
+        return logger.getDuration();
+    }
+
+    @Benchmark
+    public long nested() {
+        DurationLogger parent = new DurationLogger(DurationLoggerBenchmark.class, "nested", "5479,1234567", LIMIT);
+        DurationLogger first = new DurationLogger(DurationLoggerBenchmark.class, "first", "5479", LIMIT);
+        first.stop();
+        DurationLogger second = new DurationLogger(DurationLoggerBenchmark.class, "second", "1234567", LIMIT);
+        second.stop();
+        parent.stop();
+        return parent.getDuration() + first.getDuration() + second.getDuration();
+    }
+}
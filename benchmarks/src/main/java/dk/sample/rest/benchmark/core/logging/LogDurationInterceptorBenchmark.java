@@ -0,0 +1,125 @@
+package dk.sample.rest.benchmark.core.logging;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.interceptor.InvocationContext;
+
+import dk.sample.rest.common.core.logging.LogDuration;
+import dk.sample.rest.common.core.logging.LogDurationInterceptor;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the interception of a call annotated with {@link LogDuration}, for parameters short enough to be logged as
+ * is and for a parameter long enough to be truncated. The parameters are only turned into text if the duration is
+ * logged, thus with debug logging off the two should not differ.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogDurationInterceptorBenchmark {
+    private LogDurationInterceptor interceptor;
+    private InvocationContext shortParameters;
+    private InvocationContext longParameters;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        interceptor = new LogDurationInterceptor();
+        Service service = new Service();
+        Method method = Service.class.getMethod("update", String.class, String.class, Object.class);
+        shortParameters = new Invocation(service, method, new Object[]{"5479", "1234567", null});
+        longParameters = new Invocation(service, method, new Object[]{"5479", "1234567", StringUtils.repeat("Starbucks Coffee\n", 30)});
+    }
+
+    @Benchmark
+    public Object interceptShortParameters() throws Exception {
+        return interceptor.logDuration(shortParameters);
+    }
+
+    @Benchmark
+    public Object interceptLongParameters() throws Exception {
+        return interceptor.logDuration(longParameters);
+    }
+
+    /**
+     * The intercepted target, the limit is never exceeded hence nothing is logged unless debug logging is enabled.
+     */
+    public static class Service {
+        @LogDuration(limit = 60_000)
+        public Object update(String regNo, String accountNo, Object update) {
+            return update;
+        }
+    }
+
+    /**
+     * Invocation context of a call to the target which proceeds without invoking the target method.
+     */
+    private static final class Invocation implements InvocationContext {
+        private final Object target;
+        private final Method method;
+        private final Map<String, Object> contextData = new HashMap<>();
+        private Object[] parameters;
+
+        private Invocation(Object target, Method method, Object[] parameters) {
+            this.target = target;
+            this.method = method;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object getTarget() {
+            return target;
+        }
+
+        @Override
+        public Object getTimer() {
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Constructor<?> getConstructor() {
+            return null;
+        }
+
+        @Override
+        public Object[] getParameters() {
+            return parameters;
+        }
+
+        @Override
+        public void setParameters(Object[] params) {
+            this.parameters = params;
+        }
+
+        @Override
+        public Map<String, Object> getContextData() {
+            return contextData;
+        }
+
+        @Override
+        public Object proceed() {
+            return parameters[parameters.length - 1];
+        }
+    }
+}
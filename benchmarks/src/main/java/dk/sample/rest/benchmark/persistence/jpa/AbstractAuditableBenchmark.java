@@ -0,0 +1,65 @@
+package dk.sample.rest.benchmark.persistence.jpa;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import dk.sample.rest.bank.account.model.Account;
+import dk.sample.rest.bank.account.model.Transaction;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares equals and hashCode of the entities, which read the fields through cached method handles, to the reflective
+ * builders of commons-lang previously used, for the same set of fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AbstractAuditableBenchmark {
+    private static final String[] TRANSACTION_EXCLUDED_FIELDS = new String[]{
+        "tId", "account", "lastModifiedBy", "lastModifiedTime", "version"
+    };
+
+    private Transaction transaction;
+    private Transaction same;
+
+    @Setup
+    public void setup() {
+        Account account = new Account("5479", "1234567", "Checking account");
+        transaction = new Transaction("tx-1", account, new BigDecimal("1234.42"), "Starbucks Coffee");
+        same = new Transaction("tx-1", account, new BigDecimal("1234.42"), "Starbucks Coffee");
+    }
+
+    @Benchmark
+    public int hashCodeCached() {
+        return transaction.hashCode();
+    }
+
+    @Benchmark
+    public int hashCodeReflective() {
+        return HashCodeBuilder.reflectionHashCode(transaction, TRANSACTION_EXCLUDED_FIELDS);
+    }
+
+    @Benchmark
+    public boolean equalsCached() {
+        return transaction.equals(same);
+    }
+
+    @Benchmark
+    public boolean equalsReflective() {
+        return EqualsBuilder.reflectionEquals(transaction, same, TRANSACTION_EXCLUDED_FIELDS);
+    }
+}
@@ -0,0 +1,111 @@
+package dk.sample.rest.benchmark.persistence.jpa;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import dk.sample.rest.common.core.id.TimeOrderedUuid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures inserting rows keyed by random UUIDs in <code>CHAR(36)</code> columns, as previously done by the entities,
+ * against time ordered UUIDs in <code>CHAR(36)</code> and <code>BINARY(16)</code> columns, into a file based H2 database
+ * holding 200.000 rows up front. Every operation inserts and commits a batch of 100 rows into a table shaped like the
+ * events, i.e. a primary key and a secondary unique index on the semantic key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyInsertBenchmark {
+    private static final int ROWS = 200_000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"random-char", "ordered-char", "ordered-binary"})
+    private String keys;
+
+    private Path directory;
+    private Connection connection;
+    private PreparedStatement insert;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        directory = Files.createTempDirectory("keys");
+        connection = DriverManager.getConnection("jdbc:h2:" + directory.resolve("keys").toAbsolutePath(), "sa", "");
+        connection.setAutoCommit(false);
+        String type = isBinary() ? "BINARY(16)" : "CHAR(36)";
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE EVENT (TID " + type + " NOT NULL PRIMARY KEY, SID " + type + " NOT NULL, "
+                + "INFO VARCHAR(200) NOT NULL)");
+            statement.execute("CREATE UNIQUE INDEX EVENT_SID_IDX ON EVENT (SID)");
+        }
+        insert = connection.prepareStatement("INSERT INTO EVENT (TID, SID, INFO) VALUES (?, ?, ?)");
+        for (int i = 0; i < ROWS / BATCH_SIZE; i++) {
+            insertBatch();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        insert.close();
+        connection.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] insertBatch() throws SQLException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            setKey(1);
+            setKey(2);
+            insert.setString(3, "new transaction on account 5479-1234567");
+            insert.addBatch();
+        }
+        int[] inserted = insert.executeBatch();
+        connection.commit();
+        return inserted;
+    }
+
+    private void setKey(int parameter) throws SQLException {
+        switch (keys) {
+            case "random-char":
+                insert.setString(parameter, UUID.randomUUID().toString());
+                break;
+            case "ordered-char":
+                insert.setString(parameter, TimeOrderedUuid.nextString());
+                break;
+            default:
+                insert.setBytes(parameter, TimeOrderedUuid.toBytes(TimeOrderedUuid.next()));
+        }
+    }
+
+    private boolean isBinary() {
+        return "ordered-binary".equals(keys);
+    }
+}
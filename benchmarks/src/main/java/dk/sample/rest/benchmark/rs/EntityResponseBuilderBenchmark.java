@@ -0,0 +1,137 @@
+package dk.sample.rest.benchmark.rs;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
+
+import dk.sample.rest.bank.account.exposure.rs.model.AccountRepresentation;
+import dk.sample.rest.bank.account.model.Account;
+import dk.sample.rest.common.persistence.jpa.AggregateVersion;
+import dk.sample.rest.common.rs.EntityResponseBuilder;
+import dk.sample.rest.common.test.rs.UriBuilderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures building the response of an entity, for a request without preconditions as well as for a request whose
+ * <code>if-none-match</code> header matches the entity tag, i.e. a not modified response. The representation is built
+ * up front, thus the headers of the response are what is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityResponseBuilderBenchmark {
+    private static final String LOG_TOKEN = "log-token";
+
+    private Account account;
+    private AggregateVersion version;
+    private AccountRepresentation representation;
+    private Request unconditional;
+    private Request notModified;
+
+    @Setup
+    public void setup() {
+        UriInfo uriInfo = mock(UriInfo.class);
+        when(uriInfo.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://localhost/accounts")));
+        account = new Account("5479", "1234567", "Checking account");
+        account.addTransaction("Starbucks Coffee", new BigDecimal("42.00"));
+        representation = new AccountRepresentation(account, uriInfo);
+        version = new AggregateVersion(25L, 30L, new Timestamp(1491829200000L));
+        unconditional = new PreconditionRequest(null);
+        notModified = new PreconditionRequest("account.2." + version.getTag());
+    }
+
+    @Benchmark
+    public Response buildEntity() {
+        return new EntityResponseBuilder<>(account, a -> representation, LOG_TOKEN)
+                .name("account")
+                .version("2")
+                .maxAge(60)
+                .build(unconditional);
+    }
+
+    @Benchmark
+    public Response buildVersioned() {
+        return new EntityResponseBuilder<>(account, a -> representation, LOG_TOKEN)
+                .name("account")
+                .version("2")
+                .versioned(version)
+                .maxAge(60)
+                .build(unconditional);
+    }
+
+    @Benchmark
+    public Response buildNotModified() {
+        return new EntityResponseBuilder<>(account, a -> representation, LOG_TOKEN)
+                .name("account")
+                .version("2")
+                .versioned(version)
+                .maxAge(60)
+                .build(notModified);
+    }
+
+    /**
+     * Request evaluating an <code>if-none-match</code> header the way the JAX-RS runtime does for a GET, without the
+     * cost of a mock recording the invocations.
+     */
+    private static final class PreconditionRequest implements Request {
+        private final String ifNoneMatch;
+
+        private PreconditionRequest(String ifNoneMatch) {
+            this.ifNoneMatch = ifNoneMatch;
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public Variant selectVariant(List<Variant> variants) {
+            return variants.isEmpty() ? null : variants.get(0);
+        }
+
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions(EntityTag eTag) {
+            return eTag != null && eTag.getValue().equals(ifNoneMatch) ? Response.notModified(eTag) : null;
+        }
+
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions(Date lastModified) {
+            return null;
+        }
+
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions(Date lastModified, EntityTag eTag) {
+            return evaluatePreconditions(eTag);
+        }
+
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package dk.sample.rest.benchmark.rs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriInfo;
+
+import dk.sample.rest.bank.account.exposure.rs.model.AccountRepresentation;
+import dk.sample.rest.bank.account.exposure.rs.model.TransactionsRepresentation;
+import dk.sample.rest.bank.account.model.Account;
+import dk.sample.rest.bank.account.model.Transaction;
+import dk.sample.rest.common.persistence.jpa.EntityVersion;
+import dk.sample.rest.common.rs.EntityResponseBuilder;
+import dk.sample.rest.common.rs.HalJsonProvider;
+import dk.sample.rest.common.rs.SerializedEntity;
+import dk.sample.rest.common.rs.SerializedEntityWriter;
+import dk.sample.rest.common.test.rs.UriBuilderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures writing the hal+json representations of an account and of a page of transactions through the provider
+ * the JAX-RS runtime uses, and writing the account serialized up front as done for immutable resources. The
+ * representations are built up front, thus the serialization is what is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HalJsonProviderBenchmark {
+    private static final Annotation[] ANNOTATIONS = new Annotation[0];
+
+    @Param({"1", "50"})
+    private int transactions;
+
+    private HalJsonProvider provider;
+    private MediaType mediaType;
+    private MultivaluedMap<String, Object> headers;
+    private ByteArrayOutputStream out;
+    private AccountRepresentation account;
+    private TransactionsRepresentation page;
+    private SerializedEntityWriter serializedWriter;
+    private SerializedEntity serializedAccount;
+
+    @Setup
+    public void setup() {
+        UriInfo uriInfo = mock(UriInfo.class);
+        when(uriInfo.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://localhost/accounts")));
+        Account entity = new Account("5479", "1234567", "Checking account");
+        for (int i = 0; i < transactions; i++) {
+            entity.addTransaction("Starbucks Coffee " + i, new BigDecimal("42.00").add(BigDecimal.valueOf(i)));
+        }
+        List<Transaction> txs = new ArrayList<>(entity.getTransactions());
+        account = new AccountRepresentation(entity, entity.getTransactions(), uriInfo);
+        page = new TransactionsRepresentation(entity.getRegNo(), entity.getAccountNo(), txs, uriInfo);
+
+        serializedAccount = SerializedEntity.of(account, EntityVersion.of(entity));
+        serializedWriter = new SerializedEntityWriter();
+        provider = new HalJsonProvider();
+        mediaType = EntityResponseBuilder.APPLICATION_HAL_JSON_TYPE;
+        headers = new MultivaluedHashMap<>();
+        out = new ByteArrayOutputStream(64 * 1024);
+    }
+
+    @Benchmark
+    public int writeAccount() throws IOException {
+        return write(account);
+    }
+
+    @Benchmark
+    public int writeTransactions() throws IOException {
+        return write(page);
+    }
+
+    @Benchmark
+    public int writeSerializedAccount() throws IOException {
+        out.reset();
+        serializedWriter.writeTo(serializedAccount, SerializedEntity.class, SerializedEntity.class, ANNOTATIONS, mediaType, headers, out);
+        return out.size();
+    }
+
+    private int write(Object representation) throws IOException {
+        out.reset();
+        provider.writeTo(representation, representation.getClass(), representation.getClass(), ANNOTATIONS, mediaType, headers, out);
+        return out.size();
+    }
+}
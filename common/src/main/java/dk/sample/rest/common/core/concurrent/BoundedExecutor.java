@@ -0,0 +1,55 @@
+package dk.sample.rest.common.core.concurrent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed pool of threads with a bounded queue of tasks, dedicated to a group of resources so that slow requests to
+ * them wait for each other rather than for the threads of every other resource. A task is rejected by a
+ * {@link RejectedExecutionException} once the queue is full. The threads are made by the given factory, in a container
+ * the <code>ManagedThreadFactory</code>, thus the tasks run with the naming, class loading and security context of
+ * the application.
+ */
+public final class BoundedExecutor implements Executor {
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param name      the name of the pool prefixing the names of its threads
+     * @param threads   the number of threads
+     * @param queueSize the maximum number of tasks waiting for a thread
+     * @param factory   the factory of the threads
+     */
+    public BoundedExecutor(String name, int threads, int queueSize, ThreadFactory factory) {
+        AtomicInteger count = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), task -> {
+            Thread thread = factory.newThread(task);
+            thread.setName(name + "-" + count.incrementAndGet());
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public int queued() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * Stops the threads once the tasks given are done, new tasks are rejected.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
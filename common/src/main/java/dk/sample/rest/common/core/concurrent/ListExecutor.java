@@ -0,0 +1,59 @@
+package dk.sample.rest.common.core.concurrent;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+/**
+ * The {@link BoundedExecutor} of a group of lists, kept apart from the threads of the container serving the single
+ * resources, extended by a <code>@Singleton</code> per service giving its name, threads and queue size.
+ * <p>
+ * The tasks are executed by the bounded executor itself, obtained through {@link #executor()}, rather than by a
+ * business method of the singleton. The container wraps an exception thrown from a business method, thus a task
+ * rejected by a full queue would surface as an <code>EJBException</code> instead of the
+ * {@link java.util.concurrent.RejectedExecutionException} answered by <code>503 Service Unavailable</code>.
+ */
+public abstract class ListExecutor {
+    private final String name;
+    private final int threads;
+    private final int queueSize;
+
+    /**
+     * The default managed thread factory of the container, see {@link BoundedExecutor}.
+     */
+    @Resource(lookup = "java:comp/DefaultManagedThreadFactory")
+    private ThreadFactory threadFactory;
+
+    private BoundedExecutor executor;
+
+    /**
+     * @param name      the name of the pool prefixing the names of its threads
+     * @param threads   the number of threads, fewer than the connections to the database
+     * @param queueSize the maximum number of lists waiting for a thread
+     */
+    protected ListExecutor(String name, int threads, int queueSize) {
+        this.name = name;
+        this.threads = threads;
+        this.queueSize = queueSize;
+    }
+
+    @PostConstruct
+    void start() {
+        executor = new BoundedExecutor(name, threads, queueSize, threadFactory);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return the bounded executor to hand the lists to directly
+     */
+    public Executor executor() {
+        return executor;
+    }
+}
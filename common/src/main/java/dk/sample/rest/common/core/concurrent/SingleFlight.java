@@ -0,0 +1,80 @@
+package dk.sample.rest.common.core.concurrent;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import dk.sample.rest.common.core.deadline.Deadline;
+import dk.sample.rest.common.core.deadline.DeadlineExceededException;
+
+/**
+ * Coalesces concurrent loads of the same key into one, the first caller loads the value and the callers arriving while
+ * it does so wait for and share its value, or its exception. Nothing is kept once the load is done, thus a caller
+ * arriving later loads the value anew, the values are as fresh as if every caller loaded its own.
+ * <p>
+ * The values are shared between threads and thus requests, they should therefore be immutable and not attached to the
+ * persistence context of the loading caller, e.g. a {@link dk.sample.rest.common.rs.SerializedEntity}. A waiting caller
+ * waits at most until the {@link Deadline} of its own request.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * @param key    the key of the value
+     * @param loader loading the value, called by the first of the concurrent callers only
+     * @return the value loaded by this or a concurrent caller
+     * @throws DeadlineExceededException if the deadline of the caller passes while waiting for a concurrent caller
+     */
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> flight = flights.putIfAbsent(key, own);
+        if (flight != null) {
+            return await(flight);
+        }
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, own);
+        }
+    }
+
+    /**
+     * @return the number of loads in progress
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        Optional<Deadline> deadline = Deadline.current();
+        try {
+            return deadline.isPresent() ? flight.get(deadline.get().remainingMillis(), TimeUnit.MILLISECONDS) : flight.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Deadline passed while waiting for a concurrent load", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a concurrent load", e);
+        }
+    }
+}
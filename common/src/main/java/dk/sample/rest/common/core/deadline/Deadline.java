@@ -0,0 +1,102 @@
+package dk.sample.rest.common.core.deadline;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which the work of the current request must be done, as the caller will have given up by then.
+ * The deadline of the request is bound to the thread serving it, see {@link #set(Deadline)}, and is narrowed by the
+ * {@link TimeBudget} of the methods called, thus queries to the database can be given the time remaining as their
+ * timeout.
+ * <p>
+ * The deadline is kept as a reading of the monotonic clock, thus it is not affected by adjustments of the wall clock.
+ */
+public final class Deadline {
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long nanos;
+
+    private Deadline(long nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * @param millis the time from now until the deadline
+     */
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Parses a deadline given by a caller, either as the number of milliseconds from now, which is not affected by the
+     * clocks of the caller and service being apart, or as an ISO-8601 instant such as
+     * <code>2016-10-18T10:15:30.250Z</code>.
+     *
+     * @throws IllegalArgumentException if the deadline is not in either format
+     */
+    public static Deadline parse(String deadline) {
+        String value = deadline.trim();
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+            try {
+                return after(Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Deadline is out of range: " + deadline, e);
+            }
+        }
+        try {
+            return after(Duration.between(Instant.now(), Instant.parse(value)).toMillis());
+        } catch (DateTimeParseException | ArithmeticException e) {
+            throw new IllegalArgumentException("Deadline is neither milliseconds nor an instant: " + deadline, e);
+        }
+    }
+
+    /**
+     * @return the deadline of the work done by the current thread, if any
+     */
+    public static Optional<Deadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * Binds the deadline to the current thread, replacing any deadline already bound.
+     *
+     * @param deadline the deadline, or null to clear the deadline of the thread
+     * @return the deadline replaced, null if there was none
+     */
+    public static Deadline set(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        return previous;
+    }
+
+    /**
+     * @return the earlier of this and the other deadline
+     */
+    public Deadline min(Deadline other) {
+        return other.nanos - nanos < 0 ? other : this;
+    }
+
+    /**
+     * @return the milliseconds remaining until the deadline, rounded up and never less than zero
+     */
+    public long remainingMillis() {
+        long remaining = nanos - System.nanoTime();
+        return remaining <= 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+    }
+
+    public boolean isExpired() {
+        return nanos - System.nanoTime() <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline in " + remainingMillis() + " ms";
+    }
+}
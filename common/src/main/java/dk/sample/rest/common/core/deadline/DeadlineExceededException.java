@@ -0,0 +1,19 @@
+package dk.sample.rest.common.core.deadline;
+
+/**
+ * Signals that work was abandoned since its {@link Deadline} has passed, either before it was started or by a query
+ * timing out. The transaction is rolled back.
+ */
+@javax.ejb.ApplicationException(rollback = true)
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 4712047561027304961L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
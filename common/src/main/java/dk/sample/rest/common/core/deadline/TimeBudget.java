@@ -0,0 +1,31 @@
+package dk.sample.rest.common.core.deadline;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import javax.enterprise.util.Nonbinding;
+import javax.interceptor.InterceptorBinding;
+
+/**
+ * Annotation to indicate the time the annotated method, or every method of the annotated class, is given at most.
+ * The {@link Deadline} of the current request is narrowed to the budget while the method runs.
+ */
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface TimeBudget {
+    /**
+     * The budget of a method which runs without a deadline, neither its own nor that of the current request, e.g. one
+     * streaming a response which is committed before the method is called and cannot be turned into an error anymore.
+     */
+    long UNBOUNDED = Long.MAX_VALUE;
+
+    /**
+     * The milliseconds given, an annotation on the method takes precedence over one on its class.
+     */
+    @Nonbinding long millis();
+}
@@ -0,0 +1,74 @@
+package dk.sample.rest.common.core.deadline;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Priority;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import javax.persistence.QueryTimeoutException;
+
+/**
+ * CDI interceptor narrowing the {@link Deadline} of the current request to the {@link TimeBudget} of the intercepted
+ * method. A method called after the deadline has passed is not invoked at all, thus no database connection is acquired
+ * for a caller who has given up already. A query timing out is signalled as the deadline being exceeded.
+ */
+@Interceptor
+@TimeBudget(millis = 0)
+@Priority(Interceptor.Priority.APPLICATION + 1)
+public class TimeBudgetInterceptor {
+
+    private static final long NO_BUDGET = -1;
+
+    private static final ConcurrentMap<Method, Long> BUDGETS = new ConcurrentHashMap<>();
+
+    @AroundInvoke
+    public Object withinBudget(InvocationContext ctx) throws Exception {
+        long millis = budget(ctx.getMethod());
+        Deadline outer = Deadline.current().orElse(null);
+        if (millis == TimeBudget.UNBOUNDED) {
+            Deadline.set(null);
+            try {
+                return ctx.proceed();
+            } finally {
+                Deadline.set(outer);
+            }
+        }
+        Deadline deadline = millis == NO_BUDGET ? outer : Deadline.after(millis);
+        if (deadline == null) {
+            return ctx.proceed();
+        }
+        if (outer != null) {
+            deadline = outer.min(deadline);
+        }
+        if (deadline.isExpired()) {
+            throw new DeadlineExceededException("Deadline passed before calling " + ctx.getMethod().getName());
+        }
+        Deadline.set(deadline);
+        try {
+            return ctx.proceed();
+        } catch (QueryTimeoutException e) {
+            throw new DeadlineExceededException("Query timed out in " + ctx.getMethod().getName(), e);
+        } finally {
+            Deadline.set(outer);
+        }
+    }
+
+    static long budget(Method method) {
+        Long budget = BUDGETS.get(method);
+        if (budget == null) {
+            budget = BUDGETS.computeIfAbsent(method, TimeBudgetInterceptor::resolve);
+        }
+        return budget;
+    }
+
+    private static long resolve(Method method) {
+        TimeBudget timeBudget = method.getAnnotation(TimeBudget.class);
+        if (timeBudget == null) {
+            timeBudget = method.getDeclaringClass().getAnnotation(TimeBudget.class);
+        }
+        return timeBudget == null ? NO_BUDGET : timeBudget.millis();
+    }
+}
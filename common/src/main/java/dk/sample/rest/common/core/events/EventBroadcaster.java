@@ -0,0 +1,204 @@
+package dk.sample.rest.common.core.events;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * In-memory fan out of events to the subscribers within this process, every event published is offered to each of
+ * the current subscriptions thus a single write of an event reaches any number of subscribers without them reading it.
+ * A subscription holds a bounded queue of the events not yet taken, a subscriber falling behind by more than that is
+ * marked as overflowed and is expected to give up and catch up from the persisted events. A waiter is instead called
+ * back once with the next event published and holds no thread while waiting, e.g. for long polling.
+ * <p>
+ * Only events published in this process are seen, subscribers needing every event of a clustered service must
+ * resume from the persisted events when connecting, e.g. by the sequence number of the latest event seen.
+ *
+ * @param <T> the type of events
+ */
+public final class EventBroadcaster<T> {
+    private final int maxSubscribers;
+    private final int queueSize;
+    private final int maxWaiters;
+    private final Set<Subscription<T>> subscriptions = new CopyOnWriteArraySet<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Set<Waiter<T>> waiters = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * @param maxSubscribers the maximum number of concurrent subscriptions
+     * @param queueSize      the maximum number of events waiting to be taken by a subscriber
+     * @param maxWaiters     the maximum number of concurrent waiters
+     */
+    public EventBroadcaster(int maxSubscribers, int queueSize, int maxWaiters) {
+        this.maxSubscribers = maxSubscribers;
+        this.queueSize = queueSize;
+        this.maxWaiters = maxWaiters;
+    }
+
+    /**
+     * Offers the event to every current subscription and calls back every current waiter.
+     */
+    public void publish(T event) {
+        for (Subscription<T> subscription : subscriptions) {
+            subscription.offer(event);
+        }
+        for (Waiter<T> waiter : waiters) {
+            if (waiter.cancel()) {
+                waiter.listener.accept(event);
+            }
+        }
+    }
+
+    /**
+     * Publishes the event once the current transaction is committed, the event is dropped if the transaction is
+     * rolled back.
+     */
+    public void publishAfterCommit(TransactionSynchronizationRegistry registry, T event) {
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do before the outcome is known
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    publish(event);
+                }
+            }
+        });
+    }
+
+    /**
+     * Subscribes to the events published from now on.
+     *
+     * @return the subscription, which must be closed, or empty if the maximum number of subscriptions is reached
+     */
+    public Optional<Subscription<T>> subscribe() {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return Optional.empty();
+        }
+        Subscription<T> subscription = new Subscription<>(this, queueSize);
+        subscriptions.add(subscription);
+        return Optional.of(subscription);
+    }
+
+    /**
+     * Waits for the next event to be published. The listener is called by the thread publishing the event, which is
+     * typically completing the transaction that saved it, thus the listener is expected to hand over any real work.
+     *
+     * @return the waiter, which must be cancelled if no longer waiting, or empty if the maximum number of waiters is reached
+     */
+    public Optional<Waiter<T>> await(Consumer<T> listener) {
+        if (waiting.incrementAndGet() > maxWaiters) {
+            waiting.decrementAndGet();
+            return Optional.empty();
+        }
+        Waiter<T> waiter = new Waiter<>(this, listener);
+        waiters.add(waiter);
+        return Optional.of(waiter);
+    }
+
+    /**
+     * @return the number of current subscriptions
+     */
+    public int subscribers() {
+        return subscribers.get();
+    }
+
+    /**
+     * @return the number of current waiters
+     */
+    public int waiters() {
+        return waiting.get();
+    }
+
+    private void unsubscribe(Subscription<T> subscription) {
+        if (subscriptions.remove(subscription)) {
+            subscribers.decrementAndGet();
+        }
+    }
+
+    /**
+     * A one-shot wait for the next event.
+     *
+     * @param <T> the type of events
+     */
+    public static final class Waiter<T> {
+        private final EventBroadcaster<T> broadcaster;
+        private final Consumer<T> listener;
+
+        private Waiter(EventBroadcaster<T> broadcaster, Consumer<T> listener) {
+            this.broadcaster = broadcaster;
+            this.listener = listener;
+        }
+
+        /**
+         * Stops waiting.
+         *
+         * @return true if still waiting, i.e. the listener was not and will not be called
+         */
+        public boolean cancel() {
+            if (broadcaster.waiters.remove(this)) {
+                broadcaster.waiting.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The events published since subscribing and not yet taken.
+     *
+     * @param <T> the type of events
+     */
+    public static final class Subscription<T> implements AutoCloseable {
+        private final EventBroadcaster<T> broadcaster;
+        private final BlockingQueue<T> events;
+        private volatile boolean overflowed;
+
+        private Subscription(EventBroadcaster<T> broadcaster, int queueSize) {
+            this.broadcaster = broadcaster;
+            this.events = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        private void offer(T event) {
+            if (!events.offer(event)) {
+                overflowed = true;
+            }
+        }
+
+        /**
+         * Takes the next event waiting at most the given time for one to be published.
+         *
+         * @return the event or null if none was published within the time given
+         */
+        public T next(long timeout, TimeUnit unit) throws InterruptedException {
+            return events.poll(timeout, unit);
+        }
+
+        /**
+         * @return true if events were dropped since the subscriber did not keep up
+         */
+        public boolean isOverflowed() {
+            return overflowed;
+        }
+
+        @Override
+        public void close() {
+            broadcaster.unsubscribe(this);
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package dk.sample.rest.common.core.logging;
 
 import java.lang.ref.WeakReference;
-import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import dk.sample.rest.common.core.metrics.LatencyHistograms;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This is a class for doing logging of durations hence the name ;-) .
+ * <p>
+ * The loggers started on a thread form a stack of spans, a logger started while another one is running on the thread
+ * is a child of that one and its duration is included when the parent is logged. The spans are kept in frames reused
+ * for every logger started on the thread, and the log text is only built when it is actually logged, thus timing a call
+ * does not allocate besides the logger itself.
  */
 public final class DurationLogger implements AutoCloseable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DurationLogger.class);
@@ -27,11 +32,15 @@ public final class DurationLogger implements AutoCloseable {
 
     private String extra;
 
+    private Supplier<String> extraSupplier;
+
     private long duration;
 
-    private List<DurationLogger> children = new ArrayList<>();
+    private SpanStack spans;
+
+    private int depth = -1;
 
-    private DurationLogger parent;
+    private long span;
 
     /**
      * Construct a logging (starting a log time frame right away, this may be
@@ -45,6 +54,15 @@ public final class DurationLogger implements AutoCloseable {
         start();
     }
 
+    /**
+     * Construct a logging with the extra text supplied only if the duration is
+     * actually logged, e.g. the parameters of an intercepted call.
+     */
+    DurationLogger(String clazzName, String system, long limit, Supplier<String> extra) {
+        this(clazzName, system, (String) null, limit);
+        this.extraSupplier = extra;
+    }
+
     /**
      * Constructor resolving the class name from the given object, and provided
      * with all possible variables.
@@ -70,53 +88,64 @@ public final class DurationLogger implements AutoCloseable {
      */
     public DurationLogger start() {
         time = System.nanoTime();
-        children = new ArrayList<>();
-        if (!equals(current.getCurrent())) {
-            if (current.getCurrent() != null) {
-                parent = current.getCurrent();
-            }
-            current.setCurrent(this);
+        SpanStack stack = current.getStack();
+        if (stack == spans && stack.isTop(depth, span)) {
+            stack.frame(depth).clearChildren();
+        } else {
+            spans = stack;
+            depth = stack.size();
+            span = stack.push();
         }
         return this;
     }
 
     /**
-     * Marks the end of the current timeframe logging the time with log4j and to
-     * the statistics instance if present. If limit is exceeded a warning
-     * logging will be done!
+     * Marks the end of the current timeframe logging the time with log4j and
+     * recording it in the {@link LatencyHistograms}. If limit is exceeded a
+     * warning logging will be done!
      */
     public void stop() {
-        duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time);
-        if (parent != null) {
-            parent.addChild(this);
+        long nanos = System.nanoTime() - time;
+        duration = TimeUnit.NANOSECONDS.toMillis(nanos);
+        LatencyHistograms.record(clazzName, system, nanos);
+        Frame frame = spans == null ? null : spans.pop(depth, span);
+        if (frame != null && depth > 0) {
+            spans.frame(depth - 1).addChild(clazzName, system, duration);
+        }
+        if (duration > limit ? LOGGER.isWarnEnabled() : LOGGER.isDebugEnabled()) {
+            log(frame);
         }
-        current.setCurrent(parent);
-        log();
     }
 
-    private void log() {
-        String id = clazzName + ":" + system;
-        StringBuilder text = new StringBuilder()
-                .append("Duration of system (").append(id).append(extra != null ? "[" + extra + "]" : "").append(")");
-        StringBuilder child = new StringBuilder();
-        if (!children.isEmpty()) {
-            long childTime = 0;
-            for (DurationLogger logger : children) {
-                child.append(MessageFormat.format("\n({0}:{1}): {2} [ms]", logger.clazzName, logger.system, logger.getDuration()));
-                childTime += logger.getDuration();
-            }
-            child.append("\nChild total: ").append(childTime).append(" [ms]");
+    private void log(Frame frame) {
+        StringBuilder text = new StringBuilder(128)
+                .append("Duration of system (").append(clazzName).append(':').append(system);
+        String extraText = extra != null || extraSupplier == null ? extra : extraSupplier.get();
+        if (extraText != null) {
+            text.append('[').append(extraText).append(']');
         }
+        text.append(')');
         if (duration > limit) {
-            text.append(" exceeded limit (").append(limit).append(" [ms]) was ").append(duration).append(" [ms]").append(child);
+            text.append(" exceeded limit (").append(limit).append(" [ms]) was ").append(duration).append(" [ms]");
+            appendChildren(text, frame);
             LOGGER.warn(text.toString());
         } else {
-            LOGGER.debug(text + ": " + duration + " [ms]" + child);
+            text.append(": ").append(duration).append(" [ms]");
+            appendChildren(text, frame);
+            LOGGER.debug(text.toString());
         }
     }
 
-    private void addChild(DurationLogger dl) {
-        children.add(dl);
+    private static void appendChildren(StringBuilder text, Frame frame) {
+        if (frame != null && frame.children > 0) {
+            long childTime = 0;
+            for (int i = 0; i < frame.children; i++) {
+                text.append("\n(").append(frame.childClazzNames[i]).append(':').append(frame.childSystems[i]).append("): ")
+                        .append(frame.childDurations[i]).append(" [ms]");
+                childTime += frame.childDurations[i];
+            }
+            text.append("\nChild total: ").append(childTime).append(" [ms]");
+        }
     }
 
     @Override
@@ -125,23 +154,109 @@ public final class DurationLogger implements AutoCloseable {
     }
 
     /**
-     * ThreadLocal specialization to hold weak reference to LOGGER. Thus if no
-     * instances other than this hold a references to a duration LOGGER instance
-     * it will be garbage collected!
+     * ThreadLocal specialization to hold weak reference to the span stack of the thread. Thus if no running logger holds
+     * a reference to the stack it may be garbage collected, and the thread never keeps classes of the application
+     * reachable.
+     */
+    private static class CurrentThreadLocal extends ThreadLocal<WeakReference<SpanStack>> {
+
+        public SpanStack getStack() {
+            WeakReference<SpanStack> ref = get();
+            SpanStack stack = ref != null ? ref.get() : null;
+            if (stack == null) {
+                stack = new SpanStack();
+                set(new WeakReference<>(stack));
+            }
+            return stack;
+        }
+    }
+
+    /**
+     * The running loggers of a thread as a stack of frames, the frames are reused as loggers are started and stopped. A
+     * span is identified by its depth and an id unique within the stack, thus stopping a logger, whose span was already
+     * popped, does not pop the span of another logger. Loggers started beyond the maximum depth, e.g. if loggers are left
+     * running and never stopped, are not part of the stack and do not include children.
      */
-    private static class CurrentThreadLocal extends ThreadLocal<WeakReference<DurationLogger>> {
+    private static final class SpanStack {
+        private static final int MAX_DEPTH = 64;
+
+        private Frame[] frames = new Frame[8];
+        private int size;
+        private long spans;
+
+        int size() {
+            return size;
+        }
+
+        Frame frame(int depth) {
+            return frames[depth];
+        }
+
+        boolean isTop(int depth, long span) {
+            return span != 0 && depth == size - 1 && frames[depth].span == span;
+        }
 
-        public void setCurrent(DurationLogger logger) {
-            set(new WeakReference<>(logger));
+        /**
+         * @return the id of the span pushed, or 0 if the stack is at the maximum depth
+         */
+        long push() {
+            if (size == MAX_DEPTH) {
+                return 0;
+            }
+            if (size == frames.length) {
+                frames = Arrays.copyOf(frames, Math.min(frames.length * 2, MAX_DEPTH));
+            }
+            Frame frame = frames[size];
+            if (frame == null) {
+                frame = new Frame();
+                frames[size] = frame;
+            }
+            frame.span = ++spans;
+            frame.clearChildren();
+            size++;
+            return frame.span;
         }
 
-        public DurationLogger getCurrent() {
-            WeakReference<DurationLogger> ref = get();
-            if (ref != null) {
-                return ref.get();
-            } else {
+        /**
+         * Pops the given span and any spans above it, which were never stopped.
+         *
+         * @return the popped frame, valid until the next push, or null if the span is not on the stack
+         */
+        Frame pop(int depth, long span) {
+            if (span == 0 || depth >= size || frames[depth].span != span) {
                 return null;
             }
+            size = depth;
+            return frames[depth];
+        }
+    }
+
+    /**
+     * The span of a running logger and the durations of its children.
+     */
+    private static final class Frame {
+        private long span;
+        private String[] childClazzNames = new String[4];
+        private String[] childSystems = new String[4];
+        private long[] childDurations = new long[4];
+        private int children;
+
+        void addChild(String clazzName, String system, long duration) {
+            if (children == childDurations.length) {
+                childClazzNames = Arrays.copyOf(childClazzNames, children * 2);
+                childSystems = Arrays.copyOf(childSystems, children * 2);
+                childDurations = Arrays.copyOf(childDurations, children * 2);
+            }
+            childClazzNames[children] = clazzName;
+            childSystems[children] = system;
+            childDurations[children] = duration;
+            children++;
+        }
+
+        void clearChildren() {
+            Arrays.fill(childClazzNames, 0, children, null);
+            Arrays.fill(childSystems, 0, children, null);
+            children = 0;
         }
     }
 }
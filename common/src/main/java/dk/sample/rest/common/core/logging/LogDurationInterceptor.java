@@ -1,7 +1,8 @@
 package dk.sample.rest.common.core.logging;
 
-import java.util.Arrays;
-import java.util.stream.Collectors;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Priority;
 import javax.interceptor.AroundInvoke;
@@ -9,7 +10,8 @@ import javax.interceptor.Interceptor;
 import javax.interceptor.InvocationContext;
 
 /**
- * CDI interceptor that will look for {@link LogDuration} annotations on the intercepted methods.
+ * CDI interceptor that will look for {@link LogDuration} annotations on the intercepted methods. The annotation of a
+ * method is looked up once and the parameters are only rendered if the duration is actually logged.
  */
 @Interceptor
 @LogDuration(limit = 0)
@@ -18,35 +20,80 @@ public class LogDurationInterceptor {
 
     private static final int MAX_PARAM_VALUE_LENGTH = 100;
 
+    private static final Timing NOT_TIMED = new Timing(null, null, 0);
+
+    private static final ConcurrentMap<Method, Timing> TIMINGS = new ConcurrentHashMap<>();
+
     @AroundInvoke
     public Object logDuration(InvocationContext ctx) throws Exception {
-        if (ctx.getMethod().isAnnotationPresent(LogDuration.class)) {
-            LogDuration logDuration = ctx.getMethod().getAnnotation(LogDuration.class);
-            Class<?> clazzName = Object.class.equals(logDuration.clazzName()) ? ctx.getTarget().getClass() : logDuration.clazzName();
-            String system = "".equals(logDuration.system()) ? ctx.getMethod().getName() : logDuration.system();
-            try (DurationLogger ignored = new DurationLogger(clazzName, system, paramsToString(ctx.getParameters()), logDuration.limit())) {
-                return ctx.proceed();
-            }
-        } else {
+        Timing timing = timing(ctx.getMethod());
+        if (timing == NOT_TIMED) {
             return ctx.proceed();
         }
+        String clazzName = timing.clazzName != null ? timing.clazzName : ctx.getTarget().getClass().getName();
+        Object[] parameters = ctx.getParameters();
+        try (DurationLogger ignored = new DurationLogger(clazzName, timing.system, timing.limit, () -> paramsToString(parameters))) {
+            return ctx.proceed();
+        }
+    }
+
+    private static Timing timing(Method method) {
+        Timing timing = TIMINGS.get(method);
+        if (timing == null) {
+            timing = TIMINGS.computeIfAbsent(method, LogDurationInterceptor::resolve);
+        }
+        return timing;
     }
 
-    private String paramsToString(Object[] parameters) {
+    private static Timing resolve(Method method) {
+        LogDuration logDuration = method.getAnnotation(LogDuration.class);
+        if (logDuration == null) {
+            return NOT_TIMED;
+        }
+        String clazzName = Object.class.equals(logDuration.clazzName()) ? null : logDuration.clazzName().getName();
+        String system = "".equals(logDuration.system()) ? method.getName() : logDuration.system();
+        return new Timing(clazzName, system, logDuration.limit());
+    }
+
+    static String paramsToString(Object[] parameters) {
         if (parameters != null && parameters.length > 0) {
-            return Arrays.stream(parameters).map(this::paramToString).collect(Collectors.joining(","));
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < parameters.length; i++) {
+                if (i > 0) {
+                    text.append(',');
+                }
+                appendParam(text, parameters[i]);
+            }
+            return text.toString();
         } else {
             return null;
         }
     }
 
-    private String paramToString(Object parameter) {
+    private static void appendParam(StringBuilder text, Object parameter) {
         String textValue = String.valueOf(parameter);
         int length = textValue.length();
         if (length > MAX_PARAM_VALUE_LENGTH) {
-            String truncatedValue = textValue.substring(0, MAX_PARAM_VALUE_LENGTH).replace('\n', ' ').replace("\r", "");
-            textValue = String.format("%s... (was %d chars long, truncated)", truncatedValue, length);
+            text.append(textValue.substring(0, MAX_PARAM_VALUE_LENGTH).replace('\n', ' ').replace("\r", ""))
+                .append("... (was ").append(length).append(" chars long, truncated)");
+        } else {
+            text.append(textValue);
+        }
+    }
+
+    /**
+     * The logging of a method as given by its {@link LogDuration} annotation, the class name is null if it is the class
+     * of the intercepted target.
+     */
+    private static final class Timing {
+        private final String clazzName;
+        private final String system;
+        private final long limit;
+
+        private Timing(String clazzName, String system, long limit) {
+            this.clazzName = clazzName;
+            this.system = system;
+            this.limit = limit;
         }
-        return textValue;
     }
 }
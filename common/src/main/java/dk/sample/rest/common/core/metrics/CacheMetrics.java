@@ -0,0 +1,36 @@
+package dk.sample.rest.common.core.metrics;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+/**
+ * The in-process caches of the service by name, whose statistics are exposed along with the latencies. A cache must
+ * be built with <code>recordStats()</code> for its hits and misses to be counted.
+ */
+public final class CacheMetrics {
+    private static final ConcurrentMap<String, Cache<?, ?>> CACHES = new ConcurrentHashMap<>();
+
+    private CacheMetrics() {
+    }
+
+    /**
+     * Registers a cache under the given name replacing any cache registered under that name.
+     *
+     * @return the cache given
+     */
+    public static <K, V> Cache<K, V> register(String name, Cache<K, V> cache) {
+        CACHES.put(name, cache);
+        return cache;
+    }
+
+    /**
+     * The registered caches by name.
+     */
+    public static SortedMap<String, Cache<?, ?>> caches() {
+        return new TreeMap<>(CACHES);
+    }
+}
@@ -0,0 +1,88 @@
+package dk.sample.rest.common.core.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency histograms of the methods whose duration is logged, i.e. the ones annotated with
+ * {@link dk.sample.rest.common.core.logging.LogDuration}. The latencies are recorded in microseconds into a recorder per
+ * method which writers record into without locking, the histogram of a method is accumulated from the recorder when
+ * read, thus reading does not block recording.
+ */
+public final class LatencyHistograms {
+    /**
+     * Latencies above an hour are recorded as an hour.
+     */
+    public static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, MethodLatency>> LATENCIES = new ConcurrentHashMap<>();
+
+    private LatencyHistograms() {
+    }
+
+    /**
+     * Records the latency of a method, named the same way as the logged duration.
+     *
+     * @param clazzName the class of the method
+     * @param system the method or operation within the class
+     * @param nanos the latency in nanoseconds
+     */
+    public static void record(String clazzName, String system, long nanos) {
+        ConcurrentMap<String, MethodLatency> methods = LATENCIES.get(clazzName);
+        if (methods == null) {
+            methods = LATENCIES.computeIfAbsent(clazzName, c -> new ConcurrentHashMap<>());
+        }
+        MethodLatency latency = methods.get(system);
+        if (latency == null) {
+            latency = methods.computeIfAbsent(system, s -> new MethodLatency());
+        }
+        latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * The histograms of the latencies recorded since start, by <code>class:method</code> name.
+     */
+    public static SortedMap<String, Histogram> snapshot() {
+        SortedMap<String, Histogram> histograms = new TreeMap<>();
+        for (Map.Entry<String, ConcurrentMap<String, MethodLatency>> clazz : LATENCIES.entrySet()) {
+            for (Map.Entry<String, MethodLatency> method : clazz.getValue().entrySet()) {
+                histograms.put(clazz.getKey() + ":" + method.getKey(), method.getValue().snapshot());
+            }
+        }
+        return histograms;
+    }
+
+    /**
+     * Clears all recorded latencies.
+     */
+    public static void reset() {
+        LATENCIES.clear();
+    }
+
+    /**
+     * Latencies of a single method.
+     */
+    private static final class MethodLatency {
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+        private final Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+        private Histogram interval;
+
+        void record(long micros) {
+            recorder.recordValue(Math.min(Math.max(micros, 0), HIGHEST_TRACKABLE_MICROS));
+        }
+
+        synchronized Histogram snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return total.copy();
+        }
+    }
+}
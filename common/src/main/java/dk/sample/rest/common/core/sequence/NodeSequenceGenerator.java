@@ -0,0 +1,96 @@
+package dk.sample.rest.common.core.sequence;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates 64 bit sequence numbers within the node without any round trip to a database, in the style of Snowflake
+ * ids and hybrid logical clocks. A sequence number holds the milliseconds since 2017-01-01 in the upper 41 bits, a
+ * counter in the following 12 bits and the id of the node in the lower 10 bits:
+ * <pre>
+ * 0 | 41 bits milliseconds | 12 bits counter | 10 bits node
+ * </pre>
+ * The sequence numbers are strictly increasing within a node, if the clock stands still, goes backwards or more than
+ * 4096 numbers are generated within a millisecond the counter carries into the milliseconds, i.e. the logical clock
+ * runs ahead of the wall clock until it catches up. The node id is never touched, thus nodes with distinct ids never
+ * generate the same number, and numbers generated by different nodes are ordered by time up to the clock skew. The
+ * numbers last until 2086.
+ * <p>
+ * The node id is taken from the system property <code>sample.node.id</code>, e.g. the ordinal of the instance within
+ * the cluster. Without it the id is derived from the host name, which is not guaranteed to be unique, so the
+ * property must be set when running more than a handful of nodes.
+ */
+public final class NodeSequenceGenerator implements SequenceGenerator {
+    public static final String NODE_ID_PROPERTY = "sample.node.id";
+    public static final int NODE_BITS = 10;
+    public static final int COUNTER_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    static final long EPOCH = 1483228800000L;
+    private static final long STEP = 1L << NODE_BITS;
+    private static final int TIME_SHIFT = NODE_BITS + COUNTER_BITS;
+
+    private final long node;
+    private final LongSupplier clock;
+    private final AtomicLong last = new AtomicLong();
+
+    /**
+     * @param node the id of this node between 0 and {@link #MAX_NODE_ID}
+     */
+    public NodeSequenceGenerator(int node) {
+        this(node, System::currentTimeMillis);
+    }
+
+    /**
+     * @param node  the id of this node between 0 and {@link #MAX_NODE_ID}
+     * @param clock the wall clock in milliseconds since the Java epoch
+     */
+    NodeSequenceGenerator(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE_ID) {
+            throw new IllegalArgumentException("The node id must be between 0 and " + MAX_NODE_ID + " was " + node);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    /**
+     * A generator for the node id configured for this process.
+     */
+    public static NodeSequenceGenerator forThisNode() {
+        return new NodeSequenceGenerator(nodeId());
+    }
+
+    @Override
+    public long next() {
+        long floor = ((clock.getAsLong() - EPOCH) << TIME_SHIFT) | node;
+        return last.updateAndGet(previous -> Math.max(previous + STEP, floor));
+    }
+
+    /**
+     * @return the node id of a sequence number
+     */
+    public static int node(long sequence) {
+        return (int) (sequence & MAX_NODE_ID);
+    }
+
+    /**
+     * @return the time in milliseconds since the Java epoch of a sequence number
+     */
+    public static long time(long sequence) {
+        return (sequence >>> TIME_SHIFT) + EPOCH;
+    }
+
+    static int nodeId() {
+        String configured = System.getProperty(NODE_ID_PROPERTY);
+        if (configured != null) {
+            return Integer.parseInt(configured.trim());
+        }
+        try {
+            return (InetAddress.getLocalHost().getHostName().hashCode() & Integer.MAX_VALUE) % (MAX_NODE_ID + 1);
+        } catch (UnknownHostException e) {
+            return ThreadLocalRandom.current().nextInt(MAX_NODE_ID + 1);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package dk.sample.rest.common.core.sequence;
+
+/**
+ * Generates the sequence numbers ordering e.g. the events of a service.
+ */
+@FunctionalInterface
+public interface SequenceGenerator {
+
+    /**
+     * @return a sequence number greater than any returned before by this generator
+     */
+    long next();
+}
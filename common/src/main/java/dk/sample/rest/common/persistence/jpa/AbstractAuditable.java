@@ -9,12 +9,10 @@ import javax.persistence.Column;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.PrePersist;
 import javax.persistence.PreUpdate;
-
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import javax.persistence.Version;
 
 /**
- * Handling entity auditing by adding LAST_MODIFIED_BY, LAST_MODIFIED_TS to tables.
+ * Handling entity auditing by adding LAST_MODIFIED_BY, LAST_MODIFIED_TS and the optimistic locking VERSION to tables.
  * <p>
  * Note: It is assumed that it is possible to inject a context instance from CDI.
  * Note: Code has been omitted from this class in order to make it accessible on github
@@ -26,7 +24,7 @@ public class AbstractAuditable {
     /**
      * List of fields which is excluded from {@link #equals(Object)} and {@link #hashCode()} by default.
      */
-    private static final String[] DEFAULT_EXCLUDED_FIELDS = new String[]{"tId", "lastModifiedBy", "lastModifiedTime"};
+    private static final String[] DEFAULT_EXCLUDED_FIELDS = new String[]{"tId", "lastModifiedBy", "lastModifiedTime", "version"};
 
     @Column(name = "LAST_MODIFIED_BY", length = 100, nullable = true, columnDefinition = "VARCHAR(100)")
     private String lastModifiedBy;
@@ -34,6 +32,15 @@ public class AbstractAuditable {
     @Column(name = "LAST_MODIFIED_TS", nullable = false, columnDefinition = "TIMESTAMP")
     private Timestamp lastModifiedTime;
 
+    /**
+     * Incremented by the persistence provider on every update of the entity, which makes it usable as a cheap
+     * indication of the entity having changed, e.g. for entity tags. The column defaults to 0, thus adding it to an
+     * existing table, e.g. by <code>hibernate.hbm2ddl.auto=update</code>, gives the existing rows their first version.
+     */
+    @Version
+    @Column(name = "VERSION", nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private long version;
+
     public Timestamp getLastModifiedTime() {
         if (lastModifiedTime == null) {
             return new Timestamp(0);
@@ -47,6 +54,10 @@ public class AbstractAuditable {
         return lastModifiedBy;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     @PrePersist
     @PreUpdate
     void onUpdate() {
@@ -65,7 +76,8 @@ public class AbstractAuditable {
 
     /**
      * Override this method to set up the list of fields to be excluded from {@link #equals(Object)} and {@link #hashCode()}. The
-     * default excludes are <code>tId, lastModifiedTime, lastModifiedBy</code>.
+     * default excludes are <code>tId, lastModifiedTime, lastModifiedBy, version</code>. The fields are read once per class,
+     * so the excluded fields must be the same for every instance of a class.
      */
     protected String[] excludedFields() {
         return DEFAULT_EXCLUDED_FIELDS;
@@ -73,11 +85,17 @@ public class AbstractAuditable {
 
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this, excludedFields());
+        return EntityFields.of(this).hashCode(this);
     }
 
     @Override
     public boolean equals(Object obj) {
-        return EqualsBuilder.reflectionEquals(this, obj, excludedFields());
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return EntityFields.of(this).equals(this, obj);
     }
 }
@@ -0,0 +1,76 @@
+package dk.sample.rest.common.persistence.jpa;
+
+import java.sql.Timestamp;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * The version of a collection of {@link AbstractAuditable} entities, computed by the database as an aggregate over the
+ * collection, e.g.:
+ * <pre>
+ *     select new dk.sample.rest.common.persistence.jpa.AggregateVersion(count(e), sum(e.version), max(e.lastModifiedTime))
+ *     from Entity e where ...
+ * </pre>
+ * Adding or removing an entity changes the count and updating one increments the sum of versions, thus the aggregate
+ * changes whenever the collection does without the entities ever being read.
+ */
+public final class AggregateVersion implements Versioned {
+    private final long count;
+    private final long versionSum;
+    private final Timestamp lastModified;
+
+    public AggregateVersion(Long count, Long versionSum, Timestamp lastModified) {
+        this.count = count == null ? 0 : count;
+        this.versionSum = versionSum == null ? 0 : versionSum;
+        this.lastModified = lastModified == null ? new Timestamp(0) : new Timestamp(lastModified.getTime());
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getVersionSum() {
+        return versionSum;
+    }
+
+    @Override
+    public Timestamp getLastModified() {
+        return new Timestamp(lastModified.getTime());
+    }
+
+    @Override
+    public String getTag() {
+        return Long.toHexString(count) + "-" + Long.toHexString(versionSum) + "-" + Long.toHexString(lastModified.getTime());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AggregateVersion that = (AggregateVersion) o;
+        return new EqualsBuilder()
+                .append(count, that.count)
+                .append(versionSum, that.versionSum)
+                .append(lastModified, that.lastModified)
+                .build();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+                .append(count)
+                .append(versionSum)
+                .append(lastModified)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return getTag();
+    }
+}
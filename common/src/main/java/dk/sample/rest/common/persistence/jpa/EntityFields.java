@@ -0,0 +1,104 @@
+package dk.sample.rest.common.persistence.jpa;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The fields taking part in {@link AbstractAuditable#equals(Object)} and {@link AbstractAuditable#hashCode()} for an
+ * entity class. The fields are found by reflection once per class and are read through method handles from then on,
+ * the fields are the same as the ones used by the reflective builders of commons-lang, i.e. all non static, non transient
+ * fields of the class and its super classes except the ones excluded by {@link AbstractAuditable#excludedFields()}.
+ */
+final class EntityFields {
+    private static final ConcurrentMap<Class<?>, EntityFields> FIELDS = new ConcurrentHashMap<>();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final int INITIAL = 17;
+    private static final int MULTIPLIER = 37;
+
+    private final MethodHandle[] getters;
+
+    private EntityFields(Class<?> type, String[] excludedFields) {
+        List<String> excluded = excludedFields == null ? Collections.emptyList() : Arrays.asList(excludedFields);
+        List<MethodHandle> handles = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.getName().indexOf('$') != -1
+                        || excluded.contains(field.getName())) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    handles.add(lookup.unreflectGetter(field).asType(GETTER_TYPE));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Unable to access field " + field, e);
+                }
+            }
+        }
+        getters = handles.toArray(new MethodHandle[handles.size()]);
+    }
+
+    /**
+     * The fields of the class of the given entity, the excluded fields are expected to be the same for every instance
+     * of a class.
+     */
+    static EntityFields of(AbstractAuditable entity) {
+        Class<?> type = entity.getClass();
+        EntityFields fields = FIELDS.get(type);
+        if (fields == null) {
+            fields = FIELDS.computeIfAbsent(type, t -> new EntityFields(t, entity.excludedFields()));
+        }
+        return fields;
+    }
+
+    int hashCode(Object entity) {
+        int hash = INITIAL;
+        for (MethodHandle getter : getters) {
+            hash = hash * MULTIPLIER + valueHashCode(get(getter, entity));
+        }
+        return hash;
+    }
+
+    /**
+     * Compares the fields of two entities, which are expected to be of the class these fields were found for.
+     */
+    boolean equals(Object entity, Object other) {
+        for (MethodHandle getter : getters) {
+            if (!Objects.deepEquals(get(getter, entity), get(getter, other))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int valueHashCode(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value.getClass().isArray()) {
+            return Arrays.deepHashCode(new Object[]{value});
+        }
+        return value.hashCode();
+    }
+
+    private static Object get(MethodHandle getter, Object entity) {
+        try {
+            return (Object) getter.invokeExact(entity);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Unable to read field of " + entity.getClass(), t);
+        }
+    }
+}
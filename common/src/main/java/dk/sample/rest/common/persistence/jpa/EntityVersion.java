@@ -0,0 +1,69 @@
+package dk.sample.rest.common.persistence.jpa;
+
+import java.sql.Timestamp;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * The version of a single {@link AbstractAuditable} entity, either taken from a loaded entity or read by a projection
+ * query before deciding whether to load the entity at all, e.g.:
+ * <pre>
+ *     select new dk.sample.rest.common.persistence.jpa.EntityVersion(e.version, e.lastModifiedTime) from Entity e where ...
+ * </pre>
+ */
+public final class EntityVersion implements Versioned {
+    private final long version;
+    private final Timestamp lastModified;
+
+    public EntityVersion(Long version, Timestamp lastModified) {
+        this.version = version == null ? 0 : version;
+        this.lastModified = lastModified == null ? new Timestamp(0) : new Timestamp(lastModified.getTime());
+    }
+
+    public static EntityVersion of(AbstractAuditable entity) {
+        return new EntityVersion(entity.getVersion(), entity.getLastModifiedTime());
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public Timestamp getLastModified() {
+        return new Timestamp(lastModified.getTime());
+    }
+
+    @Override
+    public String getTag() {
+        return Long.toHexString(version) + "-" + Long.toHexString(lastModified.getTime());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EntityVersion that = (EntityVersion) o;
+        return new EqualsBuilder()
+                .append(version, that.version)
+                .append(lastModified, that.lastModified)
+                .build();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+                .append(version)
+                .append(lastModified)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return getTag();
+    }
+}
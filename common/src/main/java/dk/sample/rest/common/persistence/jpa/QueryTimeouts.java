@@ -0,0 +1,46 @@
+package dk.sample.rest.common.persistence.jpa;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.TypedQuery;
+
+import dk.sample.rest.common.core.deadline.Deadline;
+import dk.sample.rest.common.core.deadline.DeadlineExceededException;
+
+/**
+ * Gives queries the time remaining until the {@link Deadline} of the current request as their timeout, thus the
+ * database abandons a statement and releases the connection once the caller has given up. JDBC counts the timeout in
+ * whole seconds, the remaining time is therefore rounded up to at least a second. A query created after the deadline
+ * has passed is not run at all.
+ */
+public final class QueryTimeouts {
+    public static final String TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+    private QueryTimeouts() {
+    }
+
+    /**
+     * @return the query limited by the deadline of the current request, the query is unchanged if there is no deadline
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public static <T> TypedQuery<T> limit(TypedQuery<T> query) {
+        Optional<Long> seconds = remainingSeconds();
+        if (seconds.isPresent()) {
+            query.setHint(TIMEOUT_HINT, TimeUnit.SECONDS.toMillis(seconds.get()));
+        }
+        return query;
+    }
+
+    private static Optional<Long> remainingSeconds() {
+        Optional<Deadline> deadline = Deadline.current();
+        if (!deadline.isPresent()) {
+            return Optional.empty();
+        }
+        if (deadline.get().isExpired()) {
+            throw new DeadlineExceededException("Deadline passed before running query");
+        }
+        long millis = deadline.get().remainingMillis();
+        return Optional.of(Math.max(1, (millis + TimeUnit.SECONDS.toMillis(1) - 1) / TimeUnit.SECONDS.toMillis(1)));
+    }
+}
@@ -0,0 +1,34 @@
+package dk.sample.rest.common.persistence.jpa;
+
+import java.util.UUID;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import dk.sample.rest.common.core.id.TimeOrderedUuid;
+
+/**
+ * Stores a UUID in a <code>BINARY(16)</code> column instead of the 36 characters of its string form, which saves 20
+ * bytes per key and per index entry. The bytes are stored in big endian order, so time ordered UUIDs stay ordered in the
+ * index. The converter is applied to an attribute explicitly:
+ * <pre>
+ * &#64;Convert(converter = UuidBinaryConverter.class)
+ * &#64;Column(name = "CORRELATION", length = 16, columnDefinition = "BINARY(16)")
+ * private UUID correlation;
+ * </pre>
+ * JPA does not apply converters to id attributes, a UUID id is mapped by Hibernate to the same bytes by
+ * <code>&#64;Type(type = "uuid-binary")</code>.
+ */
+@Converter
+public class UuidBinaryConverter implements AttributeConverter<UUID, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(UUID uuid) {
+        return uuid == null ? null : TimeOrderedUuid.toBytes(uuid);
+    }
+
+    @Override
+    public UUID convertToEntityAttribute(byte[] bytes) {
+        return bytes == null ? null : TimeOrderedUuid.fromBytes(bytes);
+    }
+}
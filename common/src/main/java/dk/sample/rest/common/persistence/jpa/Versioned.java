@@ -0,0 +1,19 @@
+package dk.sample.rest.common.persistence.jpa;
+
+import java.sql.Timestamp;
+
+/**
+ * The persisted version of an entity or of a collection of entities, as read without reading the entities themselves.
+ */
+public interface Versioned {
+
+    /**
+     * @return a compact value identifying this version
+     */
+    String getTag();
+
+    /**
+     * @return the time of the latest modification covered by this version
+     */
+    Timestamp getLastModified();
+}
@@ -0,0 +1,73 @@
+package dk.sample.rest.common.rs;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+import dk.sample.rest.common.core.deadline.Deadline;
+
+/**
+ * Produces responses of suspended requests on an executor of their own, releasing the thread of the container while
+ * e.g. a slow list is read and serialized. A response not produced within the timeout given is resumed by
+ * <code>503 Service Unavailable</code> with a <code>Retry-After</code> header, as is a request rejected by the executor
+ * since its queue is full. A request still waiting in the queue at its timeout is skipped once a thread is free.
+ * <p>
+ * The {@link Deadline} of the request is carried over to the thread producing the response, and the timeout is
+ * shortened to the deadline if that comes first. A request whose deadline has already passed is resumed by
+ * <code>503 Service Unavailable</code> at once.
+ */
+public final class AsyncResponses {
+    static final int RETRY_AFTER_SECONDS = 1;
+
+    private AsyncResponses() {
+    }
+
+    /**
+     * @param executor the executor producing the response
+     * @param response the suspended response
+     * @param timeout  the time given to produce the response
+     * @param producer producing the response, an exception thrown is resumed as is and thus mapped to a response
+     */
+    public static void dispatch(Executor executor, AsyncResponse response, long timeout, TimeUnit unit, Supplier<Response> producer) {
+        Deadline deadline = Deadline.current().orElse(null);
+        long remaining = deadline == null ? Long.MAX_VALUE : deadline.remainingMillis();
+        if (remaining <= 0) {
+            // a timeout of 0 would suspend the response without a timeout
+            response.resume(unavailable());
+            return;
+        }
+        response.setTimeoutHandler(timedOut -> timedOut.resume(unavailable()));
+        if (deadline == null) {
+            response.setTimeout(timeout, unit);
+        } else {
+            response.setTimeout(Math.min(unit.toMillis(timeout), remaining), TimeUnit.MILLISECONDS);
+        }
+        try {
+            executor.execute(() -> {
+                if (response.isDone()) {
+                    return;
+                }
+                Deadline previous = Deadline.set(deadline);
+                try {
+                    response.resume(producer.get());
+                } catch (RuntimeException e) {
+                    response.resume(e);
+                } finally {
+                    Deadline.set(previous);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            response.resume(unavailable());
+        }
+    }
+
+    private static Response unavailable() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", RETRY_AFTER_SECONDS)
+            .build();
+    }
+}
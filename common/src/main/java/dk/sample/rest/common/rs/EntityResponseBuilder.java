@@ -3,6 +3,7 @@ package dk.sample.rest.common.rs;
 import java.time.Instant;
 import java.util.Date;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
@@ -14,6 +15,8 @@ import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import dk.sample.rest.common.persistence.jpa.AbstractAuditable;
+import dk.sample.rest.common.persistence.jpa.EntityVersion;
+import dk.sample.rest.common.persistence.jpa.Versioned;
 
 /**
  * Builder to build {@link Response} instances based on assumptions on the returned concept.
@@ -32,20 +35,23 @@ public class EntityResponseBuilder<E, R> {
      * Hal+json media type.
      */
     public static final MediaType APPLICATION_HAL_JSON_TYPE = MediaType.valueOf(APPLICATION_HAL_JSON);
+    private static final int IMMUTABLE_MAXAGE = 365 * 24 * 60 * 60;
     private final E entity;
     private final Function<E, R> mapper;
 
     private String name;
     private String version;
     private Integer maxAge;
+    private boolean immutable;
     private String logToken;
+    private Versioned versioned;
 
     /**
-     * the rate limits headers values as a number of requests left - default value for not set is "-1"
+     * the rate limits reset headers value denotes the time left to a reset of the rate limit in seconds - not set value is "-1"
      */
     private String rateLimitTime2Reset = "-1";
     /**
-     * the rate limits reset headers value denotes the time left to a reset of the rate limit in milliseconds - not set value is "-1"
+     * the rate limits headers values as a number of requests per minute - default value for not set is "-1"
      */
     private String rateLimit = "-1";
     /**
@@ -64,7 +70,7 @@ public class EntityResponseBuilder<E, R> {
     /**
      * Construct new builder giving the entity and a mapper able to map the entity to a concrete representation. If the
      * given entity is an implementation of {@link AbstractAuditable} the last modified time from this will be use in
-     * the <code>last-modified</code> header.
+     * the <code>last-modified</code> header and the version of it in the <code>etag</code> header.
      */
     public EntityResponseBuilder(E entity, Function<E, R> mapper, String token) {
         this.entity = entity;
@@ -111,6 +117,24 @@ public class EntityResponseBuilder<E, R> {
         return this;
     }
 
+    /**
+     * Marks what is returned as never changing, it may then be cached for a year without ever being revalidated.
+     */
+    public EntityResponseBuilder<E, R> immutable() {
+        this.maxAge = IMMUTABLE_MAXAGE;
+        this.immutable = true;
+        return this;
+    }
+
+    /**
+     * Sets the persisted version of what is returned, e.g. the aggregate version of a collection, which is then used for
+     * the <code>etag</code> and <code>last-modified</code> headers rather than the entity given to the builder.
+     */
+    public EntityResponseBuilder<E, R> versioned(Versioned versioned) {
+        this.versioned = versioned;
+        return this;
+    }
+
     /**
      * Sets the rate limit calls per minute.
      */
@@ -128,7 +152,7 @@ public class EntityResponseBuilder<E, R> {
     }
 
     /**
-     * Sets the rate limit reset time in milliseconds.
+     * Sets the rate limit reset time in seconds.
      */
     public EntityResponseBuilder<E, R> rateLimitReset(long time2Reset) {
         this.rateLimitTime2Reset = Long.toString(time2Reset);
@@ -136,7 +160,7 @@ public class EntityResponseBuilder<E, R> {
     }
 
     /**
-     * Sets the rate limit reset time in milliseconds.
+     * Sets the number of requests remaining until the rate limit is reset.
      */
     public EntityResponseBuilder<E, R> rateLimitRemaining(long number) {
         this.rateLimitRemaining = Long.toString(number);
@@ -149,13 +173,24 @@ public class EntityResponseBuilder<E, R> {
      * a response with status not modified if appropriate.
      */
     public Response build(Request req) {
-        EntityTag eTag = new EntityTag(Integer.toString(entity.hashCode()));
-        Date lastModified = entity instanceof AbstractAuditable ? ((AbstractAuditable) entity).getLastModifiedTime() : Date.from(Instant.now());
+        EntityTag eTag = entityTag();
+        Date lastModified = lastModified();
         Response.ResponseBuilder notModifiedBuilder = req.evaluatePreconditions(lastModified, eTag);
         if (notModifiedBuilder != null) {
             return notModifiedBuilder.build();
         }
+        return build(eTag, lastModified);
+    }
+
+    /**
+     * Build a response without evaluating the preconditions of the request, e.g. for a response resumed once the request
+     * is no longer being handled, where the response is known to be a new one.
+     */
+    public Response build() {
+        return build(entityTag(), lastModified());
+    }
 
+    private Response build(EntityTag eTag, Date lastModified) {
         Map<String, String> parameters = new ConcurrentHashMap<>();
         if (name != null) {
             parameters.put("concept", name);
@@ -178,9 +213,53 @@ public class EntityResponseBuilder<E, R> {
         if (maxAge != null) {
             CacheControl cc = new CacheControl();
             cc.setMaxAge(maxAge);
+            if (immutable) {
+                cc.getCacheExtension().put("immutable", null);
+            }
             b.cacheControl(cc).expires(Date.from(Instant.now().plusSeconds(maxAge)));
         }
         return b.build();
     }
 
+    /**
+     * Evaluates the preconditions of a request against the persisted version of the entity before the entity itself is
+     * read, which allows for answering conditional requests from a lightweight projection query. The entity tag and last
+     * modified time are the same as {@link #build(Request)} yields for the entity in the given concept name and version.
+     *
+     * @return the response to return if the preconditions are met, e.g. not modified, otherwise empty
+     */
+    public static Optional<Response> evaluatePreconditions(Request req, String name, String version, Versioned versioned) {
+        Response.ResponseBuilder notModifiedBuilder = req.evaluatePreconditions(versioned.getLastModified(),
+            entityTag(name, version, versioned));
+        return notModifiedBuilder == null ? Optional.empty() : Optional.of(notModifiedBuilder.build());
+    }
+
+    /**
+     * The entity tag is strong when based on the persisted version of the entity or collection, it includes the concept
+     * name and version as the representation is a different one for each of these.
+     */
+    private static EntityTag entityTag(String name, String version, Versioned versioned) {
+        return new EntityTag((name == null ? "" : name) + "." + (version == null ? "" : version) + "." + versioned.getTag());
+    }
+
+    private EntityTag entityTag() {
+        if (versioned != null) {
+            return entityTag(name, version, versioned);
+        }
+        if (entity instanceof AbstractAuditable) {
+            return entityTag(name, version, EntityVersion.of((AbstractAuditable) entity));
+        }
+        return new EntityTag(Integer.toString(entity.hashCode()));
+    }
+
+    private Date lastModified() {
+        if (versioned != null) {
+            return versioned.getLastModified();
+        }
+        if (entity instanceof AbstractAuditable) {
+            return ((AbstractAuditable) entity).getLastModifiedTime();
+        }
+        return Date.from(Instant.now());
+    }
+
 }
@@ -30,12 +30,19 @@ public class HalJsonProvider extends JacksonJsonProvider {
     }
 
     public HalJsonProvider(ObjectMapper mapper) {
+        setMapper(configure(mapper));
+    }
+
+    /**
+     * Configures the mapper the way this provider does, for serializing representations ahead of writing the response.
+     */
+    static ObjectMapper configure(ObjectMapper mapper) {
         mapper.registerModule(new JavaTimeModule());
         mapper.registerModule(new Jdk8Module());
         mapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
         mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         mapper.disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE);
-        setMapper(mapper);
+        return mapper;
     }
 }
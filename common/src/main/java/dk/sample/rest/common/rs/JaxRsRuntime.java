@@ -1,12 +1,17 @@
 package dk.sample.rest.common.rs;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import javax.ws.rs.ext.RuntimeDelegate;
 
+import dk.sample.rest.common.rs.exception.DeadlineExceededExceptionMapper;
+import dk.sample.rest.common.rs.filter.ConcurrencyLimitFilter;
+import dk.sample.rest.common.rs.filter.DeadlineFilter;
 import dk.sample.rest.common.rs.filter.OriginFilter;
+import dk.sample.rest.common.rs.filter.RateLimitFilter;
 import dk.sample.rest.common.rs.jersey.DisableJerseyMOXyFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,11 +95,11 @@ public final class JaxRsRuntime {
     }
 
     public static Set<Class<?>> getExceptionMappers() {
-        return Collections.emptySet();
+        return Collections.singleton(DeadlineExceededExceptionMapper.class);
     }
 
     public static Set<Class<?>> getSerializers() {
-        Set<Class<?>> serializers = new HashSet<>(Collections.singleton(HalJsonProvider.class));
+        Set<Class<?>> serializers = new HashSet<>(Arrays.asList(HalJsonProvider.class, SerializedEntityWriter.class));
         if (runtime() == Runtime.JERSEY) {
             serializers.add(DisableJerseyMOXyFeature.class);
         }
@@ -102,7 +107,7 @@ public final class JaxRsRuntime {
     }
 
     public static Set<Class<?>> getFilters() {
-        return new HashSet<>(Collections.singletonList(OriginFilter.class));
+        return new HashSet<>(Arrays.asList(OriginFilter.class, DeadlineFilter.class, RateLimitFilter.class, ConcurrencyLimitFilter.class));
     }
 
     public static void configure(Set<Class<?>> classes) {
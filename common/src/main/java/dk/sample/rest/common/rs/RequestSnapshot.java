@@ -0,0 +1,149 @@
+package dk.sample.rest.common.rs;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+
+/**
+ * The method and conditional headers of a request captured while the request is being handled. The injected
+ * {@link Request} is bound to the thread handling the request, a response produced by another thread, e.g. a pooled
+ * list, evaluates the preconditions of the request against a snapshot instead. Variants cannot be selected from it.
+ */
+public final class RequestSnapshot implements Request {
+    private final String method;
+    private final List<String> ifMatch;
+    private final List<String> ifNoneMatch;
+    private final Optional<Date> ifModifiedSince;
+    private final Optional<Date> ifUnmodifiedSince;
+
+    private RequestSnapshot(String method, HttpHeaders headers) {
+        this.method = method;
+        ifMatch = tags(headers.getHeaderString(HttpHeaders.IF_MATCH));
+        ifNoneMatch = tags(headers.getHeaderString(HttpHeaders.IF_NONE_MATCH));
+        ifModifiedSince = date(headers.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE));
+        ifUnmodifiedSince = date(headers.getHeaderString(HttpHeaders.IF_UNMODIFIED_SINCE));
+    }
+
+    /**
+     * Captures the method and conditional headers of the current request, a snapshot is returned as it is.
+     */
+    public static Request of(Request request, HttpHeaders headers) {
+        return request instanceof RequestSnapshot ? request : new RequestSnapshot(request.getMethod(), headers);
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public Variant selectVariant(List<Variant> variants) {
+        throw new UnsupportedOperationException("Variants cannot be selected from a request snapshot");
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions(EntityTag eTag) {
+        return evaluatePreconditions(null, eTag);
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions(Date lastModified) {
+        return evaluatePreconditions(lastModified, null);
+    }
+
+    /**
+     * Evaluates the preconditions in the order given by RFC 7232 section 6, a date precondition is only evaluated in
+     * the absence of the corresponding entity tag precondition.
+     */
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions(Date lastModified, EntityTag eTag) {
+        if (!ifMatch.isEmpty()) {
+            if (!matches(ifMatch, eTag, true)) {
+                return Response.status(Response.Status.PRECONDITION_FAILED);
+            }
+        } else if (ifUnmodifiedSince.isPresent() && lastModified != null && modifiedSince(lastModified, ifUnmodifiedSince.get())) {
+            return Response.status(Response.Status.PRECONDITION_FAILED);
+        }
+        boolean readOnly = HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method);
+        if (!ifNoneMatch.isEmpty()) {
+            if (matches(ifNoneMatch, eTag, false)) {
+                return readOnly ? Response.notModified(eTag) : Response.status(Response.Status.PRECONDITION_FAILED);
+            }
+        } else if (readOnly && ifModifiedSince.isPresent() && lastModified != null
+            && !modifiedSince(lastModified, ifModifiedSince.get())) {
+            return Response.notModified().tag(eTag);
+        }
+        return null;
+    }
+
+    @Override
+    public Response.ResponseBuilder evaluatePreconditions() {
+        return ifMatch.isEmpty() ? null : Response.status(Response.Status.PRECONDITION_FAILED);
+    }
+
+    /**
+     * The strong comparison is used for <code>if-match</code> and the weak for <code>if-none-match</code>.
+     */
+    private static boolean matches(List<String> tags, EntityTag eTag, boolean strong) {
+        if (tags.contains("*")) {
+            return eTag != null;
+        }
+        if (eTag == null || (strong && eTag.isWeak())) {
+            return false;
+        }
+        for (String tag : tags) {
+            boolean weak = tag.startsWith("W/");
+            String value = weak ? tag.substring(2) : tag;
+            if (!(strong && weak) && value.equals("\"" + eTag.getValue() + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * HTTP dates are given in whole seconds, the last modified time is compared in whole seconds as well.
+     */
+    private static boolean modifiedSince(Date lastModified, Date since) {
+        return lastModified.getTime() / 1000 > since.getTime() / 1000;
+    }
+
+    private static List<String> tags(String header) {
+        if (header == null || "".equals(header.trim())) {
+            return Collections.emptyList();
+        }
+        List<String> tags = new ArrayList<>();
+        for (String tag : header.split(",")) {
+            if (!"".equals(tag.trim())) {
+                tags.add(tag.trim());
+            }
+        }
+        return Collections.unmodifiableList(tags);
+    }
+
+    /**
+     * A date which cannot be parsed is ignored as RFC 7232 prescribes.
+     */
+    private static Optional<Date> date(String header) {
+        if (header == null || "".equals(header.trim())) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Date.from(ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+}
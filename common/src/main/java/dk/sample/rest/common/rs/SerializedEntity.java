@@ -0,0 +1,102 @@
+package dk.sample.rest.common.rs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import dk.nykredit.jackson.dataformat.hal.HALMapper;
+import dk.sample.rest.common.persistence.jpa.Versioned;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * A representation serialized to hal+json ahead of writing the response, along with the version of what it represents.
+ * Representations of immutable resources may thus be serialized once and kept, the bytes are written as they are by
+ * {@link SerializedEntityWriter}, and given to {@link EntityResponseBuilder#versioned(Versioned)} the version yields the
+ * same entity tag and last modified time as the entity itself.
+ */
+public final class SerializedEntity implements Versioned {
+    private static final ObjectWriter WRITER = HalJsonProvider.configure(new HALMapper()).writer();
+
+    private final byte[] bytes;
+    private final Versioned version;
+
+    private SerializedEntity(byte[] bytes, Versioned version) {
+        this.bytes = bytes;
+        this.version = version;
+    }
+
+    /**
+     * Serializes a representation the same way as {@link HalJsonProvider} does.
+     *
+     * @param representation the representation to serialize
+     * @param version        the version of the entity represented
+     */
+    public static SerializedEntity of(Object representation, Versioned version) {
+        return new SerializedEntity(write(representation), version);
+    }
+
+    /**
+     * Serializes a representation which is versioned by its content, i.e. the entity tag is a hash of the serialized bytes.
+     *
+     * @param representation the representation to serialize
+     * @param lastModified   the time the content was last modified
+     */
+    public static SerializedEntity of(Object representation, Timestamp lastModified) {
+        byte[] bytes = write(representation);
+        return new SerializedEntity(bytes, new ContentVersion(DigestUtils.sha256Hex(bytes), lastModified));
+    }
+
+    private static byte[] write(Object representation) {
+        try {
+            return WRITER.writeValueAsBytes(representation);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize " + representation.getClass(), e);
+        }
+    }
+
+    /**
+     * @return the length of the serialized representation in bytes
+     */
+    public int size() {
+        return bytes.length;
+    }
+
+    /**
+     * Writes the serialized representation to the given stream.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    @Override
+    public String getTag() {
+        return version.getTag();
+    }
+
+    @Override
+    public Timestamp getLastModified() {
+        return version.getLastModified();
+    }
+
+    private static final class ContentVersion implements Versioned {
+        private final String tag;
+        private final Timestamp lastModified;
+
+        private ContentVersion(String tag, Timestamp lastModified) {
+            this.tag = tag;
+            this.lastModified = lastModified == null ? new Timestamp(0) : new Timestamp(lastModified.getTime());
+        }
+
+        @Override
+        public String getTag() {
+            return tag;
+        }
+
+        @Override
+        public Timestamp getLastModified() {
+            return new Timestamp(lastModified.getTime());
+        }
+    }
+}
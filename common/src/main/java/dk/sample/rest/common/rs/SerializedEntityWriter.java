@@ -0,0 +1,36 @@
+package dk.sample.rest.common.rs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes the bytes of a {@link SerializedEntity} straight to the response, without mapping any objects.
+ */
+@Provider
+@Produces({ "application/hal+json", MediaType.APPLICATION_JSON })
+public class SerializedEntityWriter implements MessageBodyWriter<SerializedEntity> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return SerializedEntity.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(SerializedEntity entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return entity.size();
+    }
+
+    @Override
+    public void writeTo(SerializedEntity entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        entity.writeTo(entityStream);
+    }
+}
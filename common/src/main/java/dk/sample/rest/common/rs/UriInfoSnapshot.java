@@ -0,0 +1,164 @@
+package dk.sample.rest.common.rs;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+
+/**
+ * The URI information of a request captured while the request is being handled. The injected {@link UriInfo} is bound
+ * to the thread handling the request, a response resumed later on by another thread, e.g. once an awaited event is
+ * published or a timeout is reached, builds its links from a snapshot instead. The matched resources are not captured.
+ */
+public final class UriInfoSnapshot implements UriInfo {
+    private final URI baseUri;
+    private final URI requestUri;
+    private final URI absolutePath;
+    private final String path;
+    private final String decodedPath;
+    private final List<PathSegment> pathSegments;
+    private final List<PathSegment> decodedPathSegments;
+    private final MultivaluedMap<String, String> pathParameters;
+    private final MultivaluedMap<String, String> decodedPathParameters;
+    private final MultivaluedMap<String, String> queryParameters;
+    private final MultivaluedMap<String, String> decodedQueryParameters;
+    private final List<String> matchedUris;
+    private final List<String> decodedMatchedUris;
+
+    private UriInfoSnapshot(UriInfo uriInfo) {
+        baseUri = uriInfo.getBaseUri();
+        requestUri = uriInfo.getRequestUri();
+        absolutePath = uriInfo.getAbsolutePath();
+        path = uriInfo.getPath(false);
+        decodedPath = uriInfo.getPath(true);
+        pathSegments = copy(uriInfo.getPathSegments(false));
+        decodedPathSegments = copy(uriInfo.getPathSegments(true));
+        pathParameters = copy(uriInfo.getPathParameters(false));
+        decodedPathParameters = copy(uriInfo.getPathParameters(true));
+        queryParameters = copy(uriInfo.getQueryParameters(false));
+        decodedQueryParameters = copy(uriInfo.getQueryParameters(true));
+        matchedUris = copy(uriInfo.getMatchedURIs(false));
+        decodedMatchedUris = copy(uriInfo.getMatchedURIs(true));
+    }
+
+    /**
+     * Captures the URI information of the current request, a snapshot is returned as it is.
+     */
+    public static UriInfo of(UriInfo uriInfo) {
+        return uriInfo instanceof UriInfoSnapshot ? uriInfo : new UriInfoSnapshot(uriInfo);
+    }
+
+    @Override
+    public String getPath() {
+        return decodedPath;
+    }
+
+    @Override
+    public String getPath(boolean decode) {
+        return decode ? decodedPath : path;
+    }
+
+    @Override
+    public List<PathSegment> getPathSegments() {
+        return decodedPathSegments;
+    }
+
+    @Override
+    public List<PathSegment> getPathSegments(boolean decode) {
+        return decode ? decodedPathSegments : pathSegments;
+    }
+
+    @Override
+    public URI getRequestUri() {
+        return requestUri;
+    }
+
+    @Override
+    public UriBuilder getRequestUriBuilder() {
+        return UriBuilder.fromUri(requestUri);
+    }
+
+    @Override
+    public URI getAbsolutePath() {
+        return absolutePath;
+    }
+
+    @Override
+    public UriBuilder getAbsolutePathBuilder() {
+        return UriBuilder.fromUri(absolutePath);
+    }
+
+    @Override
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    @Override
+    public UriBuilder getBaseUriBuilder() {
+        return UriBuilder.fromUri(baseUri);
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getPathParameters() {
+        return decodedPathParameters;
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getPathParameters(boolean decode) {
+        return decode ? decodedPathParameters : pathParameters;
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getQueryParameters() {
+        return decodedQueryParameters;
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getQueryParameters(boolean decode) {
+        return decode ? decodedQueryParameters : queryParameters;
+    }
+
+    @Override
+    public List<String> getMatchedURIs() {
+        return decodedMatchedUris;
+    }
+
+    @Override
+    public List<String> getMatchedURIs(boolean decode) {
+        return decode ? decodedMatchedUris : matchedUris;
+    }
+
+    @Override
+    public List<Object> getMatchedResources() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public URI resolve(URI uri) {
+        return baseUri.resolve(uri);
+    }
+
+    @Override
+    public URI relativize(URI uri) {
+        URI absolute = uri.isAbsolute() ? uri : resolve(uri);
+        return requestUri.relativize(absolute);
+    }
+
+    private static <T> List<T> copy(List<T> list) {
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    private static MultivaluedMap<String, String> copy(MultivaluedMap<String, String> map) {
+        MultivaluedMap<String, String> copy = new MultivaluedHashMap<>();
+        if (map != null) {
+            map.forEach((key, values) -> copy.put(key, copy(values)));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,20 @@
+package dk.sample.rest.common.rs.exception;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import dk.sample.rest.common.core.deadline.DeadlineExceededException;
+
+/**
+ * Maps work abandoned at its deadline to <code>504 Gateway Timeout</code>, the caller has given up on the response by
+ * then, thus it is only seen by intermediaries and in the access logs.
+ */
+@Provider
+public class DeadlineExceededExceptionMapper implements ExceptionMapper<DeadlineExceededException> {
+
+    @Override
+    public Response toResponse(DeadlineExceededException exception) {
+        return Response.status(Response.Status.GATEWAY_TIMEOUT).build();
+    }
+}
@@ -0,0 +1,115 @@
+package dk.sample.rest.common.rs.filter;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A limit of the number of concurrent requests adapted from the measured round trip times in the style of the gradient
+ * algorithm of Netflix concurrency-limits. The baseline round trip time is learned as a slow moving average of the
+ * measured times, if the recent times rise above the baseline by more than the tolerance the requests are queueing up
+ * somewhere, e.g. for a database connection, and the limit is cut in proportion, otherwise it grows by a small queue
+ * allowance, i.e. the square root of the limit.
+ * <pre>
+ * gradient = max(0.5, min(1.0, tolerance * baseline / rtt))
+ * limit    = (1 - smoothing) * limit + smoothing * (limit * gradient + sqrt(limit))
+ * </pre>
+ * The limit is not raised while less than half of it is in use, as the round trip times then tell nothing about the
+ * capacity. A request not releasing its permit, e.g. due to an exception never mapped to a response, is given up on
+ * after {@link #PERMIT_TIMEOUT_SECONDS} for the limit not to shrink for good.
+ */
+final class AdaptiveConcurrencyLimit {
+    static final int PERMIT_TIMEOUT_SECONDS = 120;
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BASELINE_WEIGHT = 1.0 / 600;
+    private static final long PERMIT_TIMEOUT = TimeUnit.SECONDS.toNanos(PERMIT_TIMEOUT_SECONDS);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final Set<Permit> permits = ConcurrentHashMap.newKeySet();
+    private volatile double limit;
+    private double baseline;
+
+    /**
+     * @param initialLimit the limit until round trip times are measured
+     * @param minLimit     the lowest limit
+     * @param maxLimit     the highest limit
+     */
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Admits a request if the requests in flight are below the share of the limit given.
+     *
+     * @param share the share of the limit available to the request, 1.0 for all of it
+     * @param now   the current time in nanoseconds
+     * @return the permit to release once the request is done, or empty if the request must be shed
+     */
+    Optional<Permit> tryAcquire(double share, long now) {
+        double available = Math.max(limit * share, 1);
+        if (permits.size() >= available) {
+            permits.removeIf(permit -> now - permit.start > PERMIT_TIMEOUT);
+            if (permits.size() >= available) {
+                return Optional.empty();
+            }
+        }
+        Permit permit = new Permit(this, now);
+        permits.add(permit);
+        return Optional.of(permit);
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return permits.size();
+    }
+
+    private synchronized void onSample(long rtt, int inFlight) {
+        if (baseline == 0) {
+            baseline = rtt;
+        } else {
+            baseline = baseline * (1 - BASELINE_WEIGHT) + rtt * BASELINE_WEIGHT;
+        }
+        if (baseline > 2 * rtt) {
+            // the baseline is still inflated by an overload which is over, bring it back faster than the average would
+            baseline *= 0.95;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baseline / rtt));
+        if (gradient >= 1.0 && inFlight < limit / 2) {
+            return;
+        }
+        double estimate = limit * gradient + Math.sqrt(limit);
+        double smoothed = limit * (1 - SMOOTHING) + estimate * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+
+    /**
+     * A request admitted by the limit.
+     */
+    static final class Permit {
+        private final AdaptiveConcurrencyLimit limit;
+        private final long start;
+
+        private Permit(AdaptiveConcurrencyLimit limit, long start) {
+            this.limit = limit;
+            this.start = start;
+        }
+
+        /**
+         * Releases the permit and feeds the round trip time of the request to the limit.
+         */
+        void release(long now) {
+            int inFlight = limit.permits.size();
+            if (limit.permits.remove(this)) {
+                limit.onSample(Math.max(now - start, 1), inFlight);
+            }
+        }
+    }
+}
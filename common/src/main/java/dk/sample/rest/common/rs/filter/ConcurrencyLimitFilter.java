@@ -0,0 +1,156 @@
+package dk.sample.rest.common.rs.filter;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.ext.Provider;
+
+import dk.sample.rest.common.rs.sse.ServerSentEventWriter;
+
+/**
+ * Sheds the requests exceeding an adaptive limit of concurrent requests per resource class by a fast
+ * <code>503 Service Unavailable</code> with a <code>Retry-After</code> header, before they queue up for the worker
+ * threads and database connections shared by every resource. The limit is learned from the round trip times of the
+ * requests to the resource class, see {@link AdaptiveConcurrencyLimit}.
+ * <p>
+ * Callers are prioritized by role, the roles are given highest priority first by the system property
+ * <code>sample.concurrency.priorities</code> as a comma separated list defaulting to {@link #DEFAULT_PRIORITIES}. The
+ * callers in the first role may use all of the limit, each following role {@link #PRIORITY_STEP} less and callers in
+ * none of the roles the least, thus e.g. <code>tx-system</code> traffic is still admitted when a spike of advisor
+ * requests has filled their share of the limit.
+ * <p>
+ * Event streams, i.e. resource methods producing <code>text/event-stream</code>, and long polls, i.e. requests with a
+ * <code>wait</code> query parameter to a resource method suspending its {@link AsyncResponse} and taking that parameter,
+ * hold no worker thread while they wait and are thus neither limited nor measured. Whether a method may wait is decided
+ * from the method, thus a <code>wait</code> parameter added to any other request does not exempt it from the limit.
+ * Other suspended requests, e.g. lists produced on a pool of their own, are limited and measured as every other, the
+ * permit is released once their response is resumed and passes the response filter.
+ */
+@Provider
+@Priority(Priorities.AUTHORIZATION + 1)
+public class ConcurrencyLimitFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    public static final String DEFAULT_PRIORITIES = "tx-system,advisor";
+    public static final double PRIORITY_STEP = 0.25;
+    static final int INITIAL_LIMIT = 20;
+    static final int MIN_LIMIT = 4;
+    static final int MAX_LIMIT = 200;
+    private static final double MIN_SHARE = 0.25;
+    private static final String PERMIT_PROPERTY = ConcurrencyLimitFilter.class.getName() + ".permit";
+    private static final ConcurrentMap<Class<?>, AdaptiveConcurrencyLimit> LIMITS = new ConcurrentHashMap<>();
+    private static final String WAIT_PARAMETER = "wait";
+    private static final ConcurrentMap<Method, Waiting> WAITING = new ConcurrentHashMap<>();
+
+    private final List<String> priorities;
+    private final LongSupplier clock;
+    private final ConcurrentMap<Class<?>, AdaptiveConcurrencyLimit> limits;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    public ConcurrencyLimitFilter() {
+        this(roles(System.getProperty("sample.concurrency.priorities", DEFAULT_PRIORITIES)), System::nanoTime, LIMITS);
+    }
+
+    ConcurrencyLimitFilter(List<String> priorities, LongSupplier clock, ConcurrentMap<Class<?>, AdaptiveConcurrencyLimit> limits) {
+        this.priorities = Collections.unmodifiableList(priorities);
+        this.clock = clock;
+        this.limits = limits;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        if (resourceInfo == null || resourceInfo.getResourceClass() == null || isWaiting(resourceInfo.getResourceMethod(), request)) {
+            return;
+        }
+        AdaptiveConcurrencyLimit limit = limits.computeIfAbsent(resourceInfo.getResourceClass(),
+            resource -> new AdaptiveConcurrencyLimit(INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT));
+        Optional<AdaptiveConcurrencyLimit.Permit> permit = limit.tryAcquire(share(request.getSecurityContext()), clock.getAsLong());
+        if (permit.isPresent()) {
+            request.setProperty(PERMIT_PROPERTY, permit.get());
+        } else {
+            request.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", 1)
+                .build());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object permit = request.getProperty(PERMIT_PROPERTY);
+        if (permit instanceof AdaptiveConcurrencyLimit.Permit) {
+            request.removeProperty(PERMIT_PROPERTY);
+            ((AdaptiveConcurrencyLimit.Permit) permit).release(clock.getAsLong());
+        }
+    }
+
+    private double share(SecurityContext security) {
+        if (security != null) {
+            for (int priority = 0; priority < priorities.size(); priority++) {
+                if (security.isUserInRole(priorities.get(priority))) {
+                    return Math.max(1.0 - priority * PRIORITY_STEP, MIN_SHARE);
+                }
+            }
+        }
+        return Math.max(1.0 - priorities.size() * PRIORITY_STEP, MIN_SHARE);
+    }
+
+    private static boolean isWaiting(Method method, ContainerRequestContext request) {
+        if (method == null) {
+            return false;
+        }
+        Waiting waiting = WAITING.computeIfAbsent(method, ConcurrencyLimitFilter::waiting);
+        return waiting == Waiting.ALWAYS || (waiting == Waiting.WHEN_ASKED
+            && request.getUriInfo() != null && request.getUriInfo().getQueryParameters().containsKey(WAIT_PARAMETER));
+    }
+
+    static Waiting waiting(Method method) {
+        Produces produces = method.getAnnotation(Produces.class);
+        if (produces != null && Arrays.stream(produces.value()).anyMatch(type -> type.contains(ServerSentEventWriter.MEDIA_TYPE))) {
+            return Waiting.ALWAYS;
+        }
+        Annotation[][] parameters = method.getParameterAnnotations();
+        boolean suspended = Arrays.stream(parameters)
+            .flatMap(Arrays::stream)
+            .anyMatch(annotation -> annotation instanceof Suspended);
+        boolean waitParameter = Arrays.stream(parameters)
+            .flatMap(Arrays::stream)
+            .anyMatch(annotation -> annotation instanceof QueryParam && WAIT_PARAMETER.equals(((QueryParam) annotation).value()));
+        return suspended && waitParameter ? Waiting.WHEN_ASKED : Waiting.NEVER;
+    }
+
+    private static List<String> roles(String priorities) {
+        return Arrays.stream(priorities.split(","))
+            .map(String::trim)
+            .filter(role -> !role.isEmpty())
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Whether requests to a resource method wait rather than work.
+     */
+    enum Waiting {
+        NEVER, WHEN_ASKED, ALWAYS
+    }
+}
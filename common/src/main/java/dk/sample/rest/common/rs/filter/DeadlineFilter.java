@@ -0,0 +1,51 @@
+package dk.sample.rest.common.rs.filter;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import dk.sample.rest.common.core.deadline.Deadline;
+
+/**
+ * Binds the deadline given by the caller in the {@link #DEADLINE_HEADER} header to the thread serving the request, see
+ * {@link Deadline#parse(String)} for the formats accepted. A request arriving after its deadline is answered by
+ * <code>504 Gateway Timeout</code> at once, and an unreadable deadline by <code>400 Bad Request</code>.
+ * <p>
+ * The deadline of a previous request served by the same thread is always cleared, also if the request has no deadline.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 1)
+public class DeadlineFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    public static final String DEADLINE_HEADER = "X-Request-Deadline";
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        Deadline.set(null);
+        String header = request.getHeaderString(DEADLINE_HEADER);
+        if (header == null || header.trim().isEmpty()) {
+            return;
+        }
+        Deadline deadline;
+        try {
+            deadline = Deadline.parse(header);
+        } catch (IllegalArgumentException e) {
+            request.abortWith(Response.status(Response.Status.BAD_REQUEST).build());
+            return;
+        }
+        if (deadline.isExpired()) {
+            request.abortWith(Response.status(Response.Status.GATEWAY_TIMEOUT).build());
+        } else {
+            Deadline.set(deadline);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Deadline.set(null);
+    }
+}
@@ -22,7 +22,7 @@ public class OriginFilter implements ContainerResponseFilter {
         {
             put("Access-Control-Allow-Origin", "*");
             put("Access-Control-Allow-Methods", "GET, POST, DELETE, PUT");
-            put("Access-Control-Allow-Headers", "Content-Type, Accept, X-Log-Token, X-Client-Version, Authorization");
+            put("Access-Control-Allow-Headers", "Content-Type, Accept, X-Log-Token, X-Client-Version, X-Request-Deadline, Authorization");
             put("Access-Control-Expose-Headers", "Location, X-Log-Token");
         }
     };
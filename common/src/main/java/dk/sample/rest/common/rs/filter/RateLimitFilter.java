@@ -0,0 +1,133 @@
+package dk.sample.rest.common.rs.filter;
+
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Priority;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dk.sample.rest.common.core.metrics.CacheMetrics;
+
+/**
+ * Limits the number of requests per caller by a token bucket refilled over a minute and one refilled over 24 hours, a
+ * request exceeding either is answered by <code>429 Too Many Requests</code> with a <code>Retry-After</code> header.
+ * The <code>X-RateLimit-*</code> headers of every response are set to the limits of the caller, the tokens remaining
+ * and the seconds until the buckets are full again, replacing the placeholders set by the services.
+ * <p>
+ * The caller is the authenticated user if any and otherwise the remote address, the buckets of a caller are kept in
+ * memory for a day after their latest request, thus the limits are per instance of the service. The limits default to
+ * {@link #DEFAULT_LIMIT_PER_MINUTE} and {@link #DEFAULT_LIMIT_PER_DAY} and may be set by the system properties
+ * <code>sample.ratelimit.minute</code> and <code>sample.ratelimit.day</code>.
+ */
+@Provider
+@Priority(Priorities.AUTHORIZATION)
+public class RateLimitFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    public static final int DEFAULT_LIMIT_PER_MINUTE = 600;
+    public static final int DEFAULT_LIMIT_PER_DAY = 100_000;
+    static final int TOO_MANY_REQUESTS = 429;
+    private static final String LIMITS_PROPERTY = RateLimitFilter.class.getName() + ".limits";
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final long DAY = TimeUnit.DAYS.toNanos(1);
+    private static final Cache<String, Limits> CALLERS = CacheMetrics.register("rate-limits", Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(1, TimeUnit.DAYS)
+            .recordStats()
+            .build());
+
+    private final int perMinute;
+    private final int perDay;
+    private final LongSupplier clock;
+    private final Cache<String, Limits> callers;
+
+    @Context
+    private HttpServletRequest servletRequest;
+
+    public RateLimitFilter() {
+        this(Integer.getInteger("sample.ratelimit.minute", DEFAULT_LIMIT_PER_MINUTE),
+            Integer.getInteger("sample.ratelimit.day", DEFAULT_LIMIT_PER_DAY), System::nanoTime, CALLERS);
+    }
+
+    RateLimitFilter(int perMinute, int perDay, LongSupplier clock, Cache<String, Limits> callers) {
+        this.perMinute = perMinute;
+        this.perDay = perDay;
+        this.clock = clock;
+        this.callers = callers;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        long now = clock.getAsLong();
+        Limits limits = callers.get(caller(request), key -> new Limits(perMinute, perDay, now));
+        request.setProperty(LIMITS_PROPERTY, limits);
+        if (!limits.tryConsume(now)) {
+            Response.ResponseBuilder tooMany = Response.status(TOO_MANY_REQUESTS)
+                .header("Retry-After", limits.secondsUntilAvailable(now));
+            request.abortWith(tooMany.build());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object limits = request.getProperty(LIMITS_PROPERTY);
+        if (limits instanceof Limits) {
+            ((Limits) limits).addHeaders(response.getHeaders(), clock.getAsLong());
+        }
+    }
+
+    private String caller(ContainerRequestContext request) {
+        Principal user = request.getSecurityContext() == null ? null : request.getSecurityContext().getUserPrincipal();
+        if (user != null) {
+            return "user:" + user.getName();
+        }
+        if (servletRequest != null && servletRequest.getRemoteAddr() != null) {
+            return "address:" + servletRequest.getRemoteAddr();
+        }
+        return "anonymous";
+    }
+
+    /**
+     * The buckets of a caller.
+     */
+    static final class Limits {
+        private final TokenBucket minute;
+        private final TokenBucket day;
+
+        Limits(int perMinute, int perDay, long now) {
+            minute = new TokenBucket(perMinute, MINUTE, now);
+            day = new TokenBucket(perDay, DAY, now);
+        }
+
+        /**
+         * Takes a token from both buckets, a request exceeding the daily limit still counts against the minute.
+         */
+        boolean tryConsume(long now) {
+            return minute.tryConsume(now) && day.tryConsume(now);
+        }
+
+        long secondsUntilAvailable(long now) {
+            return Math.max(Math.max(minute.secondsUntilAvailable(now), day.secondsUntilAvailable(now)), 1);
+        }
+
+        void addHeaders(MultivaluedMap<String, Object> headers, long now) {
+            int minuteRemaining = minute.remaining(now);
+            int dayRemaining = day.remaining(now);
+            TokenBucket limiting = minuteRemaining <= dayRemaining ? minute : day;
+            headers.putSingle("X-RateLimit-Limit", String.valueOf(minute.getLimit()));
+            headers.putSingle("X-RateLimit-Limit-24h", String.valueOf(day.getLimit()));
+            headers.putSingle("X-RateLimit-Remaining", String.valueOf(Math.min(minuteRemaining, dayRemaining)));
+            headers.putSingle("X-RateLimit-Reset", String.valueOf(limiting.secondsUntilFull(now)));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package dk.sample.rest.common.rs.filter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock free token bucket holding at most <code>limit</code> tokens, which are refilled evenly over the window, i.e.
+ * a caller may burst the full limit and is then allowed one request per <code>window / limit</code>. The bucket is kept
+ * as the single theoretical arrival time of the generic cell rate algorithm, which is updated by compare and set: the
+ * bucket is full when that time is in the past and empty when it is a full window ahead of now.
+ */
+final class TokenBucket {
+    private final int limit;
+    private final long window;
+    private final long interval;
+    private final AtomicLong arrival;
+
+    /**
+     * @param limit  the number of tokens in a full bucket
+     * @param window the time in nanoseconds to refill an empty bucket
+     * @param now    the current time in nanoseconds
+     */
+    TokenBucket(int limit, long window, long now) {
+        this.limit = limit;
+        this.window = window;
+        this.interval = window / limit;
+        this.arrival = new AtomicLong(now);
+    }
+
+    /**
+     * Takes a token if the bucket is not empty.
+     *
+     * @return true if a token was taken
+     */
+    boolean tryConsume(long now) {
+        long previous;
+        long next;
+        do {
+            previous = arrival.get();
+            next = Math.max(previous, now) + interval;
+            if (next - now > window) {
+                return false;
+            }
+        } while (!arrival.compareAndSet(previous, next));
+        return true;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of tokens left in the bucket
+     */
+    int remaining(long now) {
+        long used = Math.max(arrival.get() - now, 0);
+        return (int) Math.max((window - used) / interval, 0);
+    }
+
+    /**
+     * @return the seconds until the bucket is full again
+     */
+    long secondsUntilFull(long now) {
+        return toSeconds(arrival.get() - now);
+    }
+
+    /**
+     * @return the seconds until the next token is available in the bucket
+     */
+    long secondsUntilAvailable(long now) {
+        return toSeconds(arrival.get() + interval - now - window);
+    }
+
+    private static long toSeconds(long nanos) {
+        return nanos <= 0 ? 0 : (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,82 @@
+package dk.sample.rest.common.rs.metrics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents the statistics of an in-process cache.
+ */
+@Resource
+@ApiModel(value = "Cache",
+        description = "The statistics of an in-process cache")
+public class CacheRepresentation {
+    private String name;
+    private long size;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+
+    public CacheRepresentation(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        this.name = name;
+        this.size = cache.estimatedSize();
+        this.hits = stats.hitCount();
+        this.misses = stats.missCount();
+        this.hitRate = stats.hitRate();
+        this.evictions = stats.evictionCount();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "name",
+            example = "account-events",
+            value = "the name of the cache.")
+    public String getName() {
+        return name;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "size",
+            value = "the estimated number of entries in the cache.")
+    public long getSize() {
+        return size;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "hits",
+            value = "the number of lookups found in the cache since start.")
+    public long getHits() {
+        return hits;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "misses",
+            value = "the number of lookups not found in the cache since start.")
+    public long getMisses() {
+        return misses;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "hitRate",
+            example = "0.98",
+            value = "the ratio of lookups found in the cache, 1.0 if there were no lookups.")
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "evictions",
+            value = "the number of entries evicted to keep the cache within its bounds.")
+    public long getEvictions() {
+        return evictions;
+    }
+}
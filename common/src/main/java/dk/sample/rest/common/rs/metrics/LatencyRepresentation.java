@@ -0,0 +1,99 @@
+package dk.sample.rest.common.rs.metrics;
+
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Represents the latency distribution of a single method, all latencies are in microseconds.
+ */
+@Resource
+@ApiModel(value = "Latency",
+        description = "The latency distribution of a method in microseconds")
+public class LatencyRepresentation {
+    private String name;
+    private long count;
+    private double mean;
+    private long p50;
+    private long p90;
+    private long p99;
+    private long p999;
+    private long max;
+
+    public LatencyRepresentation(String name, Histogram histogram) {
+        this.name = name;
+        this.count = histogram.getTotalCount();
+        this.mean = histogram.getMean();
+        this.p50 = histogram.getValueAtPercentile(50.0);
+        this.p90 = histogram.getValueAtPercentile(90.0);
+        this.p99 = histogram.getValueAtPercentile(99.0);
+        this.p999 = histogram.getValueAtPercentile(99.9);
+        this.max = histogram.getMaxValue();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "name",
+            example = "dk.sample.rest.bank.account.persistence.AccountArchivist:getAccount",
+            value = "the class and method the latencies are recorded for.")
+    public String getName() {
+        return name;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "count",
+            value = "the number of calls recorded since start.")
+    public long getCount() {
+        return count;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "mean",
+            value = "the mean latency.")
+    public double getMean() {
+        return mean;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "p50",
+            value = "the median latency.")
+    public long getP50() {
+        return p50;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "p90",
+            value = "the 90th percentile latency.")
+    public long getP90() {
+        return p90;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "p99",
+            value = "the 99th percentile latency.")
+    public long getP99() {
+        return p99;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "p999",
+            value = "the 99.9th percentile latency.")
+    public long getP999() {
+        return p999;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "max",
+            value = "the highest latency recorded.")
+    public long getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,82 @@
+package dk.sample.rest.common.rs.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+import javax.ws.rs.core.UriInfo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Represents the latencies recorded for the methods whose duration is logged and the statistics of the in-process caches.
+ */
+@Resource
+@ApiModel(value = "Metrics",
+        description = "The latency distributions of the service methods")
+public class MetricsRepresentation {
+    private static final String UNIT = "microseconds";
+
+    @EmbeddedResource("latencies")
+    private Collection<LatencyRepresentation> latencies;
+
+    @EmbeddedResource("caches")
+    private Collection<CacheRepresentation> caches;
+
+    private String unit;
+
+    @Link
+    private HALLink self;
+
+    public MetricsRepresentation(Map<String, Histogram> histograms, Map<String, Cache<?, ?>> caches, UriInfo uriInfo) {
+        this.latencies = new ArrayList<>();
+        histograms.forEach((name, histogram) -> latencies.add(new LatencyRepresentation(name, histogram)));
+        this.caches = new ArrayList<>();
+        caches.forEach((name, cache) -> this.caches.add(new CacheRepresentation(name, cache)));
+        this.unit = UNIT;
+        this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(MetricsServiceExposure.class)
+                .build())
+                .build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "latencies",
+            value = "the latency distribution of each method called since start.")
+    public Collection<LatencyRepresentation> getLatencies() {
+        return latencies;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "caches",
+            value = "the statistics of the in-process caches.")
+    public Collection<CacheRepresentation> getCaches() {
+        return caches;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "unit",
+            example = UNIT,
+            value = "the unit of the latencies.")
+    public String getUnit() {
+        return unit;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "self",
+            notes = "link to the metrics.")
+    public HALLink getSelf() {
+        return self;
+    }
+}
@@ -0,0 +1,78 @@
+package dk.sample.rest.common.rs.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import dk.sample.rest.common.core.metrics.CacheMetrics;
+import dk.sample.rest.common.core.metrics.LatencyHistograms;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * REST exposure of the latency histograms recorded for the methods annotated with
+ * {@link dk.sample.rest.common.core.logging.LogDuration}, e.g. for dashboards of the service level objectives.
+ */
+@Path("/metrics")
+@Api(value = "/metrics",
+    tags = {"metrics"})
+public class MetricsServiceExposure {
+    private final Map<String, MetricsProducerMethod> metricsProducers = new HashMap<>();
+
+    public MetricsServiceExposure() {
+        metricsProducers.put("application/hal+json", this::getMetricsSG1V1);
+        metricsProducers.put("application/hal+json;concept=metrics;v=1", this::getMetricsSG1V1);
+    }
+
+    @GET
+    @Produces({"application/hal+json", "application/hal+json;concept=metrics;v=1"})
+    @ApiOperation(
+        value = "latency distributions of the service methods", response = MetricsRepresentation.class,
+        notes = "the latencies of every method with logged duration, i.e. the exposures and archivists, recorded in histograms since " +
+            "start of the service, the percentiles are thus accurate to three significant digits without parsing the log. Along with " +
+            "these are the hits and misses of the in-process caches",
+        tags = {"metrics"},
+        produces = "application/hal+json, application/hal+json;concept=metrics;v=1",
+        nickname = "getMetrics"
+    )
+    public Response getMetrics(@Context UriInfo uriInfo, @Context Request request,
+                               @HeaderParam("Accept") String accept,
+                               @HeaderParam("X-Log-Token") String xLogToken) {
+        return metricsProducers.getOrDefault(accept, this::handleUnsupportedContentType).getResponse(uriInfo, request, xLogToken);
+    }
+
+    Response getMetricsSG1V1(UriInfo uriInfo, Request request, String token) {
+        MetricsRepresentation metrics = new MetricsRepresentation(LatencyHistograms.snapshot(), CacheMetrics.caches(), uriInfo);
+        CacheControl cc = new CacheControl();
+        cc.setNoStore(true);
+        String logToken = (token != null && !"".equals(token.trim())) ? token : UUID.randomUUID().toString();
+        return Response.ok()
+            .entity(metrics)
+            .cacheControl(cc)
+            .type("application/hal+json;concept=metrics;v=1")
+            .header("X-Log-Token", logToken)
+            .header("X-RateLimit-Limit", "-1")
+            .header("X-RateLimit-Limit-24h", "-1")
+            .header("X-RateLimit-Remaining", "-1")
+            .header("X-RateLimit-Reset", "-1")
+            .build();
+    }
+
+    Response handleUnsupportedContentType(UriInfo uriInfo, Request request, String xLogToken) {
+        return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build();
+    }
+
+    interface MetricsProducerMethod {
+        Response getResponse(UriInfo uriInfo, Request request, String xLogToken);
+    }
+}
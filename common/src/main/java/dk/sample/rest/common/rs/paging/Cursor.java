@@ -0,0 +1,121 @@
+package dk.sample.rest.common.rs.paging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An opaque position in a keyset (seek) ordered listing. The cursor carries the values of the ordering keys of the
+ * last (or first) element the consumer has seen together with the direction to continue in, which allows the next
+ * page to be found by a single index range scan regardless of how deep the consumer has paged.
+ * <p>
+ * The encoded form is url safe and is not meant to be interpreted by consumers of the API.
+ */
+public final class Cursor {
+    private static final String SEPARATOR = ".";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Direction direction;
+    private final List<String> keys;
+
+    private Cursor(Direction direction, List<String> keys) {
+        this.direction = direction;
+        this.keys = Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * @param keys the ordering key values of the last element seen, the page continues after these
+     */
+    public static Cursor after(String... keys) {
+        return new Cursor(Direction.NEXT, new ArrayList<>(Arrays.asList(keys)));
+    }
+
+    /**
+     * @param keys the ordering key values of the first element seen, the page ends before these
+     */
+    public static Cursor before(String... keys) {
+        return new Cursor(Direction.PREV, new ArrayList<>(Arrays.asList(keys)));
+    }
+
+    /**
+     * Decodes a cursor previously created by {@link #encode()}.
+     *
+     * @return the cursor or empty if the token is absent or is not a valid cursor
+     */
+    public static Optional<Cursor> decode(String token) {
+        if (token == null || "".equals(token.trim())) {
+            return Optional.empty();
+        }
+        String[] parts = token.trim().split("\\" + SEPARATOR);
+        Optional<Direction> direction = Direction.fromCode(parts[0]);
+        if (!direction.isPresent() || parts.length < 2) {
+            return Optional.empty();
+        }
+        List<String> keys = new ArrayList<>(parts.length - 1);
+        try {
+            for (int i = 1; i < parts.length; i++) {
+                keys.add(new String(DECODER.decode(parts[i]), StandardCharsets.UTF_8));
+            }
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        return Optional.of(new Cursor(direction.get(), keys));
+    }
+
+    public String encode() {
+        StringBuilder sb = new StringBuilder(direction.code);
+        for (String key : keys) {
+            sb.append(SEPARATOR).append(ENCODER.encodeToString(key.getBytes(StandardCharsets.UTF_8)));
+        }
+        return sb.toString();
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public boolean isNext() {
+        return Direction.NEXT == direction;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public String getKey(int index) {
+        return keys.get(index);
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+
+    /**
+     * The direction in which a listing continues from the position of the cursor.
+     */
+    public enum Direction {
+        NEXT("n"),
+        PREV("p");
+
+        private final String code;
+
+        Direction(String code) {
+            this.code = code;
+        }
+
+        private static Optional<Direction> fromCode(String code) {
+            for (Direction d : values()) {
+                if (d.code.equals(code)) {
+                    return Optional.of(d);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dk.sample.rest.common.rs.paging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * A bounded slice of a keyset ordered listing, knowing whether there are elements before and after it.
+ *
+ * @param <E> the type of the elements in the page
+ */
+public final class Page<E> {
+    private final List<E> items;
+    private final boolean hasPrevious;
+    private final boolean hasNext;
+
+    public Page(List<E> items, boolean hasPrevious, boolean hasNext) {
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.hasPrevious = hasPrevious;
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * Creates a page from rows fetched in the direction of travel of the cursor, i.e. descending when paging
+     * backwards. The rows are expected to be fetched with a limit of one more than the size of the page, the extra
+     * row is only used to detect whether the listing continues beyond the page.
+     *
+     * @param rows   the rows as fetched, at most <code>size + 1</code>
+     * @param size   the size of the page
+     * @param cursor the cursor used for the fetch, empty when the first page was fetched
+     */
+    public static <E> Page<E> of(List<E> rows, int size, Optional<Cursor> cursor) {
+        boolean more = rows.size() > size;
+        List<E> items = new ArrayList<>(more ? rows.subList(0, size) : rows);
+        if (cursor.isPresent() && !cursor.get().isNext()) {
+            Collections.reverse(items);
+            return new Page<>(items, more, true);
+        }
+        return new Page<>(items, cursor.isPresent(), more);
+    }
+
+    public List<E> getItems() {
+        return items;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    public Optional<E> first() {
+        return items.isEmpty() ? Optional.empty() : Optional.of(items.get(0));
+    }
+
+    public Optional<E> last() {
+        return items.isEmpty() ? Optional.empty() : Optional.of(items.get(items.size() - 1));
+    }
+
+    public boolean hasPrevious() {
+        return hasPrevious;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Page<?> that = (Page<?>) o;
+        return new EqualsBuilder()
+                .append(items, that.items)
+                .append(hasPrevious, that.hasPrevious)
+                .append(hasNext, that.hasNext)
+                .build();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+                .append(items)
+                .append(hasPrevious)
+                .append(hasNext)
+                .build();
+    }
+}
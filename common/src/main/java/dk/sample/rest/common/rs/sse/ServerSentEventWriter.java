@@ -0,0 +1,72 @@
+package dk.sample.rest.common.rs.sse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import dk.sample.rest.common.rs.SerializedEntity;
+
+/**
+ * Writes a <code>text/event-stream</code> as defined by the Server-Sent Events specification, every event is flushed as
+ * soon as it is written. The data of an event is a serialized hal+json representation, which holds no line breaks and
+ * is thus written as a single data line.
+ */
+public final class ServerSentEventWriter {
+    public static final String MEDIA_TYPE = "text/event-stream";
+
+    private static final byte[] ID = "id: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT = "event: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA = "data: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RETRY = "retry: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COMMENT = ": ".getBytes(StandardCharsets.UTF_8);
+    private static final int LF = '\n';
+
+    private final OutputStream out;
+
+    public ServerSentEventWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes an event, the id is sent back by the client as <code>Last-Event-ID</code> when reconnecting. Events without
+     * a name are dispatched to the <code>onmessage</code> handler of the client.
+     *
+     * @param name the name of the event or null for an unnamed event
+     */
+    public void event(String id, String name, SerializedEntity data) throws IOException {
+        field(ID, id);
+        if (name != null) {
+            field(EVENT, name);
+        }
+        out.write(DATA);
+        data.writeTo(out);
+        out.write(LF);
+        out.write(LF);
+        out.flush();
+    }
+
+    /**
+     * Tells the client how long to wait before reconnecting once the stream is closed.
+     */
+    public void retry(long millis) throws IOException {
+        field(RETRY, Long.toString(millis));
+        out.write(LF);
+        out.flush();
+    }
+
+    /**
+     * Writes a comment, which is ignored by the client, to keep the connection open and to find out whether the client
+     * is still there.
+     */
+    public void comment(String text) throws IOException {
+        field(COMMENT, text);
+        out.write(LF);
+        out.flush();
+    }
+
+    private void field(byte[] name, String value) throws IOException {
+        out.write(name);
+        out.write(value.replace('\r', ' ').replace('\n', ' ').getBytes(StandardCharsets.UTF_8));
+        out.write(LF);
+    }
+}
@@ -0,0 +1,56 @@
+package dk.sample.rest.common.core.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BoundedExecutorTest {
+
+    @Test
+    public void testRejectWhenQueueIsFull() throws InterruptedException {
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 2, Executors.defaultThreadFactory());
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        String[] name = new String[1];
+        try {
+            executor.execute(() -> {
+                name[0] = Thread.currentThread().getName();
+                running.countDown();
+                await(release);
+                done.countDown();
+            });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            executor.execute(done::countDown);
+            executor.execute(done::countDown);
+            assertEquals(2, executor.queued());
+            try {
+                executor.execute(done::countDown);
+                fail("queue should be full");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals("test-1", name[0]);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package dk.sample.rest.common.core.concurrent;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+import dk.sample.rest.common.rs.AsyncResponses;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ListExecutorTest {
+    private final ListExecutor lists = new ListExecutor("test-lists", 1, 1) { };
+    private final CountDownLatch running = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void start() throws Exception {
+        ThreadFactory threadFactory = mock(ThreadFactory.class);
+        when(threadFactory.newThread(any())).then(invocation -> new Thread(invocation.<Runnable>getArgument(0)));
+        Field field = ListExecutor.class.getDeclaredField("threadFactory");
+        field.setAccessible(true);
+        field.set(lists, threadFactory);
+        lists.start();
+    }
+
+    @After
+    public void stop() {
+        release.countDown();
+        lists.stop();
+    }
+
+    @Test
+    public void testRejectedWhenQueueIsFull() throws Exception {
+        AsyncResponses.dispatch(lists.executor(), mock(AsyncResponse.class), 10, TimeUnit.SECONDS, this::blocking);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        AsyncResponses.dispatch(lists.executor(), mock(AsyncResponse.class), 10, TimeUnit.SECONDS, this::blocking);
+
+        AsyncResponse rejected = mock(AsyncResponse.class);
+        AsyncResponses.dispatch(lists.executor(), rejected, 10, TimeUnit.SECONDS, this::blocking);
+        ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        verify(rejected).resume(resumed.capture());
+        assertEquals(503, resumed.getValue().getStatus());
+        assertEquals("1", resumed.getValue().getHeaderString("Retry-After"));
+    }
+
+    private Response blocking() {
+        running.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Response.ok().build();
+    }
+}
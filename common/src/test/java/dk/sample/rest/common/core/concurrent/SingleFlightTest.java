@@ -0,0 +1,114 @@
+package dk.sample.rest.common.core.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dk.sample.rest.common.core.deadline.Deadline;
+import dk.sample.rest.common.core.deadline.DeadlineExceededException;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+    private final SingleFlight<String, Object> flights = new SingleFlight<>();
+    private final CountDownLatch loading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @After
+    public void reset() {
+        release.countDown();
+        Deadline.set(null);
+    }
+
+    @Test
+    public void testConcurrentLoadsShared() throws Exception {
+        Object value = new Object();
+        FutureTask<Object> leader = new FutureTask<>(() -> flights.load("key", () -> blockingLoad(value)));
+        new Thread(leader).start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        FutureTask<Object> follower = follow("key");
+
+        release.countDown();
+        assertSame(value, leader.get(5, TimeUnit.SECONDS));
+        assertSame(value, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(0, flights.inFlight());
+
+        assertSame(value, flights.load("key", () -> {
+            loads.incrementAndGet();
+            return value;
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testFailureShared() throws Exception {
+        IllegalStateException failure = new IllegalStateException("failed");
+        FutureTask<Object> leader = new FutureTask<>(() -> flights.load("key", () -> {
+            blockingLoad(null);
+            throw failure;
+        }));
+        new Thread(leader).start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        FutureTask<Object> follower = follow("key");
+
+        release.countDown();
+        assertSame(failure, cause(leader));
+        assertSame(failure, cause(follower));
+        assertEquals(0, flights.inFlight());
+    }
+
+    @Test
+    public void testWaitBoundedByDeadline() throws Exception {
+        new Thread(() -> flights.load("key", () -> blockingLoad(null))).start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Deadline.set(Deadline.after(20));
+        try {
+            flights.load("key", () -> blockingLoad(null));
+            fail("deadline should pass while waiting");
+        } catch (DeadlineExceededException e) {
+            assertEquals(1, loads.get());
+        }
+    }
+
+    private Object blockingLoad(Object value) {
+        loads.incrementAndGet();
+        loading.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+
+    private FutureTask<Object> follow(String key) throws InterruptedException {
+        FutureTask<Object> follower = new FutureTask<>(() -> flights.load(key, () -> {
+            throw new AssertionError("a concurrent load should be shared");
+        }));
+        Thread thread = new Thread(follower);
+        thread.start();
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        return follower;
+    }
+
+    private static Throwable cause(FutureTask<Object> task) throws Exception {
+        try {
+            task.get(5, TimeUnit.SECONDS);
+            fail("load should fail");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+}
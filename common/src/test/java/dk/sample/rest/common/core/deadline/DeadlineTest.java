@@ -0,0 +1,47 @@
+package dk.sample.rest.common.core.deadline;
+
+import java.time.Instant;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeadlineTest {
+
+    @Test
+    public void testParseMillis() {
+        Deadline deadline = Deadline.parse("1500");
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remainingMillis() <= 1500);
+        assertTrue(deadline.remainingMillis() > 1000);
+    }
+
+    @Test
+    public void testParseInstant() {
+        Deadline deadline = Deadline.parse(Instant.now().plusSeconds(30).toString());
+        assertTrue(deadline.remainingMillis() <= 30000);
+        assertTrue(deadline.remainingMillis() > 25000);
+        assertTrue(Deadline.parse("2016-10-18T10:15:30.250Z").isExpired());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalid() {
+        Deadline.parse("tomorrow");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseNegative() {
+        Deadline.parse("-100");
+    }
+
+    @Test
+    public void testMin() {
+        Deadline soon = Deadline.after(100);
+        Deadline later = Deadline.after(10000);
+        assertSame(soon, soon.min(later));
+        assertSame(soon, later.min(soon));
+        assertTrue(Deadline.after(0).isExpired());
+    }
+}
@@ -0,0 +1,138 @@
+package dk.sample.rest.common.core.deadline;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.interceptor.InvocationContext;
+import javax.persistence.QueryTimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TimeBudgetInterceptorTest {
+    private final TimeBudgetInterceptor interceptor = new TimeBudgetInterceptor();
+
+    @After
+    public void reset() {
+        Deadline.set(null);
+    }
+
+    @Test
+    public void testBudgets() throws Exception {
+        assertEquals(2000, TimeBudgetInterceptor.budget(Service.class.getMethod("lookup")));
+        assertEquals(8000, TimeBudgetInterceptor.budget(Service.class.getMethod("list")));
+    }
+
+    @Test
+    public void testDeadlineNarrowedByBudget() throws Exception {
+        AtomicReference<Optional<Deadline>> during = new AtomicReference<>();
+        InvocationContext ctx = invocation("lookup");
+        when(ctx.proceed()).then(invocation -> {
+            during.set(Deadline.current());
+            return "proceeded";
+        });
+        Deadline.set(Deadline.after(60000));
+
+        assertEquals("proceeded", interceptor.withinBudget(ctx));
+        assertTrue(during.get().get().remainingMillis() <= 2000);
+        assertTrue(Deadline.current().get().remainingMillis() > 2000);
+    }
+
+    @Test
+    public void testBudgetNarrowedByDeadline() throws Exception {
+        AtomicReference<Optional<Deadline>> during = new AtomicReference<>();
+        InvocationContext ctx = invocation("list");
+        when(ctx.proceed()).then(invocation -> {
+            during.set(Deadline.current());
+            return "proceeded";
+        });
+        Deadline deadline = Deadline.after(500);
+        Deadline.set(deadline);
+
+        interceptor.withinBudget(ctx);
+        assertSame(deadline, during.get().get());
+    }
+
+    @Test
+    public void testBudgetWithoutDeadline() throws Exception {
+        AtomicReference<Optional<Deadline>> during = new AtomicReference<>();
+        InvocationContext ctx = invocation("list");
+        when(ctx.proceed()).then(invocation -> {
+            during.set(Deadline.current());
+            return "proceeded";
+        });
+
+        interceptor.withinBudget(ctx);
+        assertTrue(during.get().isPresent());
+        assertFalse(Deadline.current().isPresent());
+    }
+
+    @Test
+    public void testUnboundedBudget() throws Exception {
+        AtomicReference<Optional<Deadline>> during = new AtomicReference<>();
+        InvocationContext ctx = invocation("export");
+        when(ctx.proceed()).then(invocation -> {
+            during.set(Deadline.current());
+            return "proceeded";
+        });
+        Deadline deadline = Deadline.after(-1);
+        Deadline.set(deadline);
+
+        assertEquals("proceeded", interceptor.withinBudget(ctx));
+        assertFalse(during.get().isPresent());
+        assertSame(deadline, Deadline.current().get());
+    }
+
+    @Test
+    public void testExpiredDeadlineIsNotProceeded() throws Exception {
+        InvocationContext ctx = invocation("lookup");
+        Deadline.set(Deadline.after(-1));
+        try {
+            interceptor.withinBudget(ctx);
+            fail("deadline has passed");
+        } catch (DeadlineExceededException e) {
+            verify(ctx, never()).proceed();
+        }
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void testQueryTimeout() throws Exception {
+        InvocationContext ctx = invocation("lookup");
+        when(ctx.proceed()).thenThrow(new QueryTimeoutException("timed out"));
+        interceptor.withinBudget(ctx);
+    }
+
+    private static InvocationContext invocation(String method) throws Exception {
+        InvocationContext ctx = mock(InvocationContext.class);
+        when(ctx.getMethod()).thenReturn(Service.class.getMethod(method));
+        when(ctx.proceed()).thenReturn("proceeded");
+        return ctx;
+    }
+
+    @TimeBudget(millis = 2000)
+    public static class Service {
+        public String lookup() {
+            return "found";
+        }
+
+        @TimeBudget(millis = 8000)
+        public String list() {
+            return "listed";
+        }
+
+        @TimeBudget(millis = TimeBudget.UNBOUNDED)
+        public String export() {
+            return "exported";
+        }
+    }
+}
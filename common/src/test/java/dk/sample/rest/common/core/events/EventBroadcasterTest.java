@@ -0,0 +1,72 @@
+package dk.sample.rest.common.core.events;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class EventBroadcasterTest {
+
+    @Test
+    public void testFanOut() throws InterruptedException {
+        EventBroadcaster<String> broadcaster = new EventBroadcaster<>(2, 10, 0);
+        EventBroadcaster.Subscription<String> first = broadcaster.subscribe().get();
+        EventBroadcaster.Subscription<String> second = broadcaster.subscribe().get();
+        assertFalse(broadcaster.subscribe().isPresent());
+
+        broadcaster.publish("event");
+        assertEquals("event", first.next(0, TimeUnit.SECONDS));
+        assertEquals("event", second.next(0, TimeUnit.SECONDS));
+        assertNull(first.next(0, TimeUnit.SECONDS));
+
+        second.close();
+        second.close();
+        assertEquals(1, broadcaster.subscribers());
+        broadcaster.publish("other");
+        assertNull(second.next(0, TimeUnit.SECONDS));
+        assertTrue(broadcaster.subscribe().isPresent());
+    }
+
+    @Test
+    public void testOverflow() throws InterruptedException {
+        EventBroadcaster<String> broadcaster = new EventBroadcaster<>(1, 2, 0);
+        EventBroadcaster.Subscription<String> subscription = broadcaster.subscribe().get();
+        broadcaster.publish("1");
+        broadcaster.publish("2");
+        assertFalse(subscription.isOverflowed());
+        broadcaster.publish("3");
+        assertTrue(subscription.isOverflowed());
+        assertEquals("1", subscription.next(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPublishAfterCommit() throws InterruptedException {
+        EventBroadcaster<String> broadcaster = new EventBroadcaster<>(1, 10, 0);
+        Optional<EventBroadcaster.Subscription<String>> subscription = broadcaster.subscribe();
+        TransactionSynchronizationRegistry registry = mock(TransactionSynchronizationRegistry.class);
+        broadcaster.publishAfterCommit(registry, "committed");
+        broadcaster.publishAfterCommit(registry, "rolled back");
+
+        ArgumentCaptor<Synchronization> synchronizations = ArgumentCaptor.forClass(Synchronization.class);
+        verify(registry, times(2)).registerInterposedSynchronization(synchronizations.capture());
+        assertNull(subscription.get().next(0, TimeUnit.SECONDS));
+
+        synchronizations.getAllValues().get(0).afterCompletion(Status.STATUS_COMMITTED);
+        synchronizations.getAllValues().get(1).afterCompletion(Status.STATUS_ROLLEDBACK);
+        assertEquals("committed", subscription.get().next(0, TimeUnit.SECONDS));
+        assertNull(subscription.get().next(0, TimeUnit.SECONDS));
+    }
+}
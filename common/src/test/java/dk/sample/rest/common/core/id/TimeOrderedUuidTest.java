@@ -0,0 +1,63 @@
+package dk.sample.rest.common.core.id;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import dk.sample.rest.common.persistence.jpa.UuidBinaryConverter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimeOrderedUuidTest {
+
+    @Test
+    public void testVersionAndTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID uuid = TimeOrderedUuid.next();
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertTrue(TimeOrderedUuid.timestamp(uuid) >= before);
+        assertTrue(TimeOrderedUuid.timestamp(uuid) <= System.currentTimeMillis() + 1);
+    }
+
+    @Test
+    public void testOrdered() {
+        UUID previous = TimeOrderedUuid.next();
+        String previousString = previous.toString();
+        for (int i = 0; i < 10000; i++) {
+            UUID uuid = TimeOrderedUuid.next();
+            String string = uuid.toString();
+            assertTrue(Long.compareUnsigned(uuid.getMostSignificantBits(), previous.getMostSignificantBits()) > 0);
+            assertTrue(string.compareTo(previousString) > 0);
+            previous = uuid;
+            previousString = string;
+        }
+    }
+
+    @Test
+    public void testUniqueWhenConcurrent() {
+        Set<UUID> uuids = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 40000).parallel().forEach(i -> uuids.add(TimeOrderedUuid.next()));
+        assertEquals(40000, uuids.size());
+    }
+
+    @Test
+    public void testBinary() {
+        UUID uuid = TimeOrderedUuid.next();
+        UuidBinaryConverter converter = new UuidBinaryConverter();
+        byte[] bytes = converter.convertToDatabaseColumn(uuid);
+        assertEquals(16, bytes.length);
+        assertEquals(uuid, converter.convertToEntityAttribute(bytes));
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16},
+            TimeOrderedUuid.toBytes(UUID.fromString("01020304-0506-0708-090a-0b0c0d0e0f10")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBinaryOfWrongLength() {
+        TimeOrderedUuid.fromBytes(new byte[15]);
+    }
+}
@@ -0,0 +1,58 @@
+package dk.sample.rest.common.core.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dk.sample.rest.common.core.metrics.LatencyHistograms;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DurationLoggerTest {
+
+    @After
+    public void reset() {
+        LatencyHistograms.reset();
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        try (DurationLogger parent = new DurationLogger("Exposure", "get", "5479,123456", 1000)) {
+            for (int i = 0; i < 10; i++) {
+                try (DurationLogger child = new DurationLogger("Archivist", "find", null, 1000)) {
+                    new DurationLogger("Archivist", "query", null, 1000).stop();
+                }
+            }
+        }
+        assertEquals(1, LatencyHistograms.snapshot().get("Exposure:get").getTotalCount());
+        assertEquals(10, LatencyHistograms.snapshot().get("Archivist:find").getTotalCount());
+        assertEquals(10, LatencyHistograms.snapshot().get("Archivist:query").getTotalCount());
+    }
+
+    @Test
+    public void testStopOutOfOrder() {
+        DurationLogger parent = new DurationLogger("Exposure", "get", null, 1000);
+        DurationLogger child = new DurationLogger("Archivist", "find", null, 1000);
+        parent.stop();
+        child.stop();
+        child.stop();
+        parent.start().stop();
+        assertEquals(2, LatencyHistograms.snapshot().get("Exposure:get").getTotalCount());
+        assertEquals(2, LatencyHistograms.snapshot().get("Archivist:find").getTotalCount());
+    }
+
+    @Test
+    public void testNeverStopped() {
+        List<DurationLogger> running = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            running.add(new DurationLogger("Exposure", "leaked", null, 1000));
+        }
+        DurationLogger logger = new DurationLogger("Exposure", "get", null, 1000);
+        logger.stop();
+        running.get(0).stop();
+        new DurationLogger("Exposure", "get", null, 1000).stop();
+        assertEquals(2, LatencyHistograms.snapshot().get("Exposure:get").getTotalCount());
+        assertEquals(1, LatencyHistograms.snapshot().get("Exposure:leaked").getTotalCount());
+    }
+}
@@ -0,0 +1,74 @@
+package dk.sample.rest.common.core.logging;
+
+import javax.interceptor.InvocationContext;
+
+import dk.sample.rest.common.core.metrics.LatencyHistograms;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LogDurationInterceptorTest {
+
+    @After
+    public void reset() {
+        LatencyHistograms.reset();
+    }
+
+    @Test
+    public void testLogDuration() throws Exception {
+        LogDurationInterceptor interceptor = new LogDurationInterceptor();
+        Service service = new Service();
+        InvocationContext timed = invocation(service, "timed");
+        InvocationContext named = invocation(service, "named");
+        InvocationContext untimed = invocation(service, "untimed");
+
+        assertEquals("proceeded", interceptor.logDuration(timed));
+        assertEquals("proceeded", interceptor.logDuration(timed));
+        assertEquals("proceeded", interceptor.logDuration(named));
+        assertEquals("proceeded", interceptor.logDuration(untimed));
+
+        assertEquals(2, LatencyHistograms.snapshot().get(Service.class.getName() + ":timed").getTotalCount());
+        assertEquals(1, LatencyHistograms.snapshot().get(String.class.getName() + ":lookup").getTotalCount());
+        assertFalse(LatencyHistograms.snapshot().containsKey(Service.class.getName() + ":untimed"));
+    }
+
+    @Test
+    public void testParamsToString() {
+        assertNull(LogDurationInterceptor.paramsToString(null));
+        assertNull(LogDurationInterceptor.paramsToString(new Object[0]));
+        assertEquals("5479,null,42", LogDurationInterceptor.paramsToString(new Object[]{"5479", null, 42}));
+        assertEquals(StringUtils.repeat("ab ", 25) + "... (was 200 chars long, truncated)",
+            LogDurationInterceptor.paramsToString(new Object[]{StringUtils.repeat("ab\r\n", 50)}));
+    }
+
+    private static InvocationContext invocation(Service service, String method) throws Exception {
+        InvocationContext ctx = mock(InvocationContext.class);
+        when(ctx.getTarget()).thenReturn(service);
+        when(ctx.getMethod()).thenReturn(Service.class.getMethod(method, String.class));
+        when(ctx.getParameters()).thenReturn(new Object[]{"5479"});
+        when(ctx.proceed()).thenReturn("proceeded");
+        return ctx;
+    }
+
+    public static class Service {
+        @LogDuration(limit = 1000)
+        public String timed(String regNo) {
+            return regNo;
+        }
+
+        @LogDuration(clazzName = String.class, system = "lookup", limit = 1000)
+        public String named(String regNo) {
+            return regNo;
+        }
+
+        public String untimed(String regNo) {
+            return regNo;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package dk.sample.rest.common.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import dk.sample.rest.common.core.logging.DurationLogger;
+import org.HdrHistogram.Histogram;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramsTest {
+
+    @After
+    public void reset() {
+        LatencyHistograms.reset();
+    }
+
+    @Test
+    public void testRecord() {
+        for (int i = 1; i <= 100; i++) {
+            LatencyHistograms.record("Archivist", "getAccount", TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        LatencyHistograms.record("Archivist", "listAccounts", TimeUnit.HOURS.toNanos(2));
+
+        Map<String, Histogram> histograms = LatencyHistograms.snapshot();
+        assertEquals(2, histograms.size());
+        Histogram histogram = histograms.get("Archivist:getAccount");
+        assertEquals(100, histogram.getTotalCount());
+        assertTrue(histogram.valuesAreEquivalent(50_000, histogram.getValueAtPercentile(50.0)));
+        assertTrue(histogram.valuesAreEquivalent(99_000, histogram.getValueAtPercentile(99.0)));
+        assertTrue(histogram.valuesAreEquivalent(LatencyHistograms.HIGHEST_TRACKABLE_MICROS,
+                histograms.get("Archivist:listAccounts").getMaxValue()));
+    }
+
+    @Test
+    public void testSnapshotAccumulates() {
+        LatencyHistograms.record("Archivist", "getAccount", 1_000);
+        assertEquals(1, LatencyHistograms.snapshot().get("Archivist:getAccount").getTotalCount());
+        LatencyHistograms.record("Archivist", "getAccount", 2_000);
+        assertEquals(2, LatencyHistograms.snapshot().get("Archivist:getAccount").getTotalCount());
+    }
+
+    @Test
+    public void testDurationLoggerRecords() {
+        new DurationLogger("Exposure", "list", null, 1000).stop();
+        assertEquals(1, LatencyHistograms.snapshot().get("Exposure:list").getTotalCount());
+    }
+}
@@ -0,0 +1,66 @@
+package dk.sample.rest.common.core.sequence;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NodeSequenceGeneratorTest {
+
+    @Test
+    public void testLayout() {
+        NodeSequenceGenerator generator = new NodeSequenceGenerator(42, () -> 1500000000000L);
+        long sequence = generator.next();
+        assertEquals(42, NodeSequenceGenerator.node(sequence));
+        assertEquals(1500000000000L, NodeSequenceGenerator.time(sequence));
+        assertTrue(sequence > 0);
+    }
+
+    @Test
+    public void testMonotonicWhenClockStandsStillOrGoesBackwards() {
+        AtomicLong clock = new AtomicLong(1500000000000L);
+        NodeSequenceGenerator generator = new NodeSequenceGenerator(7, clock::get);
+        long previous = generator.next();
+        for (int i = 0; i < 10000; i++) {
+            if (i == 5000) {
+                clock.addAndGet(-1000);
+            }
+            long sequence = generator.next();
+            assertTrue(sequence > previous);
+            assertEquals(7, NodeSequenceGenerator.node(sequence));
+            previous = sequence;
+        }
+        clock.set(1500000010000L);
+        assertEquals(1500000010000L, NodeSequenceGenerator.time(generator.next()));
+    }
+
+    @Test
+    public void testNoCollisionAcrossNodes() {
+        Set<Long> sequences = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 4).parallel().forEach(node -> {
+            NodeSequenceGenerator generator = new NodeSequenceGenerator(node, () -> 1500000000000L);
+            for (int i = 0; i < 10000; i++) {
+                sequences.add(generator.next());
+            }
+        });
+        assertEquals(40000, sequences.size());
+    }
+
+    @Test
+    public void testConcurrentUse() {
+        NodeSequenceGenerator generator = new NodeSequenceGenerator(1);
+        Set<Long> sequences = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 40000).parallel().forEach(i -> sequences.add(generator.next()));
+        assertEquals(40000, sequences.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeOutOfRange() {
+        new NodeSequenceGenerator(NodeSequenceGenerator.MAX_NODE_ID + 1);
+    }
+}
@@ -0,0 +1,67 @@
+package dk.sample.rest.common.persistence.jpa;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractAuditableTest {
+
+    @Test
+    public void testEquals() {
+        Sample a = new Sample("tid-1", "name", 42, new int[]{1, 2});
+        Sample b = new Sample("tid-2", "name", 42, new int[]{1, 2});
+        assertTrue(a.equals(b));
+        assertEquals(a.hashCode(), b.hashCode());
+        assertTrue(EqualsBuilder.reflectionEquals(a, b, "tId", "lastModifiedBy", "lastModifiedTime", "version"));
+
+        assertFalse(a.equals(new Sample("tid-1", "other", 42, new int[]{1, 2})));
+        assertFalse(a.equals(new Sample("tid-1", "name", 43, new int[]{1, 2})));
+        assertFalse(a.equals(new Sample("tid-1", "name", 42, new int[]{2, 1})));
+        assertFalse(a.equals(null));
+        assertFalse(a.equals("name"));
+        assertNotEquals(a.hashCode(), new Sample("tid-1", "other", 42, new int[]{1, 2}).hashCode());
+    }
+
+    @Test
+    public void testExcludedFields() {
+        Trimmed a = new Trimmed("tid-1", "name", 42, null);
+        Trimmed b = new Trimmed("tid-2", "name", 7, new int[]{1});
+        assertTrue(a.equals(b));
+        assertEquals(a.hashCode(), b.hashCode());
+        assertFalse(a.equals(new Sample("tid-1", "name", 42, null)));
+    }
+
+    private static class Sample extends AbstractAuditable {
+        private static final String CONSTANT = "ignored";
+        private String tId;
+        private String name;
+        private int count;
+        private int[] values;
+        private transient String cached;
+
+        Sample(String tId, String name, int count, int[] values) {
+            this.tId = tId;
+            this.name = name;
+            this.count = count;
+            this.values = values;
+            this.cached = tId + CONSTANT;
+        }
+    }
+
+    private static class Trimmed extends Sample {
+        private static final String[] EXCLUDED_FIELDS = new String[]{"tId", "count", "values", "version"};
+
+        Trimmed(String tId, String name, int count, int[] values) {
+            super(tId, name, count, values);
+        }
+
+        @Override
+        protected String[] excludedFields() {
+            return EXCLUDED_FIELDS;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package dk.sample.rest.common.persistence.jpa;
+
+import javax.persistence.TypedQuery;
+
+import dk.sample.rest.common.core.deadline.Deadline;
+import dk.sample.rest.common.core.deadline.DeadlineExceededException;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class QueryTimeoutsTest {
+
+    @After
+    public void reset() {
+        Deadline.set(null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLimit() {
+        TypedQuery<String> query = mock(TypedQuery.class);
+        QueryTimeouts.limit(query);
+        verify(query, never()).setHint(anyString(), any());
+
+        Deadline.set(Deadline.after(200));
+        QueryTimeouts.limit(query);
+        verify(query).setHint(QueryTimeouts.TIMEOUT_HINT, 1000L);
+
+        Deadline.set(Deadline.after(2500));
+        QueryTimeouts.limit(query);
+        verify(query).setHint(QueryTimeouts.TIMEOUT_HINT, 3000L);
+
+        Deadline.set(Deadline.after(-1));
+        try {
+            QueryTimeouts.limit(query);
+            fail("deadline has passed");
+        } catch (DeadlineExceededException e) {
+            // expected
+        }
+    }
+}
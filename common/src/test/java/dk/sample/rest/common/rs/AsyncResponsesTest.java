@@ -0,0 +1,116 @@
+package dk.sample.rest.common.rs;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+
+import dk.sample.rest.common.core.deadline.Deadline;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AsyncResponsesTest {
+    private static final Executor INLINE = Runnable::run;
+
+    @After
+    public void clearDeadline() {
+        Deadline.set(null);
+    }
+
+    @Test
+    public void testResumeWithResponse() {
+        AsyncResponse response = mock(AsyncResponse.class);
+        Response ok = Response.ok().build();
+        AsyncResponses.dispatch(INLINE, response, 10, TimeUnit.SECONDS, () -> ok);
+        verify(response).setTimeout(10, TimeUnit.SECONDS);
+        verify(response).resume(ok);
+    }
+
+    @Test
+    public void testResumeWithException() {
+        AsyncResponse response = mock(AsyncResponse.class);
+        WebApplicationException failure = new WebApplicationException(Response.Status.BAD_REQUEST);
+        AsyncResponses.dispatch(INLINE, response, 10, TimeUnit.SECONDS, () -> {
+            throw failure;
+        });
+        ArgumentCaptor<Throwable> resumed = ArgumentCaptor.forClass(Throwable.class);
+        verify(response).resume(resumed.capture());
+        assertSame(failure, resumed.getValue());
+    }
+
+    @Test
+    public void testRejected() {
+        AsyncResponse response = mock(AsyncResponse.class);
+        AsyncResponses.dispatch(task -> {
+            throw new RejectedExecutionException("full");
+        }, response, 10, TimeUnit.SECONDS, () -> Response.ok().build());
+        assertUnavailable(response);
+    }
+
+    @Test
+    public void testTimedOut() {
+        AsyncResponse response = mock(AsyncResponse.class);
+        AsyncResponses.dispatch(task -> { }, response, 10, TimeUnit.SECONDS, () -> Response.ok().build());
+        ArgumentCaptor<TimeoutHandler> handler = ArgumentCaptor.forClass(TimeoutHandler.class);
+        verify(response).setTimeoutHandler(handler.capture());
+        handler.getValue().handleTimeout(response);
+        assertUnavailable(response);
+    }
+
+    @Test
+    public void testSkipDone() {
+        AsyncResponse response = mock(AsyncResponse.class);
+        when(response.isDone()).thenReturn(true);
+        AsyncResponses.dispatch(INLINE, response, 10, TimeUnit.SECONDS, () -> Response.ok().build());
+        verify(response, never()).resume(any(Object.class));
+    }
+
+    @Test
+    public void testDeadlineShortensTimeout() {
+        AsyncResponse response = mock(AsyncResponse.class);
+        Deadline.set(Deadline.after(60000));
+        AsyncResponses.dispatch(INLINE, response, 1, TimeUnit.SECONDS, () -> Response.ok().build());
+        verify(response).setTimeout(1000, TimeUnit.MILLISECONDS);
+
+        response = mock(AsyncResponse.class);
+        Deadline.set(Deadline.after(500));
+        AsyncResponses.dispatch(INLINE, response, 10, TimeUnit.SECONDS, () -> Response.ok().build());
+        ArgumentCaptor<Long> timeout = ArgumentCaptor.forClass(Long.class);
+        verify(response).setTimeout(timeout.capture(), eq(TimeUnit.MILLISECONDS));
+        assertTrue(timeout.getValue() > 0 && timeout.getValue() <= 500);
+    }
+
+    @Test
+    public void testDeadlineExpired() {
+        AsyncResponse response = mock(AsyncResponse.class);
+        Deadline.set(Deadline.after(-1));
+        Executor executor = mock(Executor.class);
+        AsyncResponses.dispatch(executor, response, 10, TimeUnit.SECONDS, () -> Response.ok().build());
+        verify(response, never()).setTimeout(anyLong(), any(TimeUnit.class));
+        verify(executor, never()).execute(any());
+        assertUnavailable(response);
+    }
+
+    private static void assertUnavailable(AsyncResponse response) {
+        ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        verify(response).resume(resumed.capture());
+        assertEquals(503, resumed.getValue().getStatus());
+        assertEquals("1", resumed.getValue().getHeaderString("Retry-After"));
+    }
+}
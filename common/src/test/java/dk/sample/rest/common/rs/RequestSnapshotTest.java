@@ -0,0 +1,64 @@
+package dk.sample.rest.common.rs;
+
+import java.util.Date;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RequestSnapshotTest {
+    private static final EntityTag TAG = new EntityTag("customers.1.2-5-1000");
+    private static final Date MODIFIED = new Date(1476785730000L);
+
+    @Test
+    public void testNoPreconditions() {
+        Request request = snapshot("GET", null, null, null);
+        assertEquals("GET", request.getMethod());
+        assertNull(request.evaluatePreconditions(MODIFIED, TAG));
+        assertSame(request, RequestSnapshot.of(request, mock(HttpHeaders.class)));
+    }
+
+    @Test
+    public void testIfNoneMatch() {
+        assertEquals(304, snapshot("GET", null, "\"other\", W/\"customers.1.2-5-1000\"", null)
+            .evaluatePreconditions(MODIFIED, TAG).build().getStatus());
+        assertEquals(304, snapshot("GET", null, "*", null).evaluatePreconditions(MODIFIED, TAG).build().getStatus());
+        assertNull(snapshot("GET", null, "\"other\"", "Tue, 18 Oct 2016 10:15:30 GMT").evaluatePreconditions(MODIFIED, TAG));
+        assertEquals(412, snapshot("PUT", null, "\"customers.1.2-5-1000\"", null)
+            .evaluatePreconditions(MODIFIED, TAG).build().getStatus());
+    }
+
+    @Test
+    public void testIfModifiedSince() {
+        assertEquals(304, snapshot("GET", null, null, "Tue, 18 Oct 2016 10:15:30 GMT")
+            .evaluatePreconditions(MODIFIED, TAG).build().getStatus());
+        assertNull(snapshot("GET", null, null, "Tue, 18 Oct 2016 10:15:29 GMT").evaluatePreconditions(MODIFIED, TAG));
+        assertNull(snapshot("GET", null, null, "yesterday").evaluatePreconditions(MODIFIED, TAG));
+    }
+
+    @Test
+    public void testIfMatch() {
+        assertNull(snapshot("PUT", "\"customers.1.2-5-1000\"", null, null).evaluatePreconditions(MODIFIED, TAG));
+        assertEquals(412, snapshot("PUT", "W/\"customers.1.2-5-1000\"", null, null)
+            .evaluatePreconditions(MODIFIED, TAG).build().getStatus());
+        assertEquals(412, snapshot("PUT", "\"*\"", null, null).evaluatePreconditions().build().getStatus());
+    }
+
+    private static Request snapshot(String method, String ifMatch, String ifNoneMatch, String ifModifiedSince) {
+        Request request = mock(Request.class);
+        when(request.getMethod()).thenReturn(method);
+        HttpHeaders headers = mock(HttpHeaders.class);
+        when(headers.getHeaderString(HttpHeaders.IF_MATCH)).thenReturn(ifMatch);
+        when(headers.getHeaderString(HttpHeaders.IF_NONE_MATCH)).thenReturn(ifNoneMatch);
+        when(headers.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE)).thenReturn(ifModifiedSince);
+        return RequestSnapshot.of(request, headers);
+    }
+}
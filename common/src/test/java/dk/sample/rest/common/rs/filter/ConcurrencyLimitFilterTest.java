@@ -0,0 +1,240 @@
+package dk.sample.rest.common.rs.filter;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConcurrencyLimitFilterTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(Arrays.asList("tx-system", "advisor"),
+        clock::get, new ConcurrentHashMap<>());
+    private final ResourceInfo resourceInfo = mock(ResourceInfo.class);
+
+    @Before
+    public void setup() throws Exception {
+        doReturn(Resource.class).when(resourceInfo).getResourceClass();
+        when(resourceInfo.getResourceMethod()).thenReturn(Resource.class.getMethod("list"));
+        Field field = ConcurrencyLimitFilter.class.getDeclaredField("resourceInfo");
+        field.setAccessible(true);
+        field.set(filter, resourceInfo);
+    }
+
+    @Test
+    public void testPrioritizedShedding() {
+        for (int i = 0; i < 15; i++) {
+            ContainerRequestContext advisor = request("advisor", null);
+            filter.filter(advisor);
+            verify(advisor, never()).abortWith(any(Response.class));
+        }
+        ContainerRequestContext shed = request("advisor", null);
+        filter.filter(shed);
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(shed).abortWith(response.capture());
+        assertEquals(503, response.getValue().getStatus());
+        assertEquals("1", response.getValue().getHeaderString("Retry-After"));
+
+        ContainerRequestContext anonymous = request(null, null);
+        filter.filter(anonymous);
+        verify(anonymous).abortWith(any(Response.class));
+
+        for (int i = 0; i < 5; i++) {
+            ContainerRequestContext system = request("tx-system", null);
+            filter.filter(system);
+            verify(system, never()).abortWith(any(Response.class));
+        }
+        ContainerRequestContext system = request("tx-system", null);
+        filter.filter(system);
+        verify(system).abortWith(any(Response.class));
+    }
+
+    @Test
+    public void testWaitingRequestsAreNotLimited() throws Exception {
+        when(resourceInfo.getResourceMethod()).thenReturn(Resource.class.getMethod("poll", String.class, AsyncResponse.class));
+        for (int i = 0; i < 100; i++) {
+            ContainerRequestContext poll = request("advisor", "30s");
+            filter.filter(poll);
+            verify(poll, never()).abortWith(any(Response.class));
+        }
+        when(resourceInfo.getResourceMethod()).thenReturn(Resource.class.getMethod("stream"));
+        for (int i = 0; i < 100; i++) {
+            ContainerRequestContext stream = request("advisor", null);
+            filter.filter(stream);
+            verify(stream, never()).abortWith(any(Response.class));
+        }
+    }
+
+    @Test
+    public void testSuspendedRequestsAreLimited() throws Exception {
+        when(resourceInfo.getResourceMethod()).thenReturn(Resource.class.getMethod("pooled", AsyncResponse.class));
+        assertLimited("1");
+    }
+
+    @Test
+    public void testPollWithoutWaitIsLimited() throws Exception {
+        when(resourceInfo.getResourceMethod()).thenReturn(Resource.class.getMethod("poll", String.class, AsyncResponse.class));
+        assertLimited(null);
+    }
+
+    @Test
+    public void testSuspendedRequestReleasedOnResume() throws Exception {
+        when(resourceInfo.getResourceMethod()).thenReturn(Resource.class.getMethod("pooled", AsyncResponse.class));
+        for (int i = 0; i < 100; i++) {
+            ContainerRequestContext request = request("advisor", null);
+            filter.filter(request);
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(5));
+            filter.filter(request, mock(ContainerResponseContext.class));
+            verify(request, never()).abortWith(any(Response.class));
+        }
+    }
+
+    @Test
+    public void testWaitParameterIsLimited() {
+        for (int i = 0; i < 15; i++) {
+            ContainerRequestContext advisor = request("advisor", "1");
+            when(advisor.getHeaderString("Accept")).thenReturn("text/event-stream");
+            filter.filter(advisor);
+            verify(advisor, never()).abortWith(any(Response.class));
+        }
+        ContainerRequestContext shed = request("advisor", "1");
+        filter.filter(shed);
+        verify(shed).abortWith(any(Response.class));
+    }
+
+    @Test
+    public void testReleaseOnResponse() {
+        for (int i = 0; i < 100; i++) {
+            ContainerRequestContext request = request("advisor", null);
+            filter.filter(request);
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(5));
+            filter.filter(request, mock(ContainerResponseContext.class));
+            verify(request, never()).abortWith(any(Response.class));
+        }
+    }
+
+    @Test
+    public void testLimitAdaptsToRoundTripTimes() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 4, 200);
+        for (int i = 0; i < 200; i++) {
+            roundTrips(limit, 20, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        int grown = limit.getLimit();
+        assertTrue("limit was " + grown, grown > 20);
+
+        for (int i = 0; i < 20; i++) {
+            roundTrips(limit, limit.getLimit(), TimeUnit.MILLISECONDS.toNanos(200));
+        }
+        assertTrue("limit was " + limit.getLimit(), limit.getLimit() < grown / 2);
+        assertTrue(limit.getLimit() >= 4);
+    }
+
+    @Test
+    public void testAbandonedPermitsTimeOut() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 4, 4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limit.tryAcquire(1.0, clock.get()).isPresent());
+        }
+        assertFalse(limit.tryAcquire(1.0, clock.get()).isPresent());
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(AdaptiveConcurrencyLimit.PERMIT_TIMEOUT_SECONDS + 1));
+        assertTrue(limit.tryAcquire(1.0, clock.get()).isPresent());
+        assertEquals(1, limit.inFlight());
+    }
+
+    private void roundTrips(AdaptiveConcurrencyLimit limit, int concurrent, long rtt) {
+        AdaptiveConcurrencyLimit.Permit[] permits = new AdaptiveConcurrencyLimit.Permit[concurrent];
+        for (int i = 0; i < concurrent; i++) {
+            Optional<AdaptiveConcurrencyLimit.Permit> permit = limit.tryAcquire(1.0, clock.get());
+            permits[i] = permit.orElse(null);
+        }
+        clock.addAndGet(rtt);
+        for (AdaptiveConcurrencyLimit.Permit permit : permits) {
+            if (permit != null) {
+                permit.release(clock.get());
+            }
+        }
+    }
+
+    public static class Resource {
+        public String list() {
+            return "listed";
+        }
+
+        public void poll(@QueryParam("wait") String wait, @Suspended AsyncResponse response) {
+            response.resume("polled");
+        }
+
+        public void pooled(@Suspended AsyncResponse response) {
+            response.resume("listed");
+        }
+
+        @Produces("text/event-stream")
+        public void stream() {
+        }
+    }
+
+    private void assertLimited(String wait) {
+        for (int i = 0; i < 15; i++) {
+            ContainerRequestContext advisor = request("advisor", wait);
+            filter.filter(advisor);
+            verify(advisor, never()).abortWith(any(Response.class));
+        }
+        ContainerRequestContext shed = request("advisor", wait);
+        filter.filter(shed);
+        verify(shed).abortWith(any(Response.class));
+    }
+
+    private static ContainerRequestContext request(String role, String wait) {
+        ContainerRequestContext request = mock(ContainerRequestContext.class);
+        SecurityContext security = mock(SecurityContext.class);
+        if (role != null) {
+            when(security.isUserInRole(role)).thenReturn(true);
+        }
+        when(request.getSecurityContext()).thenReturn(security);
+        UriInfo uriInfo = mock(UriInfo.class);
+        MultivaluedHashMap<String, String> query = new MultivaluedHashMap<>();
+        if (wait != null) {
+            query.putSingle("wait", wait);
+        }
+        when(uriInfo.getQueryParameters()).thenReturn(query);
+        when(request.getUriInfo()).thenReturn(uriInfo);
+        Map<String, Object> properties = new HashMap<>();
+        doAnswer(invocation -> properties.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(request).setProperty(anyString(), any());
+        when(request.getProperty(anyString())).then(invocation -> properties.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> properties.remove(invocation.<String>getArgument(0)))
+            .when(request).removeProperty(anyString());
+        return request;
+    }
+}
@@ -0,0 +1,72 @@
+package dk.sample.rest.common.rs.filter;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.Response;
+
+import dk.sample.rest.common.core.deadline.Deadline;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeadlineFilterTest {
+    private final DeadlineFilter filter = new DeadlineFilter();
+
+    @After
+    public void reset() {
+        Deadline.set(null);
+    }
+
+    @Test
+    public void testDeadlineBoundToRequest() {
+        ContainerRequestContext request = request("2000");
+        filter.filter(request);
+        verify(request, never()).abortWith(any(Response.class));
+        assertTrue(Deadline.current().get().remainingMillis() <= 2000);
+
+        filter.filter(request, mock(ContainerResponseContext.class));
+        assertFalse(Deadline.current().isPresent());
+    }
+
+    @Test
+    public void testPreviousDeadlineCleared() {
+        Deadline.set(Deadline.after(100));
+        ContainerRequestContext request = request(null);
+        filter.filter(request);
+        verify(request, never()).abortWith(any(Response.class));
+        assertFalse(Deadline.current().isPresent());
+    }
+
+    @Test
+    public void testPassedDeadline() {
+        assertAborted(request("2016-10-18T10:15:30.250Z"), 504);
+    }
+
+    @Test
+    public void testInvalidDeadline() {
+        assertAborted(request("in a while"), 400);
+    }
+
+    private void assertAborted(ContainerRequestContext request, int status) {
+        filter.filter(request);
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(request).abortWith(response.capture());
+        assertEquals(status, response.getValue().getStatus());
+        assertFalse(Deadline.current().isPresent());
+    }
+
+    private static ContainerRequestContext request(String deadline) {
+        ContainerRequestContext request = mock(ContainerRequestContext.class);
+        when(request.getHeaderString(DeadlineFilter.DEADLINE_HEADER)).thenReturn(deadline);
+        return request;
+    }
+}
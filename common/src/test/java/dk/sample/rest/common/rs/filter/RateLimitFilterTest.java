@@ -0,0 +1,100 @@
+package dk.sample.rest.common.rs.filter;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RateLimitFilterTest {
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final RateLimitFilter filter = new RateLimitFilter(3, 5, clock::get, Caffeine.newBuilder().build());
+
+    @Test
+    public void testLimitPerMinute() {
+        for (int i = 0; i < 3; i++) {
+            ContainerRequestContext request = request("hans");
+            filter.filter(request);
+            verify(request, never()).abortWith(any(Response.class));
+        }
+        ContainerRequestContext limited = request("hans");
+        filter.filter(limited);
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(limited).abortWith(response.capture());
+        assertEquals(429, response.getValue().getStatus());
+        assertEquals("20", response.getValue().getHeaderString("Retry-After"));
+
+        ContainerRequestContext other = request("grethe");
+        filter.filter(other);
+        verify(other, never()).abortWith(any(Response.class));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        ContainerRequestContext refilled = request("hans");
+        filter.filter(refilled);
+        verify(refilled, never()).abortWith(any(Response.class));
+    }
+
+    @Test
+    public void testLimitPerDay() {
+        for (int i = 0; i < 5; i++) {
+            filter.filter(request("hans"));
+            clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        }
+        ContainerRequestContext limited = request("hans");
+        filter.filter(limited);
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(limited).abortWith(response.capture());
+        assertEquals(429, response.getValue().getStatus());
+        assertEquals(String.valueOf(TimeUnit.HOURS.toSeconds(24) / 5 - 5 * 60),
+            response.getValue().getHeaderString("Retry-After"));
+    }
+
+    @Test
+    public void testHeaders() {
+        ContainerRequestContext request = request("hans");
+        filter.filter(request);
+        ContainerResponseContext response = mock(ContainerResponseContext.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle("X-RateLimit-Limit", "-1");
+        when(response.getHeaders()).thenReturn(headers);
+        filter.filter(request, response);
+
+        assertEquals("3", headers.getFirst("X-RateLimit-Limit"));
+        assertEquals("5", headers.getFirst("X-RateLimit-Limit-24h"));
+        assertEquals("2", headers.getFirst("X-RateLimit-Remaining"));
+        assertEquals("20", headers.getFirst("X-RateLimit-Reset"));
+    }
+
+    private static ContainerRequestContext request(String user) {
+        ContainerRequestContext request = mock(ContainerRequestContext.class);
+        SecurityContext security = mock(SecurityContext.class);
+        Principal principal = () -> user;
+        when(security.getUserPrincipal()).thenReturn(principal);
+        when(request.getSecurityContext()).thenReturn(security);
+        Map<String, Object> properties = new HashMap<>();
+        doAnswer(invocation -> properties.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(request).setProperty(anyString(), any());
+        when(request.getProperty(anyString())).then(invocation -> properties.get(invocation.<String>getArgument(0)));
+        return request;
+    }
+}
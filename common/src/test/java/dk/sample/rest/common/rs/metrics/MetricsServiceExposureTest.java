@@ -0,0 +1,65 @@
+package dk.sample.rest.common.rs.metrics;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dk.sample.rest.common.core.metrics.CacheMetrics;
+import dk.sample.rest.common.core.metrics.LatencyHistograms;
+import dk.sample.rest.common.test.rs.UriBuilderFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MetricsServiceExposureTest {
+
+    @After
+    public void reset() {
+        LatencyHistograms.reset();
+    }
+
+    @Test
+    public void testGetMetrics() {
+        Request request = mock(Request.class);
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        LatencyHistograms.record("Archivist", "getAccount", TimeUnit.MILLISECONDS.toNanos(12));
+        Cache<String, String> cache = CacheMetrics.register("test-cache", Caffeine.newBuilder().recordStats().build());
+        cache.get("key", key -> "value");
+        cache.get("key", key -> "value");
+        cache.get("key", key -> "value");
+
+        Response response = new MetricsServiceExposure().getMetrics(ui, request, "application/hal+json", "log-token");
+        assertEquals(200, response.getStatus());
+        assertEquals("no-store, no-transform", response.getHeaderString("Cache-Control"));
+        MetricsRepresentation metrics = (MetricsRepresentation) response.getEntity();
+        assertEquals("http://mock/metrics", metrics.getSelf().getHref());
+        assertEquals("microseconds", metrics.getUnit());
+        assertEquals(1, metrics.getLatencies().size());
+        LatencyRepresentation latency = metrics.getLatencies().iterator().next();
+        assertEquals("Archivist:getAccount", latency.getName());
+        assertEquals(1, latency.getCount());
+        assertEquals(12_000, latency.getP99(), 12);
+        CacheRepresentation cacheStats = metrics.getCaches().stream()
+            .filter(c -> "test-cache".equals(c.getName()))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+        assertEquals(1, cacheStats.getSize());
+        assertEquals(2, cacheStats.getHits());
+        assertEquals(1, cacheStats.getMisses());
+    }
+
+    @Test
+    public void testGetMetricsUnsupportedContentType() {
+        Response response = new MetricsServiceExposure().getMetrics(mock(UriInfo.class), mock(Request.class), "application/xml", null);
+        assertEquals(415, response.getStatus());
+    }
+}
@@ -0,0 +1,54 @@
+package dk.sample.rest.common.rs.paging;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CursorTest {
+
+    @Test
+    public void testRoundTrip() {
+        Cursor cursor = Cursor.after("2017-01-01T10:00:00.123456789Z", "some.id|with-odd chars");
+        Optional<Cursor> decoded = Cursor.decode(cursor.encode());
+        assertTrue(decoded.isPresent());
+        assertTrue(decoded.get().isNext());
+        assertEquals(Arrays.asList("2017-01-01T10:00:00.123456789Z", "some.id|with-odd chars"), decoded.get().getKeys());
+
+        decoded = Cursor.decode(Cursor.before("5479", "123456").encode());
+        assertTrue(decoded.isPresent());
+        assertFalse(decoded.get().isNext());
+        assertEquals("123456", decoded.get().getKey(1));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertFalse(Cursor.decode(null).isPresent());
+        assertFalse(Cursor.decode(" ").isPresent());
+        assertFalse(Cursor.decode("x.YWJj").isPresent());
+        assertFalse(Cursor.decode("n").isPresent());
+        assertFalse(Cursor.decode("n.!!!").isPresent());
+    }
+
+    @Test
+    public void testPageOf() {
+        Page<Integer> first = Page.of(Arrays.asList(1, 2, 3), 2, Optional.empty());
+        assertEquals(Arrays.asList(1, 2), first.getItems());
+        assertFalse(first.hasPrevious());
+        assertTrue(first.hasNext());
+
+        Page<Integer> last = Page.of(Collections.singletonList(3), 2, Optional.of(Cursor.after("2")));
+        assertTrue(last.hasPrevious());
+        assertFalse(last.hasNext());
+
+        Page<Integer> back = Page.of(Arrays.asList(2, 1), 2, Optional.of(Cursor.before("3")));
+        assertEquals(Arrays.asList(1, 2), back.getItems());
+        assertFalse(back.hasPrevious());
+        assertTrue(back.hasNext());
+    }
+}
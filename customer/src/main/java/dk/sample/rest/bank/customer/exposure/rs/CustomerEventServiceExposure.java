@@ -1,14 +1,19 @@
 package dk.sample.rest.bank.customer.exposure.rs;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.annotation.Resource;
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.PermitAll;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.validation.constraints.Pattern;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
@@ -16,6 +21,9 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
@@ -26,8 +34,10 @@ import dk.sample.rest.bank.customer.exposure.rs.model.EventRepresentation;
 import dk.sample.rest.bank.customer.exposure.rs.model.EventsRepresentation;
 import dk.sample.rest.bank.customer.model.Event;
 import dk.sample.rest.bank.customer.persistence.CustomerArchivist;
+import dk.sample.rest.common.core.events.EventBroadcaster;
 import dk.sample.rest.common.core.logging.LogDuration;
 import dk.sample.rest.common.rs.EntityResponseBuilder;
+import dk.sample.rest.common.rs.UriInfoSnapshot;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.Authorization;
@@ -42,6 +52,9 @@ import io.swagger.annotations.Authorization;
 @Api(value = "/customer-events",
      tags = {"events"})
 public class CustomerEventServiceExposure {
+    private static final int DEFAULT_FEED_LIMIT = 100;
+    private static final int FEED_TAIL_MAXAGE = 5;
+    private static final long FEED_WAIT_MAX_SECONDS = 60;
     private final Map<String, EventsProducerMethod> eventsProducers = new HashMap<>();
     private final Map<String, EventProducerMethod> eventProducers = new HashMap<>();
     private final Map<String, EventsCategoryProducerMethod> eventCategoryProducers = new HashMap<>();
@@ -49,6 +62,9 @@ public class CustomerEventServiceExposure {
     @EJB
     private CustomerArchivist archivist;
 
+    @Resource
+    private ManagedExecutorService executor;
+
     public CustomerEventServiceExposure() {
         eventsProducers.put("application/hal+json", this::listAllSG1V1);
         eventsProducers.put("application/hal+json;concept=events;v=1", this::listAllSG1V1);
@@ -67,7 +83,10 @@ public class CustomerEventServiceExposure {
             value = "obtain all events emitted by the customer-event service", response = EventsRepresentation.class,
             notes = " the events are signalled by this resource as this this is the authoritative resource for all events that " +
                     "subscribers to the customers service should be able to listen for and react to. In other words this is the " +
-                    "authoritative feed for the customers service",
+                    "authoritative feed for the customers service. Given since, the sequence number of the latest event seen, only " +
+                    "the events following it are returned in sequence order, at most limit of them, along with a next link to poll " +
+                    "for the events following these. Given wait as well, e.g. 30s, the request waits for an event to be committed " +
+                    "if none follows since yet, and an empty page is returned if none is committed within the wait",
             authorizations = {
                     @Authorization(value = "oauth2", scopes = {}),
                     @Authorization(value = "oauth2-cc", scopes = {}),
@@ -79,12 +98,16 @@ public class CustomerEventServiceExposure {
             produces = "application/hal+json,  application/hal+json;concept=events;v=1",
             nickname = "listAllCustomerEvents"
         )
-    public Response listAll(@Context UriInfo uriInfo, @Context Request request,
-                            @HeaderParam("Accept") String accept,
-                            @HeaderParam("X-Log-Token") String xLogToken,
-                            @QueryParam("interval") String interval) {
-        return eventsProducers.getOrDefault(accept, this::handleUnsupportedContentType)
-                .getResponse(uriInfo, request, xLogToken, interval);
+    public void listAll(@Context UriInfo uriInfo, @Context Request request,
+                        @HeaderParam("Accept") String accept,
+                        @HeaderParam("X-Log-Token") String xLogToken,
+                        @QueryParam("interval") String interval,
+                        @QueryParam("since") String since,
+                        @QueryParam("limit") String limit,
+                        @QueryParam("wait") String wait,
+                        @Suspended AsyncResponse response) {
+        eventsProducers.getOrDefault(accept, this::resumeUnsupportedContentType)
+                .respond(uriInfo, request, xLogToken, interval, since, limit, wait, response);
     }
 
 
@@ -142,14 +165,23 @@ public class CustomerEventServiceExposure {
     }
 
     @LogDuration(limit = 50)
-    public Response listAllSG1V1(UriInfo uriInfo, Request request, String xLogToken, String interval) {
+    public void listAllSG1V1(UriInfo uriInfo, Request request, String xLogToken, String interval, String since, String limit,
+                             String wait, AsyncResponse response) {
+        if (wait != null) {
+            awaitSinceSG1V1(uriInfo, xLogToken, feedSince(since), feedLimit(limit), feedWait(wait), response);
+            return;
+        }
+        if (since != null || limit != null) {
+            response.resume(listSinceSG1V1(uriInfo, request, xLogToken, feedSince(since), feedLimit(limit)));
+            return;
+        }
         Optional<Interval> withIn = Interval.getInterval(interval);
         List<Event> events = archivist.findEvents(withIn);
-        return new EntityResponseBuilder<>(events, txs -> new EventsRepresentation(events, uriInfo), xLogToken)
+        response.resume(new EntityResponseBuilder<>(events, txs -> new EventsRepresentation(events, uriInfo), xLogToken)
                 .name("events")
                 .version("1")
                 .maxAge(60)
-                .build(request);
+                .build(request));
     }
 
     @LogDuration(limit = 50)
@@ -174,7 +206,8 @@ public class CustomerEventServiceExposure {
     }
 
     interface EventsProducerMethod {
-        Response getResponse(UriInfo uriInfo, Request request, String xLogToken, String interval);
+        void respond(UriInfo uriInfo, Request request, String xLogToken, String interval, String since, String limit, String wait,
+                     AsyncResponse response);
     }
 
     interface EventProducerMethod {
@@ -185,9 +218,113 @@ public class CustomerEventServiceExposure {
         Response getResponse(UriInfo uriInfo, Request request, String xLogToken, String interval, String category);
     }
 
+    /**
+     * The events following the given sequence number, the events of a full page never change while the last page is
+     * expected to grow and is thus only cached for a few seconds.
+     */
+    private Response listSinceSG1V1(UriInfo uriInfo, Request request, String xLogToken, long since, int limit) {
+        List<Event> events = archivist.findEventsSince(since, limit);
+        return new EntityResponseBuilder<>(events, evs -> new EventsRepresentation(evs, since, limit, uriInfo), xLogToken)
+                .name("events")
+                .version("1")
+                .maxAge(events.size() < limit ? FEED_TAIL_MAXAGE : 60)
+                .build(request);
+    }
+
+    /**
+     * Long polling for the events following the given sequence number. If there are none yet the response is suspended,
+     * holding no thread, until an event is committed by this service instance or the wait is over, in which case the
+     * page is empty. The waiter is registered before the events are read thus an event committed in between is not missed.
+     */
+    private void awaitSinceSG1V1(UriInfo uriInfo, String xLogToken, long since, int limit, long wait, AsyncResponse response) {
+        UriInfo snapshot = UriInfoSnapshot.of(uriInfo);
+        AtomicReference<EventBroadcaster.Waiter<Event>> waiting = new AtomicReference<>();
+        response.setTimeoutHandler(timedOut -> {
+            Optional.ofNullable(waiting.get()).ifPresent(EventBroadcaster.Waiter::cancel);
+            timedOut.resume(feedResponse(snapshot, xLogToken, Collections.emptyList(), since, limit));
+        });
+        response.setTimeout(wait, TimeUnit.SECONDS);
+
+        CustomerArchivist feed = archivist;
+        Optional<EventBroadcaster.Waiter<Event>> waiter = archivist.awaitEvent(event -> executor.execute(() -> {
+            if (!response.isDone()) {
+                response.resume(feedResponse(snapshot, xLogToken, feed.findEventsSince(since, limit), since, limit));
+            }
+        }));
+        waiter.ifPresent(waiting::set);
+        List<Event> found = archivist.findEventsSince(since, limit);
+        if (!found.isEmpty() || !waiter.isPresent()) {
+            waiter.ifPresent(EventBroadcaster.Waiter::cancel);
+            response.resume(feedResponse(snapshot, xLogToken, found, since, limit));
+        }
+    }
+
+    /**
+     * The response for a page of events found after waiting, the page is new to the client thus the preconditions of the
+     * request are not evaluated.
+     */
+    private static Response feedResponse(UriInfo uriInfo, String xLogToken, List<Event> events, long since, int limit) {
+        return new EntityResponseBuilder<>(events, evs -> new EventsRepresentation(evs, since, limit, uriInfo), xLogToken)
+                .name("events")
+                .version("1")
+                .maxAge(events.size() < limit ? FEED_TAIL_MAXAGE : 60)
+                .build();
+    }
+
+    private static long feedSince(String since) {
+        if (since == null || "".equals(since.trim())) {
+            return 0;
+        }
+        try {
+            long sequence = Long.parseLong(since.trim());
+            if (sequence >= 0) {
+                return sequence;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+
+    private static int feedLimit(String limit) {
+        if (limit == null || "".equals(limit.trim())) {
+            return DEFAULT_FEED_LIMIT;
+        }
+        try {
+            int size = Integer.parseInt(limit.trim());
+            if (size > 0) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+
+    /**
+     * The seconds to wait given as e.g. 30s or 30, waits longer than the maximum are shortened to the maximum.
+     */
+    private static long feedWait(String wait) {
+        String seconds = wait.trim().endsWith("s") ? wait.trim().substring(0, wait.trim().length() - 1) : wait.trim();
+        try {
+            long duration = Long.parseLong(seconds);
+            if (duration > 0) {
+                return Math.min(duration, FEED_WAIT_MAX_SECONDS);
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+
     Response handleUnsupportedContentType(UriInfo uriInfo, Request request, String... params) {
         return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build();
     }
 
+    void resumeUnsupportedContentType(UriInfo uriInfo, Request request, String xLogToken, String interval, String since, String limit,
+                                      String wait, AsyncResponse response) {
+        response.resume(handleUnsupportedContentType(uriInfo, request));
+    }
+
 
 }
@@ -0,0 +1,23 @@
+package dk.sample.rest.bank.customer.exposure.rs;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+
+import dk.sample.rest.common.core.concurrent.ListExecutor;
+
+/**
+ * The threads listing customers, kept apart from the threads of the container serving the single resources. There are
+ * fewer threads than connections to the database, thus the lists never take all of them.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CustomerListExecutor extends ListExecutor {
+    static final int THREADS = 4;
+    static final int QUEUE_SIZE = 100;
+    static final int TIMEOUT_SECONDS = 10;
+
+    public CustomerListExecutor() {
+        super("customer-lists", THREADS, QUEUE_SIZE);
+    }
+}
@@ -3,10 +3,10 @@ package dk.sample.rest.bank.customer.exposure.rs;
 import java.net.URI;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.PermitAll;
@@ -22,9 +22,13 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
@@ -34,10 +38,18 @@ import dk.sample.rest.bank.customer.exposure.rs.model.CustomerRepresentation;
 import dk.sample.rest.bank.customer.exposure.rs.model.CustomerUpdateRepresentation;
 import dk.sample.rest.bank.customer.exposure.rs.model.CustomersRepresentation;
 import dk.sample.rest.bank.customer.model.Customer;
+import dk.sample.rest.bank.customer.model.Event;
+import dk.sample.rest.bank.customer.model.OutboxEvent;
 import dk.sample.rest.bank.customer.persistence.CustomerArchivist;
 import dk.sample.rest.common.core.logging.LogDuration;
+import dk.sample.rest.common.persistence.jpa.AggregateVersion;
+import dk.sample.rest.common.rs.AsyncResponses;
 import dk.sample.rest.common.rs.EntityResponseBuilder;
+import dk.sample.rest.common.rs.RequestSnapshot;
+import dk.sample.rest.common.rs.UriInfoSnapshot;
 import dk.sample.rest.common.rs.error.ErrorRepresentation;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -59,6 +71,7 @@ import org.slf4j.LoggerFactory;
 @Api(value = "/customers", tags = {"customers"})
 public class CustomerServiceExposure {
     private static final Logger LOGGER = LoggerFactory.getLogger(CustomerServiceExposure.class);
+    private static final int DEFAULT_PAGESIZE = 50;
 
     private final Map<String, CustomersProducerMethod> customersProducers = new HashMap<>();
     private final Map<String, CustomerProducerMethod> customerProducers = new HashMap<>();
@@ -66,6 +79,9 @@ public class CustomerServiceExposure {
     @EJB
     private CustomerArchivist archivist;
 
+    @EJB
+    private CustomerListExecutor lists;
+
 
     public CustomerServiceExposure() {
         customersProducers.put("application/hal+json", this::listServiceGeneration1Version1);
@@ -95,11 +111,27 @@ public class CustomerServiceExposure {
             "Supported projections and versions are: " +
             "Customers in version 1 " +
             "The Accept header for the default version is application/hal+json;concept=customers;v=1.0.0.... " +
-            "The format for the default version is {....}", nickname = "listCustomers")
-    public Response list(@Context UriInfo uriInfo, @Context Request request,
-                         @HeaderParam("Accept") String accept,
-                         @HeaderParam("X-Log-Token") String xLogToken) {
-        return customersProducers.getOrDefault(accept, this::handleUnsupportedContentType).getResponse(uriInfo, request, xLogToken);
+            "The format for the default version is {....} " +
+            "The customers are listed page by page ordered by customer number, the size of a page is given by size " +
+            "(default 50, at most 500) and the following pages are found through the next and prev links", nickname = "listCustomers")
+    public void list(@Context UriInfo uriInfo, @Context Request request, @Context HttpHeaders headers,
+                     @HeaderParam("Accept") String accept,
+                     @HeaderParam("X-Log-Token") String xLogToken,
+                     @QueryParam("cursor") String cursor,
+                     @QueryParam("size") String size,
+                     @Suspended AsyncResponse response) {
+        CustomersProducerMethod producer = customersProducers.get(accept);
+        if (producer == null) {
+            response.resume(handleUnsupportedContentType(uriInfo, request));
+            return;
+        }
+        // the parameters are validated while the request is handled, a bad request is not queued for a pooled thread
+        Optional<Cursor> pageCursor = pageCursor(cursor);
+        int pageSize = pageSize(size);
+        UriInfo uriSnapshot = UriInfoSnapshot.of(uriInfo);
+        Request requestSnapshot = RequestSnapshot.of(request, headers);
+        AsyncResponses.dispatch(lists.executor(), response, CustomerListExecutor.TIMEOUT_SECONDS, TimeUnit.SECONDS,
+            () -> producer.getResponse(uriSnapshot, requestSnapshot, xLogToken, pageCursor, pageSize));
     }
 
     @GET
@@ -177,6 +209,9 @@ public class CustomerServiceExposure {
             c = new Customer(customer.getFirstName(), customer.getMiddleName(), customer.getSirname());
         }
         archivist.save(c);
+        // the event is dispatched from the outbox to the feed, waking up the consumers waiting for customer events
+        archivist.save(new OutboxEvent(URI.create(uriInfo.getPath()), Event.getCategory("customer", cust.isPresent() ? "updated" : "created"),
+            "customer " + c.getSid()));
 
         CacheControl cc = new CacheControl();
         int maxAge = 30;
@@ -195,9 +230,17 @@ public class CustomerServiceExposure {
             .build();
     }
 
-    Response listServiceGeneration1Version1(UriInfo uriInfo, Request request, String xLogToken) {
-        List<Customer> customers = archivist.listCustomers();
-        return new EntityResponseBuilder<>(customers, list -> new CustomersRepresentation(list, uriInfo), xLogToken)
+    @LogDuration(limit = 50)
+    Response listServiceGeneration1Version1(UriInfo uriInfo, Request request, String xLogToken, Optional<Cursor> pageCursor,
+                                            int pageSize) {
+        AggregateVersion version = archivist.getCustomersVersion();
+        Optional<Response> notModified = EntityResponseBuilder.evaluatePreconditions(request, "customers", "1", version);
+        if (notModified.isPresent()) {
+            return notModified.get();
+        }
+        Page<Customer> customers = archivist.listCustomers(pageCursor, pageSize);
+        return new EntityResponseBuilder<>(customers, page -> new CustomersRepresentation(page, pageSize, uriInfo), xLogToken)
+            .versioned(version)
             .name("customers")
             .version("1")
             .maxAge(10)
@@ -206,6 +249,11 @@ public class CustomerServiceExposure {
 
     @LogDuration(limit = 50)
     Response getServiceGeneration1Version1(UriInfo uriInfo, Request request, String xLogToken, String customerNo) {
+        Optional<Response> notModified = archivist.findCustomerVersion(customerNo)
+            .flatMap(version -> EntityResponseBuilder.evaluatePreconditions(request, "customer", "1", version));
+        if (notModified.isPresent()) {
+            return notModified.get();
+        }
         Customer customer = archivist.getCustomer(customerNo);
         LOGGER.info("Usage - application/hal+json;concept=customer;v=1");
         return new EntityResponseBuilder<>(customer, cust -> new CustomerRepresentation(cust, uriInfo), xLogToken)
@@ -217,6 +265,11 @@ public class CustomerServiceExposure {
 
     @LogDuration(limit = 50)
     Response getServiceGeneration1Version2(UriInfo uriInfo, Request request, String xLogToken, String customerNo) {
+        Optional<Response> notModified = archivist.findCustomerVersion(customerNo)
+            .flatMap(version -> EntityResponseBuilder.evaluatePreconditions(request, "customer", "2", version));
+        if (notModified.isPresent()) {
+            return notModified.get();
+        }
         Customer customer = archivist.getCustomer(customerNo);
         LOGGER.info("Usage - application/hal+json;concept=customer;v=2 - customer = " + customer);
         return new EntityResponseBuilder<>(customer, cust -> new CustomerRepresentation(cust, uriInfo), xLogToken)
@@ -226,12 +279,44 @@ public class CustomerServiceExposure {
             .build(request);
     }
 
+    /**
+     * Decodes the optional cursor holding the customer number - a cursor which cannot be decoded is a bad request.
+     */
+    private static Optional<Cursor> pageCursor(String cursor) {
+        if (cursor == null || "".equals(cursor.trim())) {
+            return Optional.empty();
+        }
+        Optional<Cursor> c = Cursor.decode(cursor);
+        if (!c.isPresent() || c.get().getKeys().size() != 1) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return c;
+    }
+
+    /**
+     * The requested page size, the archivist bounds the size of the page regardless of what is requested.
+     */
+    private static int pageSize(String size) {
+        if (size == null || "".equals(size.trim())) {
+            return DEFAULT_PAGESIZE;
+        }
+        try {
+            int pageSize = Integer.parseInt(size.trim());
+            if (pageSize > 0) {
+                return pageSize;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+
     Response handleUnsupportedContentType(UriInfo uriInfo, Request request, String... params) {
         return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build();
     }
 
     interface CustomersProducerMethod {
-        Response getResponse(UriInfo uriInfo, Request request, String xLogToken);
+        Response getResponse(UriInfo uriInfo, Request request, String xLogToken, Optional<Cursor> cursor, int size);
     }
 
     interface CustomerProducerMethod {
@@ -3,7 +3,6 @@ package dk.sample.rest.bank.customer.exposure.rs.model;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.core.UriInfo;
@@ -14,6 +13,8 @@ import dk.nykredit.jackson.dataformat.hal.annotation.Link;
 import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
 import dk.sample.rest.bank.customer.exposure.rs.CustomerServiceExposure;
 import dk.sample.rest.bank.customer.model.Customer;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 
@@ -28,16 +29,42 @@ public class CustomersRepresentation {
     @Link
     private HALLink self;
 
+    @Link
+    private HALLink next;
+
+    @Link
+    private HALLink prev;
+
     @EmbeddedResource("customers")
     private Collection<CustomerRepresentation> customers;
 
-    public CustomersRepresentation(List<Customer> customers, UriInfo uriInfo) {
+    /**
+     * Represents a page of the keyset ordered listing of customers including links to the neighbouring pages.
+     */
+    public CustomersRepresentation(Page<Customer> page, int size, UriInfo uriInfo) {
         this.customers = new ArrayList<>();
-        this.customers.addAll(customers.stream().map(customer -> new CustomerRepresentation(customer, uriInfo)).collect(Collectors.toList()));
+        this.customers.addAll(page.getItems().stream()
+            .map(customer -> new CustomerRepresentation(customer, uriInfo))
+            .collect(Collectors.toList()));
         this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
             .path(CustomerServiceExposure.class)
             .build())
             .build();
+        if (page.hasNext()) {
+            page.last().ifPresent(customer -> this.next = createPageLink(Cursor.after(customer.getSid()), size, uriInfo));
+        }
+        if (page.hasPrevious()) {
+            page.first().ifPresent(customer -> this.prev = createPageLink(Cursor.before(customer.getSid()), size, uriInfo));
+        }
+    }
+
+    private static HALLink createPageLink(Cursor cursor, int size, UriInfo uriInfo) {
+        return new HALLink.Builder(uriInfo.getBaseUriBuilder()
+            .path(CustomerServiceExposure.class)
+            .queryParam("cursor", cursor.encode())
+            .queryParam("size", size)
+            .build())
+            .build();
     }
 
     @ApiModelProperty(
@@ -55,4 +82,20 @@ public class CustomersRepresentation {
     public Collection<CustomerRepresentation> getCustomers() {
         return Collections.unmodifiableCollection(customers);
     }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "next",
+            notes = "link to the next page of customers, present when the listing continues.")
+    public HALLink getNext() {
+        return next;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "prev",
+            notes = "link to the previous page of customers, present when the listing has earlier customers.")
+    public HALLink getPrev() {
+        return prev;
+    }
 }
@@ -1,12 +1,12 @@
 package dk.sample.rest.bank.customer.model;
 
-import java.util.UUID;
-
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
+import dk.sample.rest.common.core.id.TimeOrderedUuid;
 import dk.sample.rest.common.persistence.jpa.AbstractAuditable;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -15,7 +15,7 @@ import org.apache.commons.lang3.builder.ToStringStyle;
  * Very basic modelling of customer concept to show the basic use of JPA for persistence handling.
  */
 @Entity
-@Table(name = "CUSTOMER")
+@Table(name = "CUSTOMER", uniqueConstraints = @UniqueConstraint(columnNames = { "SID" }))
 public class Customer extends AbstractAuditable {
     /**
      * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
@@ -46,7 +46,7 @@ public class Customer extends AbstractAuditable {
         this.firstName = firstName;
         this.middleName = middleName;
         this.sirname = sirname;
-        tId = UUID.randomUUID().toString();
+        tId = TimeOrderedUuid.nextString();
         sid = String.valueOf(tId.hashCode() > 0 ? tId.hashCode() : tId.hashCode() * -1);
     }
 
@@ -54,7 +54,7 @@ public class Customer extends AbstractAuditable {
         this.firstName = firstName;
         this.middleName = middleName;
         this.sirname = sirname;
-        tId = UUID.randomUUID().toString();
+        tId = TimeOrderedUuid.nextString();
         this.sid = sid;
     }
 
@@ -4,29 +4,27 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.util.UUID;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.SequenceGenerator;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 import javax.persistence.UniqueConstraint;
 
-import dk.nykredit.time.CurrentTime;
+import dk.sample.rest.common.core.id.TimeOrderedUuid;
 import dk.sample.rest.common.persistence.jpa.AbstractAuditable;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 /**
- * Very basic modelling of an event concept to show the relation to customer handled by JPA.
+ * Very basic modelling of an event concept to show the relation to customer handled by JPA. Events are only created by
+ * dispatching an {@link OutboxEvent}, which gives every event its sequence number in the event feed.
  */
 @Entity
-@SequenceGenerator(name = "sequencer", initialValue = 1, allocationSize = 100)
-@Table(name = "CUSTOMER_EVENT", uniqueConstraints = @UniqueConstraint(columnNames = {"SID", "SEQ", "TIME"}))
+@Table(name = "CUSTOMER_EVENT", uniqueConstraints = @UniqueConstraint(columnNames = {"SID", "SEQ", "TIME"}),
+        indexes = @Index(name = "CUSTOMER_EVENT_SEQ_IDX", columnList = "SEQ", unique = true))
 public class Event extends AbstractAuditable {
 
     /**
@@ -44,10 +42,9 @@ public class Event extends AbstractAuditable {
     private String id;
 
     /**
-     * using a database generated sequence is not cloud capable
+     * the position of the event in the event feed, assigned densely when the event is dispatched from the outbox
      */
     @Column(name = "SEQ", nullable = false, columnDefinition = "BIGINT")
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequencer")
     private Long sequence;
 
     @Column(name = "TIME", nullable = false)
@@ -70,51 +67,19 @@ public class Event extends AbstractAuditable {
     }
 
     /**
-     * @param origin is a url pointing to the origin of the event
+     * An event dispatched from the outbox, which is given the next sequence number of the event feed.
+     *
+     * @param origin the path of the origin of the event
      */
-    public Event(URI origin) {
-        this(origin, CurrentTime.now());
-    }
-
-    /**
-     * @param origin is a url pointing to the origin of the event
-     */
-    public Event(URI origin, Instant time) {
-        this(origin, "default", time);
-    }
-
-    /**
-     * @param origin is a url pointing to the origin of the event
-     */
-    public Event(URI origin, String category, Instant time) {
-        this(UUID.randomUUID().toString(), origin, time, "", category);
-    }
-
-    /**
-     * @param origin is a url pointing to the origin of the event
-     */
-    public Event(URI origin, String category, String info) {
-        this(UUID.randomUUID().toString(), origin, CurrentTime.now(), info, category);
-    }
-
-    /**
-     * @param sid    a controlled human readable and url capable identifier
-     * @param origin is a url pointing to the origin of the event
-     */
-    public Event(String sid, URI origin, Instant time, String information, String category) {
+    Event(String sid, String origin, Instant time, String information, String category, long sequence) {
         this.time = new Timestamp(time.toEpochMilli());
         this.transientTime = time;
         this.id = sid;
-        this.origin = origin.getPath();
+        this.origin = origin;
         this.information = information;
         this.category = category;
-        tId = UUID.randomUUID().toString();
-        // The semantic key might as well be generated as a hash value of the event values
-        // for simplicity it is just a unique id here. The reason for having a technical
-        // id here is the ability to merge og split events according to needs going forward.
-        if (noSequence()) {
-            sequence = time.toEpochMilli() + time.getNano();
-        }
+        this.sequence = sequence;
+        tId = TimeOrderedUuid.nextString();
     }
 
     public String getId() {
@@ -167,8 +132,4 @@ public class Event extends AbstractAuditable {
         return scope + "-" + name;
     }
 
-    private boolean noSequence() {
-        return null == sequence;
-    }
-
 }
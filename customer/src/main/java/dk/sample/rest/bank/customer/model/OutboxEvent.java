@@ -0,0 +1,100 @@
+package dk.sample.rest.bank.customer.model;
+
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import dk.nykredit.time.CurrentTime;
+import dk.sample.rest.common.core.id.TimeOrderedUuid;
+import dk.sample.rest.common.persistence.jpa.AbstractAuditable;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * An event waiting in the outbox to be dispatched to the event feed. The event is saved in the same transaction as the
+ * change it signals, thus the event exists if and only if the change does, and it is moved to the feed, where it is
+ * given its sequence number, by a transaction of its own later on.
+ */
+@Entity
+@Table(name = "CUSTOMER_EVENT_OUTBOX", indexes = @Index(name = "CUSTOMER_EVENT_OUTBOX_TIME_IDX", columnList = "TIME"))
+public class OutboxEvent extends AbstractAuditable {
+
+    /**
+     * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
+     * exposed out side the service since it is a key very internal to this service.
+     */
+    @Id
+    @Column(name = "TID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
+    private String tId;
+
+    /**
+     * Semantic key of the event once dispatched
+     */
+    @Column(name = "SID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
+    private String id;
+
+    @Column(name = "TIME", nullable = false)
+    private Timestamp time;
+
+    @Column(name = "CATEGORY", length = 36, nullable = false)
+    private String category;
+
+    @Column(name = "INFO", length = 200, nullable = false)
+    private String information;
+
+    @Column(name = "ORIGIN", length = 300, nullable = false)
+    private String origin;
+
+    protected OutboxEvent() {
+        // Required by JPA
+    }
+
+    /**
+     * @param origin is a url pointing to the origin of the event
+     */
+    public OutboxEvent(URI origin, String category, String information) {
+        this.tId = TimeOrderedUuid.nextString();
+        this.id = TimeOrderedUuid.nextString();
+        this.time = new Timestamp(CurrentTime.now().toEpochMilli());
+        this.origin = origin.getPath();
+        this.category = category;
+        this.information = information;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Instant getTime() {
+        return Instant.ofEpochMilli(time.getTime());
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * The event to save to the event feed.
+     *
+     * @param sequence the sequence number of the event in the feed
+     */
+    public Event toEvent(long sequence) {
+        return new Event(id, origin, getTime(), information, category, sequence);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("id", id)
+                .append("time", time)
+                .append("origin", origin)
+                .append("information", information)
+                .toString();
+    }
+}
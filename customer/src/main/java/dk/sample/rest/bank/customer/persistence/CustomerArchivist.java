@@ -3,35 +3,83 @@ package dk.sample.rest.bank.customer.persistence;
 import java.sql.Timestamp;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import javax.annotation.Resource;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
-import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import dk.nykredit.api.capabilities.Interval;
 import dk.sample.rest.bank.customer.model.Customer;
 import dk.sample.rest.bank.customer.model.Event;
+import dk.sample.rest.bank.customer.model.OutboxEvent;
+import dk.sample.rest.common.core.deadline.TimeBudget;
+import dk.sample.rest.common.core.events.EventBroadcaster;
 import dk.sample.rest.common.core.logging.LogDuration;
+import dk.sample.rest.common.persistence.jpa.AggregateVersion;
+import dk.sample.rest.common.persistence.jpa.EntityVersion;
+import dk.sample.rest.common.persistence.jpa.QueryTimeouts;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 
 /**
  * Handles archiving (persistence) tasks for the customer domain model.
  */
 @Stateless
 @TransactionAttribute(TransactionAttributeType.REQUIRED)
+@TimeBudget(millis = 2000)
 public class CustomerArchivist {
+    private static final int CUSTOMER_MAXSIZE = 500;
+    private static final int EVENT_MAXSIZE = 500;
+    private static final int EVENT_WAITERS_MAX = 1000;
+    // customer events are only waited for, they are not streamed to subscribers
+    private static final EventBroadcaster<Event> EVENT_BROADCASTER = new EventBroadcaster<>(0, 1, EVENT_WAITERS_MAX);
 
     @PersistenceContext(unitName = "customerPersistenceUnit")
     private EntityManager em;
 
+    @Resource
+    private TransactionSynchronizationRegistry transactions;
+
+    /**
+     * getting a page of customers in keyset order, i.e. ordered by customer number. The page continues from the
+     * position given by the cursor, thus only a single page of customers is ever read from the database.
+     *
+     * @param cursor the position to continue from holding the customer number, empty for the first page
+     * @param size   the maximum number of customers in the page
+     */
+    @TimeBudget(millis = 8000)
     @LogDuration(limit = 50)
-    public List<Customer> listCustomers() {
-        TypedQuery<Customer> q = em.createQuery("select c from Customer c", Customer.class);
-        return q.getResultList();
+    public Page<Customer> listCustomers(Optional<Cursor> cursor, int size) {
+        StringBuilder qs = new StringBuilder("select c from Customer c");
+        boolean backwards = cursor.isPresent() && !cursor.get().isNext();
+        if (cursor.isPresent()) {
+            qs.append(" where c.sid").append(backwards ? "<" : ">").append(":sid");
+        }
+        qs.append(backwards ? " order by c.sid desc" : " order by c.sid");
+        TypedQuery<Customer> q = query(qs.toString(), Customer.class);
+        if (cursor.isPresent()) {
+            q.setParameter("sid", cursor.get().getKey(0));
+        }
+        int limit = Math.min(size, CUSTOMER_MAXSIZE);
+        return Page.of(q.setMaxResults(limit + 1).getResultList(), limit, cursor);
+    }
+
+    /**
+     * getting the version of all customers as an aggregate computed by the database, a change to any customer changes it.
+     */
+    @LogDuration(limit = 50)
+    public AggregateVersion getCustomersVersion() {
+        return query("select new dk.sample.rest.common.persistence.jpa.AggregateVersion(" +
+                "count(c), sum(c.version), max(c.lastModifiedTime)) from Customer c", AggregateVersion.class)
+                .getSingleResult();
     }
 
     /**
@@ -41,7 +89,7 @@ public class CustomerArchivist {
      */
     @LogDuration(limit = 50)
     public Customer getCustomer(String customerNo) {
-        TypedQuery<Customer> q = em.createQuery("select c from Customer c where c.sid=:sid", Customer.class);
+        TypedQuery<Customer> q = query("select c from Customer c where c.sid=:sid", Customer.class);
         q.setParameter("sid", customerNo);
         return q.getSingleResult();
     }
@@ -53,7 +101,7 @@ public class CustomerArchivist {
      */
     @LogDuration(limit = 50)
     public Customer findCustomerByNames(String firstName, String middleName, String sirname) {
-        TypedQuery<Customer> q = em.createQuery("select c from Customer c where c.firstName=:firstName and " +
+        TypedQuery<Customer> q = query("select c from Customer c where c.firstName=:firstName and " +
                 "c.middleName=:middleName and c.sirname=:sirname", Customer.class);
         q.setParameter("firstName", firstName);
         q.setParameter("middleName", middleName);
@@ -61,6 +109,17 @@ public class CustomerArchivist {
         return q.getSingleResult();
     }
 
+    /**
+     * Find the version of a customer without reading the customer itself.
+     */
+    @LogDuration(limit = 50)
+    public Optional<EntityVersion> findCustomerVersion(String customerNo) {
+        return query("select new dk.sample.rest.common.persistence.jpa.EntityVersion(c.version, c.lastModifiedTime) " +
+                "from Customer c where c.sid=:sid", EntityVersion.class)
+                .setParameter("sid", customerNo)
+                .getResultList().stream().findFirst();
+    }
+
     @LogDuration(limit = 50)
     public Optional<Customer> findCustomer(String customerNo) {
         try {
@@ -75,12 +134,13 @@ public class CustomerArchivist {
         em.persist(customer);
     }
 
+    @TimeBudget(millis = 8000)
     public List<Event> findEvents(Optional<Interval> withIn) {
         StringBuilder qs = new StringBuilder("select e from Event e");
         if (withIn.isPresent()) {
-            qs.append(" and t.lastModifiedTime>:startsAt and t.lastModifiedTime<:endsAt");
+            qs.append(" where e.lastModifiedTime>:startsAt and e.lastModifiedTime<:endsAt");
         }
-        TypedQuery<Event> q = em.createQuery(qs.toString(), Event.class);
+        TypedQuery<Event> q = query(qs.toString(), Event.class);
         if (withIn.isPresent()) {
             Timestamp ts = Timestamp.from(withIn.get().getStart().toInstant());
             q.setParameter("startsAt", ts);
@@ -90,12 +150,29 @@ public class CustomerArchivist {
         return q.getResultList();
     }
 
+    /**
+     * getting the events following a given sequence number in sequence order, i.e. the events emitted since a consumer
+     * last polled the feed. The sequence is indexed thus reading a feed is a range scan of the new events only.
+     *
+     * @param since the sequence number of the latest event already seen, 0 for the beginning of the feed
+     * @param limit the maximum number of events returned
+     */
+    @TimeBudget(millis = 8000)
+    @LogDuration(limit = 50)
+    public List<Event> findEventsSince(long since, int limit) {
+        return query("select e from Event e where e.sequence>:since order by e.sequence", Event.class)
+                .setParameter("since", since)
+                .setMaxResults(Math.min(limit, EVENT_MAXSIZE))
+                .getResultList();
+    }
+
+    @TimeBudget(millis = 8000)
     public List<Event> getEventsForCategory(String category, Optional<Interval> withIn) {
         StringBuilder qs = new StringBuilder("select e from Event e where e.category=:category");
         if (withIn.isPresent()) {
-            qs.append(" and t.lastModifiedTime>:startsAt and t.lastModifiedTime<:endsAt");
+            qs.append(" and e.lastModifiedTime>:startsAt and e.lastModifiedTime<:endsAt");
         }
-        TypedQuery<Event> q = em.createQuery(qs.toString(), Event.class);
+        TypedQuery<Event> q = query(qs.toString(), Event.class);
         q.setParameter("category", category);
         if (withIn.isPresent()) {
             Interval intv = withIn.get();
@@ -106,22 +183,83 @@ public class CustomerArchivist {
     }
 
     public Event getEvent(String category, String id) {
-        TypedQuery<Event> q = em.createQuery("select e from Event e where e.category=:category and e.id=:sid", Event.class);
+        TypedQuery<Event> q = query("select e from Event e where e.category=:category and e.id=:sid", Event.class);
         q.setParameter("category", category);
         q.setParameter("sid", id);
         return q.getResultList().get(0);
     }
 
-    public void save(Event customerChanged) {
-        try {
-            em.persist(customerChanged);
-        } catch (PersistenceException pe) {
-            // in the example there is no check for collision in sequence, the check for time and sequence uniqueness.
-            // This check must be done in a real life example in order to have choice for that.
-            // The sequence is imho less attractive as a chronological order for the events.
-            // The sequence is that is dependent on central persistence and thus is not very cloud capable
-            // and is going to pose a challenge (taking it to the NP level) in a true distributed setup.
+    /**
+     * waiting for the next event saved by this service instance without holding a thread, the listener is called once
+     * the transaction saving the event is committed.
+     *
+     * @return the waiter, which must be cancelled if no longer waiting, or empty if there are too many waiting already
+     */
+    public Optional<EventBroadcaster.Waiter<Event>> awaitEvent(Consumer<Event> listener) {
+        return EVENT_BROADCASTER.await(listener);
+    }
+
+    /**
+     * getting the sequence number of the latest event, 0 if there are no events.
+     */
+    @LogDuration(limit = 50)
+    public long getLatestEventSequence() {
+        Long latest = query("select max(e.sequence) from Event e", Long.class).getSingleResult();
+        return latest == null ? 0 : latest;
+    }
+
+    /**
+     * saving an event to the event feed, the event is published to the waiting consumers once the transaction commits.
+     * The sequence number of the event must be unique, events about customers are saved to the outbox by
+     * {@link #save(OutboxEvent)}.
+     */
+    public void save(Event event) {
+        em.persist(event);
+        EVENT_BROADCASTER.publishAfterCommit(transactions, event);
+    }
+
+    /**
+     * saving an event about a customer to the outbox as part of the transaction changing the customer, thus the change
+     * of the customer is never left without its event. The event is moved to the event feed by
+     * {@link #dispatchEvents(int)} later on.
+     */
+    public void save(OutboxEvent customerChanged) {
+        em.persist(customerChanged);
+    }
+
+    /**
+     * moving the oldest events from the outbox to the event feed in a transaction of its own, the events are given the
+     * sequence numbers following the latest event in the order they were saved to the outbox. The outbox rows are locked
+     * and a concurrent dispatch assigning the same sequence numbers is rolled back by the unique sequence index, thus
+     * no event is lost or dispatched twice.
+     *
+     * @param max the maximum number of events to dispatch
+     * @return the number of events dispatched
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @TimeBudget(millis = 5000)
+    @LogDuration(limit = 50)
+    public int dispatchEvents(int max) {
+        List<OutboxEvent> pending = query("select o from OutboxEvent o order by o.time", OutboxEvent.class)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setMaxResults(max)
+                .getResultList();
+        if (pending.isEmpty()) {
+            return 0;
         }
+        long sequence = getLatestEventSequence();
+        for (OutboxEvent event : pending) {
+            save(event.toEvent(++sequence));
+            em.remove(event);
+        }
+        return pending.size();
+    }
+
+    /**
+     * creating a query limited by the deadline of the current request, see {@link QueryTimeouts}.
+     */
+    private <T> TypedQuery<T> query(String qs, Class<T> type) {
+        return QueryTimeouts.limit(em.createQuery(qs, type));
     }
 
 }
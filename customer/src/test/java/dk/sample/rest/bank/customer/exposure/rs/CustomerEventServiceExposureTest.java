@@ -4,24 +4,36 @@ package dk.sample.rest.bank.customer.exposure.rs;
 import dk.sample.rest.bank.customer.persistence.CustomerArchivist;
 import dk.sample.rest.bank.customer.exposure.rs.model.EventRepresentation;
 import dk.sample.rest.bank.customer.model.Event;
+import dk.sample.rest.bank.customer.model.OutboxEvent;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.concurrent.ManagedExecutorService;
 
 import dk.sample.rest.bank.customer.exposure.rs.model.EventsRepresentation;
+import dk.sample.rest.common.core.events.EventBroadcaster;
 import dk.sample.rest.common.test.rs.UriBuilderFactory;
 import dk.nykredit.time.CurrentTime;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
@@ -30,6 +42,9 @@ public class CustomerEventServiceExposureTest {
     @Mock
     CustomerArchivist archivist;
 
+    @Mock
+    ManagedExecutorService executor;
+
     @InjectMocks
     CustomerEventServiceExposure service;
 
@@ -47,17 +62,14 @@ public class CustomerEventServiceExposureTest {
         when(event.getSequence()).thenReturn(1234567L);
 
         List<Event> eventList = new ArrayList<>(3);
-        eventList.add(new Event(new URI("customers/default/eventSID"),
-                "default", CurrentTime.now()));
-        eventList.add(new Event(new URI("customers/1234567890/cards"),
-                "black-card", CurrentTime.now()));
-        eventList.add(new Event(new URI("customers/1234567890/accounts"),
-                "additional-account", CurrentTime.nowAsZonedDateTime().minusDays(1).toInstant()));
+        eventList.add(new OutboxEvent(new URI("customers/default/eventSID"), "default", "").toEvent(1L));
+        eventList.add(new OutboxEvent(new URI("customers/1234567890/cards"), "black-card", "").toEvent(2L));
+        eventList.add(new OutboxEvent(new URI("customers/1234567890/accounts"), "additional-account", "").toEvent(3L));
 
         when(archivist.findEvents(Optional.empty()))
                 .thenReturn(eventList);
 
-        Response response = service.listAll(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "");
+        Response response = listAll(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", null, null, null);
         EventsRepresentation events = (EventsRepresentation) response.getEntity();
 
         assertEquals(3, events.getEvents().size());
@@ -87,7 +99,7 @@ public class CustomerEventServiceExposureTest {
         }
         assertEquals(3, found);
 
-        response = service.listAll(ui, request, "application/hal+json;no-real-type", "this-is-a-Log-Token-that-r0cks-98765", "");
+        response = listAll(ui, request, "application/hal+json;no-real-type", "this-is-a-Log-Token-that-r0cks-98765", "", null, null, null);
         assertEquals(415,response.getStatus());
 
     }
@@ -105,8 +117,8 @@ public class CustomerEventServiceExposureTest {
         when(event.getSequence()).thenReturn(1234567L);
 
         when(archivist.getEventsForCategory(Event.getCategory("some", "category"), Optional.empty()))
-                .thenReturn(Collections.singletonList(new Event(new URI("customer-events/some-category/eventSID"),
-                        "some-category", CurrentTime.now())));
+                .thenReturn(Collections.singletonList(new OutboxEvent(new URI("customer-events/some-category/eventSID"),
+                        "some-category", "").toEvent(1L)));
 
         Response response = service.getByCategory(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
             "some-category", "");
@@ -134,7 +146,7 @@ public class CustomerEventServiceExposureTest {
         when(event.getSequence()).thenReturn(1234567L);
 
         when(archivist.getEvent("new-card","eventSID"))
-                .thenReturn(new Event(new URI("customers/1010101010/cards")));
+                .thenReturn(new OutboxEvent(new URI("customers/1010101010/cards"), "default", "").toEvent(1L));
 
         Response response = service.getSingle(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
             "new-card", "eventSID");
@@ -150,4 +162,112 @@ public class CustomerEventServiceExposureTest {
 
     }
 
+    @Test
+    public void testListEventsSince() throws URISyntaxException {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+
+        Request request = mock(Request.class);
+
+        List<Event> eventList = new ArrayList<>(2);
+        eventList.add(sequencedEvent("eventSID1", 41L));
+        eventList.add(sequencedEvent("eventSID2", 42L));
+        when(archivist.findEventsSince(40L, 2)).thenReturn(eventList);
+
+        Response response = listAll(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "40", "2", null);
+        EventsRepresentation events = (EventsRepresentation) response.getEntity();
+
+        assertEquals(2, events.getEvents().size());
+        assertEquals("http://mock/customer-events?since=42&limit=2", events.getNext().getHref());
+
+        when(archivist.findEventsSince(42L, 2)).thenReturn(Collections.emptyList());
+        response = listAll(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "42", "2", null);
+        events = (EventsRepresentation) response.getEntity();
+
+        assertEquals(0, events.getEvents().size());
+        assertEquals("http://mock/customer-events?since=42&limit=2", events.getNext().getHref());
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testListEventsSinceInvalid() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+
+        listAll(ui, mock(Request.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "-1", null, null);
+    }
+
+    @Test
+    public void testAwaitEvents() throws URISyntaxException {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+
+        EventBroadcaster<Event> broadcaster = new EventBroadcaster<>(0, 1, 1);
+        when(archivist.awaitEvent(any())).then(invocation -> broadcaster.await(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(executor).execute(any(Runnable.class));
+        Event event = sequencedEvent("eventSID43", 43L);
+        when(archivist.findEventsSince(42L, 100)).thenReturn(Collections.emptyList(), Collections.singletonList(event));
+
+        AsyncResponse response = mock(AsyncResponse.class);
+        service.listAll(ui, mock(Request.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "42", null, "90s",
+            response);
+        verify(response).setTimeout(60, TimeUnit.SECONDS);
+        verify(response, never()).resume(any(Object.class));
+        assertEquals(1, broadcaster.waiters());
+
+        broadcaster.publish(event);
+        EventsRepresentation events = (EventsRepresentation) resumed(response).getEntity();
+        assertEquals(1, events.getEvents().size());
+        assertEquals("http://mock/customer-events?since=43&limit=100", events.getNext().getHref());
+        assertEquals(0, broadcaster.waiters());
+    }
+
+    @Test
+    public void testAwaitEventsTimeout() throws URISyntaxException {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
+
+        EventBroadcaster<Event> broadcaster = new EventBroadcaster<>(0, 1, 1);
+        when(archivist.awaitEvent(any())).then(invocation -> broadcaster.await(invocation.getArgument(0)));
+        when(archivist.findEventsSince(42L, 2)).thenReturn(Collections.emptyList());
+
+        AsyncResponse response = mock(AsyncResponse.class);
+        service.listAll(ui, mock(Request.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", "", "42", "2", "30",
+            response);
+        ArgumentCaptor<TimeoutHandler> timeout = ArgumentCaptor.forClass(TimeoutHandler.class);
+        verify(response).setTimeoutHandler(timeout.capture());
+        verify(response).setTimeout(30, TimeUnit.SECONDS);
+
+        timeout.getValue().handleTimeout(response);
+        EventsRepresentation events = (EventsRepresentation) resumed(response).getEntity();
+        assertEquals(0, events.getEvents().size());
+        assertEquals("http://mock/customer-events?since=42&limit=2", events.getNext().getHref());
+        assertEquals(0, broadcaster.waiters());
+    }
+
+    private Response listAll(UriInfo ui, Request request, String accept, String token, String interval, String since, String limit,
+                             String wait) {
+        AsyncResponse response = mock(AsyncResponse.class);
+        service.listAll(ui, request, accept, token, interval, since, limit, wait, response);
+        return resumed(response);
+    }
+
+    private static Response resumed(AsyncResponse response) {
+        ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        verify(response).resume(resumed.capture());
+        return resumed.getValue();
+    }
+
+    private static Event sequencedEvent(String id, long sequence) throws URISyntaxException {
+        Event event = mock(Event.class);
+        when(event.getId()).thenReturn(id);
+        when(event.getCategory()).thenReturn("default");
+        when(event.getInformation()).thenReturn("event information");
+        when(event.getOrigin()).thenReturn(new URI("customers/1234567890"));
+        when(event.getTime()).thenReturn(CurrentTime.now());
+        when(event.getSequence()).thenReturn(sequence);
+        return event;
+    }
 }
@@ -2,10 +2,14 @@ package dk.sample.rest.bank.customer.exposure.rs;
 
 import dk.sample.rest.bank.customer.exposure.rs.model.CustomersRepresentation;
 import java.net.URI;
+import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
@@ -13,18 +17,32 @@ import javax.ws.rs.core.UriInfo;
 import dk.sample.rest.bank.customer.exposure.rs.model.CustomerRepresentation;
 import dk.sample.rest.bank.customer.exposure.rs.model.CustomerUpdateRepresentation;
 import dk.sample.rest.bank.customer.model.Customer;
+import dk.sample.rest.bank.customer.model.Event;
+import dk.sample.rest.bank.customer.model.OutboxEvent;
 import dk.sample.rest.bank.customer.persistence.CustomerArchivist;
+import dk.sample.rest.common.persistence.jpa.AggregateVersion;
+import dk.sample.rest.common.rs.paging.Cursor;
+import dk.sample.rest.common.rs.paging.Page;
 import dk.sample.rest.common.test.rs.UriBuilderFactory;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
@@ -33,30 +51,72 @@ public class CustomerServiceExposureTest {
     @Mock
     CustomerArchivist archivist;
 
+    @Mock
+    CustomerListExecutor lists;
+
+    @Mock
+    Executor listExecutor;
+
     @InjectMocks
     CustomerServiceExposure service;
 
+    @Before
+    public void listInline() {
+        when(lists.executor()).thenReturn(listExecutor);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(listExecutor).execute(any());
+    }
+
     @Test
     public void testList() {
         Request request = mock(Request.class);
 
         UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUri()).thenReturn(URI.create("http://mock"));
         when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
 
-        when(archivist.listCustomers())
-            .thenReturn(Arrays.asList(new Customer("Hans", "Peter", "Hansen"), new Customer("Anders", "P", "Dinesen")));
+        Customer last = new Customer("Anders", "P", "Dinesen");
+        when(archivist.getCustomersVersion()).thenReturn(new AggregateVersion(2L, 0L, null));
+        when(archivist.listCustomers(Optional.empty(), 50))
+            .thenReturn(new Page<>(Arrays.asList(new Customer("Hans", "Peter", "Hansen"), last), false, true));
 
-        Response response = service.list(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765");
+        Response response = list(ui, request, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", null, null);
         CustomersRepresentation customers = (CustomersRepresentation) response.getEntity();
 
         assertEquals(2, customers.getCustomers().size());
         assertEquals("http://mock/customers", customers.getSelf().getHref());
+        assertEquals("http://mock/customers?cursor=" + Cursor.after(last.getSid()).encode() + "&size=50", customers.getNext().getHref());
+        assertNull(customers.getPrev());
 
-        response = service.list(ui, request, "application/hal+json;concept=non.existing;type","this-is-a-Log-Token-that-r0cks-98765");
+        response = list(ui, request, "application/hal+json;concept=non.existing;type","this-is-a-Log-Token-that-r0cks-98765",
+            null, null);
         assertEquals(415,response.getStatus());
 
     }
 
+    @Test
+    public void testListNotModified() {
+        Request request = mock(Request.class);
+        when(request.getMethod()).thenReturn("GET");
+        HttpHeaders headers = mock(HttpHeaders.class);
+        when(headers.getHeaderString(HttpHeaders.IF_NONE_MATCH)).thenReturn("\"customers.1.2-5-1000\"");
+        UriInfo ui = mock(UriInfo.class);
+
+        when(archivist.getCustomersVersion()).thenReturn(new AggregateVersion(2L, 5L, new Timestamp(4096)));
+
+        Response response = list(ui, request, headers, "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765", null, null);
+        assertEquals(304, response.getStatus());
+        verify(archivist, never()).listCustomers(any(), anyInt());
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testListByInvalidCursor() {
+        list(mock(UriInfo.class), mock(Request.class), "application/hal+json", "this-is-a-Log-Token-that-r0cks-98765",
+            "not-a-cursor", null);
+    }
+
     @Test
     public void testGet() {
         Request request = mock(Request.class);
@@ -102,6 +162,7 @@ public class CustomerServiceExposureTest {
         assertEquals("Walther", resp.getFirstName());
         assertEquals("Gunnar", resp.getMiddleName());
         assertEquals("http://mock/customers/" + resp.getNumber(), resp.getSelf().getHref());
+        assertEquals("customer-created", savedEvent().getCategory());
     }
 
     @Test
@@ -130,6 +191,9 @@ public class CustomerServiceExposureTest {
         assertEquals(customer.getSid(), resp.getNumber());
 
         assertEquals("http://mock/customers/" + resp.getNumber(), resp.getSelf().getHref());
+        Event event = savedEvent();
+        assertEquals("customer-updated", event.getCategory());
+        assertEquals("customer " + customer.getSid(), event.getInformation());
     }
 
     @Test(expected = WebApplicationException.class)
@@ -143,4 +207,27 @@ public class CustomerServiceExposureTest {
         service.createOrUpdate(ui, request, "1234567890", "this-is-a-Log-Token-that-r0cks-98765", customerUpdate);
         fail("Should have thrown exception before this step");
     }
+
+    private Event savedEvent() {
+        ArgumentCaptor<OutboxEvent> event = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(archivist).save(event.capture());
+        return event.getValue().toEvent(1);
+    }
+
+    private Response list(UriInfo ui, Request request, String accept, String token, String cursor, String size) {
+        return list(ui, request, mock(HttpHeaders.class), accept, token, cursor, size);
+    }
+
+    private Response list(UriInfo ui, Request request, HttpHeaders headers, String accept, String token, String cursor, String size) {
+        AsyncResponse response = mock(AsyncResponse.class);
+        service.list(ui, request, headers, accept, token, cursor, size, response);
+        ArgumentCaptor<Throwable> failure = ArgumentCaptor.forClass(Throwable.class);
+        verify(response, atMost(1)).resume(failure.capture());
+        if (!failure.getAllValues().isEmpty()) {
+            throw (RuntimeException) failure.getValue();
+        }
+        ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        verify(response).resume(resumed.capture());
+        return resumed.getValue();
+    }
 }
@@ -0,0 +1,24 @@
+package dk.sample.rest.bank.customer.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+public class OutboxEventTest {
+
+    @Test
+    public void testToEvent() throws Exception {
+        OutboxEvent outboxed = new OutboxEvent(new URI("customers/1234567890"), "customer-updated",
+            "customer 1234567890");
+        Event event = outboxed.toEvent(42);
+
+        assertEquals(outboxed.getId(), event.getId());
+        assertEquals(Long.valueOf(42), event.getSequence());
+        assertEquals(outboxed.getTime(), event.getTime());
+        assertEquals("customer-updated", event.getCategory());
+        assertEquals("customer 1234567890", event.getInformation());
+        assertEquals(new URI("customers/1234567890"), event.getOrigin());
+    }
+}
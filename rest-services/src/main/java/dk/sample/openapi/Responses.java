@@ -448,11 +448,11 @@ public class Responses {
         }
         if (!response.getHeaders().containsKey("X-RateLimit-Remaining")) {
             setHeader(response, "X-RateLimit-Remaining",
-                "X-RateLimit-Remaining: Requests left for the domain/resource for the 24h (locally determined)");
+                "X-RateLimit-Remaining: Requests left for the caller within both the minute and the 24h limit (locally determined)");
         }
         if (!response.getHeaders().containsKey("X-RateLimit-Reset")) {
             setHeader(response, "X-RateLimit-Reset",
-                "X-RateLimit-Reset: The remaining window before the rate limit resets in UTC epoch seconds");
+                "X-RateLimit-Reset: Seconds until the limit left the fewest requests is fully restored");
         }
     }
 
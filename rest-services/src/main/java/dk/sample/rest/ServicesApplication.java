@@ -16,6 +16,7 @@ import dk.sample.rest.bank.customer.exposure.rs.CustomerEventFeedMetadataService
 import dk.sample.rest.bank.customer.exposure.rs.CustomerEventServiceExposure;
 import dk.sample.rest.bank.customer.exposure.rs.CustomerServiceExposure;
 import dk.sample.rest.common.rs.JaxRsRuntime;
+import dk.sample.rest.common.rs.metrics.MetricsServiceExposure;
 import io.swagger.annotations.ApiKeyAuthDefinition;
 import io.swagger.annotations.ExternalDocs;
 import io.swagger.annotations.OAuth2Definition;
@@ -118,7 +119,8 @@ public class ServicesApplication extends Application {
                 AccountEventFeedMetadataServiceExposure.class,
                 CustomerServiceExposure.class,
                 CustomerEventServiceExposure.class,
-                CustomerEventFeedMetadataServiceExposure.class)
+                CustomerEventFeedMetadataServiceExposure.class,
+                MetricsServiceExposure.class)
         );
         JaxRsRuntime.configure(classes);
         return classes;